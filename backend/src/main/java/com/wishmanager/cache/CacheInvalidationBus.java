@@ -0,0 +1,386 @@
+package com.wishmanager.cache;
+
+import com.wishmanager.cache.CacheInvalidationListener.EntityType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps in-process caches coherent across backend replicas using Postgres LISTEN/NOTIFY.
+ * <p>
+ * Invalidations published inside a transaction are collected once it commits, as one notification
+ * per transaction (split only if the payload grows too large). Committing threads only queue the
+ * notification; a single publisher thread numbers and sends them on a dedicated connection, so a
+ * slow database delays notifications instead of writers, a node's numbers reach the others in order
+ * and a gap means a notification that failed to send or did not fit the bounded queue. Each node
+ * listens on another dedicated connection; a gap or a reconnect triggers a full local resync. A node
+ * dying between a commit and its notification leaves no gap behind, so cached entries still need
+ * their own TTL.
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus {
+    
+    private static final long MAX_BACKOFF_MS = 30_000;
+    
+    // pg_notify payloads must stay below 8000 bytes
+    private static final int MAX_PAYLOAD_LENGTH = 7_500;
+    
+    private static final long SHUTDOWN_FLUSH_MS = 2_000;
+    
+    @Autowired
+    private ObjectProvider<CacheInvalidationListener> listeners;
+    
+    @Value("${cache.invalidation.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${cache.invalidation.channel:wish_manager_invalidation}")
+    private String channel;
+    
+    @Value("${cache.invalidation.poll-timeout-ms:5000}")
+    private int pollTimeoutMs;
+    
+    @Value("${cache.invalidation.queue-capacity:10000}")
+    private int queueCapacity;
+    
+    @Value("${cache.invalidation.connect-timeout-seconds:5}")
+    private int connectTimeoutSeconds;
+    
+    @Value("${cache.invalidation.socket-timeout-seconds:10}")
+    private int socketTimeoutSeconds;
+    
+    @Value("${spring.datasource.url}")
+    private String url;
+    
+    @Value("${spring.datasource.username}")
+    private String username;
+    
+    @Value("${spring.datasource.password}")
+    private String password;
+    
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, Long> lastSequenceByNode = new ConcurrentHashMap<>();
+    
+    // Filled before the publisher starts as well, it sends the backlog once the node is ready
+    private BlockingQueue<String> outbox;
+    // Notifications that did not fit the queue, their numbers are skipped to leave a gap
+    private final AtomicLong dropped = new AtomicLong();
+    
+    // Only used by the publisher thread: the last number sent and the connection it was sent on
+    private long sequence;
+    private Connection publishConnection;
+    
+    private Thread publisherThread;
+    private Thread listenerThread;
+    private volatile boolean running;
+    
+    /**
+     * Publishes an invalidation for the given entity. Inside a transaction the notification
+     * and the local invalidation both take effect only once the transaction commits.
+     */
+    public void publish(EntityType type, UUID id) {
+        if (id == null) {
+            return;
+        }
+        
+        Invalidation invalidation = new Invalidation(type, id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingInvalidations().invalidations.add(invalidation);
+        } else {
+            dispatch(List.of(invalidation));
+        }
+    }
+    
+    private record Invalidation(EntityType type, UUID id) {
+    }
+    
+    /**
+     * Collects a transaction's invalidations until it commits
+     */
+    private class PendingInvalidations implements TransactionSynchronization {
+        
+        private final Set<Invalidation> invalidations = new LinkedHashSet<>();
+        
+        @Override
+        public void afterCommit() {
+            dispatch(invalidations);
+        }
+    }
+    
+    // Only the current transaction's synchronizations are visible, so a suspended outer
+    // transaction keeps its own set
+    private PendingInvalidations pendingInvalidations() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingInvalidations pending) {
+                return pending;
+            }
+        }
+        PendingInvalidations pending = new PendingInvalidations();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+    
+    private void dispatch(Collection<Invalidation> invalidations) {
+        invalidations.forEach(invalidation -> invalidateLocally(invalidation.type(), invalidation.id()));
+        if (!enabled) {
+            return;
+        }
+        
+        List<String> bodies = new ArrayList<>();
+        StringBuilder body = new StringBuilder();
+        for (Invalidation invalidation : invalidations) {
+            String entry = invalidation.type() + ":" + invalidation.id();
+            if (body.length() > 0 && body.length() + entry.length() + 1 > MAX_PAYLOAD_LENGTH) {
+                bodies.add(body.toString());
+                body.setLength(0);
+            }
+            if (body.length() > 0) {
+                body.append(',');
+            }
+            body.append(entry);
+        }
+        bodies.add(body.toString());
+        
+        for (String queued : bodies) {
+            if (!outbox.offer(queued)) {
+                dropped.incrementAndGet();
+                log.warn("Invalidation queue full, dropping notification {}", queued);
+            }
+        }
+    }
+    
+    private void publishLoop() {
+        while (running || !outbox.isEmpty()) {
+            try {
+                String body = outbox.poll(1, TimeUnit.SECONDS);
+                if (body != null) {
+                    send(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        closePublishConnection();
+    }
+    
+    /**
+     * Numbers and sends one notification. Runs after the commit, so a failure is logged rather
+     * than thrown; the number is used up either way, and the gap makes the other nodes resync
+     * once the next notification gets through.
+     */
+    private void send(String body) {
+        sequence += dropped.getAndSet(0);
+        String payload = nodeId + ":" + ++sequence + ":" + body;
+        try {
+            if (publishConnection == null || publishConnection.isClosed()) {
+                // A dedicated autocommit connection outside the pool, like the listener's
+                publishConnection = DriverManager.getConnection(url, connectionProperties());
+            }
+            try (PreparedStatement ps = publishConnection.prepareStatement("SELECT pg_notify(?, ?)")) {
+                ps.setString(1, channel);
+                ps.setString(2, payload);
+                ps.execute();
+            }
+            log.debug("Published invalidation {}", payload);
+        } catch (SQLException e) {
+            log.error("Error publishing invalidation {}", payload, e);
+            closePublishConnection();
+        }
+    }
+    
+    // Bounded, so an unreachable database fails the send instead of hanging the publisher
+    private Properties connectionProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("user", username);
+        properties.setProperty("password", password);
+        properties.setProperty("connectTimeout", String.valueOf(connectTimeoutSeconds));
+        properties.setProperty("loginTimeout", String.valueOf(connectTimeoutSeconds));
+        properties.setProperty("socketTimeout", String.valueOf(socketTimeoutSeconds));
+        return properties;
+    }
+    
+    private void closePublishConnection() {
+        if (publishConnection == null) {
+            return;
+        }
+        try {
+            publishConnection.close();
+        } catch (SQLException e) {
+            log.debug("Error closing invalidation publish connection", e);
+        }
+        publishConnection = null;
+    }
+    
+    @PostConstruct
+    public void init() {
+        outbox = new LinkedBlockingQueue<>(queueCapacity);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Cache invalidation bus disabled");
+            return;
+        }
+        
+        running = true;
+        publisherThread = new Thread(this::publishLoop, "cache-invalidation-publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+        
+        listenerThread = new Thread(this::listenLoop, "cache-invalidation-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+        log.info("Started cache invalidation listener on channel '{}' as node {}", channel, nodeId);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+        if (publisherThread != null) {
+            // Notifications of transactions that already committed are still worth sending
+            try {
+                publisherThread.join(SHUTDOWN_FLUSH_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            publisherThread.interrupt();
+        }
+    }
+    
+    private void listenLoop() {
+        long backoffMs = 1000;
+        boolean connectedBefore = false;
+        
+        while (running) {
+            // A dedicated connection outside the pool, it stays open for the lifetime of the node
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                
+                if (connectedBefore) {
+                    // Anything sent while we were disconnected is lost
+                    resync("reconnected to database");
+                }
+                connectedBefore = true;
+                backoffMs = 1000;
+                
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMs);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        handleNotification(notification.getParameter());
+                    }
+                }
+                
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.error("Cache invalidation listener lost its connection, reconnecting in {} ms", backoffMs, e);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+    
+    private void handleNotification(String payload) {
+        String[] parts = payload.split(":", 3);
+        if (parts.length != 3) {
+            log.warn("Ignoring malformed invalidation payload: {}", payload);
+            return;
+        }
+        
+        String originNode = parts[0];
+        if (nodeId.equals(originNode)) {
+            // Already applied locally after commit
+            return;
+        }
+        
+        try {
+            long seq = Long.parseLong(parts[1]);
+            Long previous = lastSequenceByNode.get(originNode);
+            lastSequenceByNode.merge(originNode, seq, Math::max);
+            if (previous != null && seq > previous + 1) {
+                // A notification of that node failed to send after its commit
+                resync("gap from node " + originNode + " (" + previous + " -> " + seq + ")");
+                return;
+            }
+            
+            for (String entry : parts[2].split(",")) {
+                String[] typeAndId = entry.split(":");
+                if (typeAndId.length != 2) {
+                    log.warn("Ignoring malformed invalidation {} in payload: {}", entry, payload);
+                    continue;
+                }
+                invalidateLocally(EntityType.valueOf(typeAndId[0]), UUID.fromString(typeAndId[1]));
+            }
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed invalidation payload: {}", payload);
+        }
+    }
+    
+    private void invalidateLocally(EntityType type, UUID id) {
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.onInvalidate(type, id);
+            } catch (Exception e) {
+                log.error("Cache listener {} failed to invalidate {} {}", listener.getClass().getSimpleName(), type, id, e);
+            }
+        });
+    }
+    
+    private void resync(String reason) {
+        log.warn("Resyncing local caches: {}", reason);
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.onInvalidateAll();
+            } catch (Exception e) {
+                log.error("Cache listener {} failed to resync", listener.getClass().getSimpleName(), e);
+            }
+        });
+    }
+}
@@ -0,0 +1,22 @@
+package com.wishmanager.cache;
+
+import java.util.UUID;
+
+/**
+ * Implemented by beans that keep entity data in memory. Called for local writes after
+ * commit and for writes on other nodes as soon as their notification arrives.
+ */
+public interface CacheInvalidationListener {
+    
+    void onInvalidate(EntityType type, UUID id);
+    
+    /**
+     * Called when notifications may have been missed (reconnect, or a notification another
+     * node failed to send), so everything cached has to be treated as stale
+     */
+    void onInvalidateAll();
+    
+    enum EntityType {
+        WISHLIST, WISH, MEMBERSHIP, USER, REMINDER, CONVERSATION
+    }
+}
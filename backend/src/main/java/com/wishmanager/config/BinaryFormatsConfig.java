@@ -0,0 +1,37 @@
+package com.wishmanager.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Lets clients ask for CBOR ({@code application/cbor}) or Smile ({@code application/x-jackson-smile})
+ * instead of JSON via the Accept header, and send request bodies in them. Both are configured like
+ * the JSON mapper (same modules and date handling) and registered after it, so JSON stays the
+ * default for wildcard Accept headers and clients that do not ask.
+ */
+@Configuration
+public class BinaryFormatsConfig implements WebMvcConfigurer {
+    
+    // Prototype bean: every call hands out a fresh builder with Boot's Jackson settings applied
+    @Autowired
+    private ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+    
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Spring adds its own when the modules are on the classpath, built without Boot's settings and ahead of ours
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                || converter instanceof MappingJackson2SmileHttpMessageConverter);
+        converters.add(new MappingJackson2CborHttpMessageConverter(objectMapperBuilder.getObject().factory(new CBORFactory()).build()));
+        converters.add(new MappingJackson2SmileHttpMessageConverter(objectMapperBuilder.getObject().factory(new SmileFactory()).build()));
+    }
+}
@@ -0,0 +1,131 @@
+package com.wishmanager.config;
+
+import com.wishmanager.util.AdaptiveConcurrencyLimit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Sheds load with 503 once the node has more requests in flight than its adaptive concurrency
+ * limit, instead of letting Tomcat threads queue for database connections until everything times
+ * out. Each priority may fill only its share of the limit, so anonymous reads are shed first and
+ * the Telegram webhook last. Runs right after rate limiting.
+ */
+@Slf4j
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 2)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    
+    enum Priority {
+        WEBHOOK, WRITE, READ, ANONYMOUS_READ
+    }
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${concurrency-limit.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${concurrency-limit.initial-limit:20}")
+    private int initialLimit;
+    
+    @Value("${concurrency-limit.min-limit:4}")
+    private int minLimit;
+    
+    @Value("${concurrency-limit.max-limit:200}")
+    private int maxLimit;
+    
+    @Value("${concurrency-limit.share.webhook:1.0}")
+    private double webhookShare;
+    
+    @Value("${concurrency-limit.share.write:0.9}")
+    private double writeShare;
+    
+    @Value("${concurrency-limit.share.read:0.8}")
+    private double readShare;
+    
+    @Value("${concurrency-limit.share.anonymous-read:0.6}")
+    private double anonymousReadShare;
+    
+    private AdaptiveConcurrencyLimit limit;
+    private final Map<Priority, Double> shares = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> rejected = new EnumMap<>(Priority.class);
+    
+    @PostConstruct
+    public void init() {
+        limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit);
+        shares.put(Priority.WEBHOOK, webhookShare);
+        shares.put(Priority.WRITE, writeShare);
+        shares.put(Priority.READ, readShare);
+        shares.put(Priority.ANONYMOUS_READ, anonymousReadShare);
+        
+        for (Priority priority : Priority.values()) {
+            rejected.put(priority, meterRegistry.counter("concurrency.rejected", "priority", priority.name().toLowerCase()));
+        }
+        meterRegistry.gauge("concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit);
+        meterRegistry.gauge("concurrency.in-flight", limit, AdaptiveConcurrencyLimit::getInFlight);
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Health checks must keep answering while the node sheds load
+        return !enabled || request.getServletPath().startsWith("/actuator") || "OPTIONS".equals(request.getMethod());
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Priority priority = classify(request);
+        if (!limit.tryAcquire(shares.get(priority))) {
+            rejected.get(priority).increment();
+            log.debug("Shedding {} {} ({}), {} in flight, limit {}",
+                    request.getMethod(), request.getRequestURI(), priority, limit.getInFlight(), limit.getLimit());
+            
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Server busy\"}");
+            return;
+        }
+        
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = false;
+        } finally {
+            // A request that blew up may have failed fast, which would read as a healthy latency
+            limit.release(failed ? -1 : System.nanoTime() - started);
+        }
+    }
+    
+    private Priority classify(HttpServletRequest request) {
+        if (request.getServletPath().startsWith("/bot/")) {
+            return Priority.WEBHOOK;
+        }
+        if (!"GET".equals(request.getMethod())) {
+            return Priority.WRITE;
+        }
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return authorization != null && !authorization.isBlank() ? Priority.READ : Priority.ANONYMOUS_READ;
+    }
+}
@@ -0,0 +1,63 @@
+package com.wishmanager.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Slf4j
+@Configuration
+public class DataSourceConfig {
+    
+    @Value("${database.read-replicas.urls:}")
+    private String replicaUrls;
+    
+    @Value("${database.read-replicas.max-lag-seconds:5}")
+    private double maxLagSeconds;
+    
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("primary");
+        
+        List<DataSource> replicas = new ArrayList<>();
+        Arrays.stream(replicaUrls.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .forEach(url -> {
+                    HikariDataSource replica = properties.initializeDataSourceBuilder()
+                            .type(HikariDataSource.class)
+                            .url(url)
+                            .build();
+                    replica.setPoolName("replica-" + replicas.size());
+                    replica.setReadOnly(true);
+                    // A replica that is down at startup must not keep the application from starting
+                    replica.setInitializationFailTimeout(-1);
+                    replicas.add(replica);
+                });
+        
+        log.info("Configured primary datasource with {} read replica(s)", replicas.size());
+        return new ReplicaRoutingDataSource(primary, replicas, maxLagSeconds);
+    }
+    
+    /**
+     * The lazy proxy defers fetching a physical connection until the first statement,
+     * by which time the transaction's read-only flag is known to the routing datasource.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
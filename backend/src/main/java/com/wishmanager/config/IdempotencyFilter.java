@@ -0,0 +1,187 @@
+package com.wishmanager.config;
+
+import com.wishmanager.service.IdempotencyService;
+import com.wishmanager.service.IdempotencyService.StoredResponse;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * Honors the Idempotency-Key header on the configured mutating endpoints: the first request
+ * with a key executes, later ones with the same key get its response replayed (marked with
+ * Idempotent-Replayed) without reaching the controllers. Keys are scoped to the authenticated
+ * user, else to the Authorization header, else to the client's IP, so clients never see each
+ * other's responses. A key reused with a different body is answered with 422.
+ */
+@Slf4j
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 3)
+public class IdempotencyFilter extends OncePerRequestFilter {
+    
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    
+    private static final int MAX_KEY_LENGTH = 255;
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    @Value("${idempotency.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${idempotency.paths:/wishes,/wishlists,/wishes/*/book,/wishlists/*/clone}")
+    private List<String> paths;
+    
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled || !"POST".equals(request.getMethod()) || request.getHeader(IDEMPOTENCY_KEY) == null) {
+            return true;
+        }
+        String path = request.getServletPath();
+        return paths.stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY);
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid " + IDEMPOTENCY_KEY + " header");
+            return;
+        }
+        
+        // The body is read up front to be hashed, the controllers get a replay of it
+        byte[] body = request.getInputStream().readAllBytes();
+        HttpServletRequest replaying = new CachedBodyRequest(request, body);
+        
+        ContentCachingResponseWrapper capturing = new ContentCachingResponseWrapper(response);
+        boolean[] executedHere = new boolean[1];
+        StoredResponse result;
+        try {
+            result = idempotencyService.execute(clientKey(request), request.getMethod(), request.getServletPath(), idempotencyKey, body, () -> {
+                executedHere[0] = true;
+                try {
+                    filterChain.doFilter(replaying, capturing);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (ServletException e) {
+                    throw new IllegalStateException(e);
+                }
+                return new StoredResponse(capturing.getStatus(), capturing.getContentType(), capturing.getContentAsByteArray());
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof ServletException servletException) {
+                throw servletException;
+            }
+            throw e;
+        }
+        
+        if (executedHere[0]) {
+            capturing.copyBodyToResponse();
+            return;
+        }
+        
+        if (result == StoredResponse.IN_PROGRESS) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        } else if (result == StoredResponse.MISMATCH) {
+            log.debug("{} {} reused {} {} with a different body", request.getMethod(), request.getServletPath(), IDEMPOTENCY_KEY, idempotencyKey);
+        } else {
+            response.setHeader(IDEMPOTENT_REPLAYED, "true");
+            log.debug("Replayed response for {} {} with {} {}", request.getMethod(), request.getServletPath(), IDEMPOTENCY_KEY, idempotencyKey);
+        }
+        response.setStatus(result.status());
+        if (result.contentType() != null) {
+            response.setContentType(result.contentType());
+        }
+        if (result.body() != null) {
+            response.getOutputStream().write(result.body());
+        }
+    }
+    
+    private String clientKey(HttpServletRequest request) {
+        Principal user = request.getUserPrincipal();
+        if (user != null) {
+            return "user:" + user.getName();
+        }
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && !authorization.isBlank()) {
+            return "auth:" + authorization;
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+    
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        
+        private final byte[] body;
+        
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+        
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+                
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+                
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+                
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+                
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException("Replayed bodies are read synchronously");
+                }
+            };
+        }
+        
+        @Override
+        public BufferedReader getReader() {
+            Charset charset = getCharacterEncoding() != null ? Charset.forName(getCharacterEncoding()) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
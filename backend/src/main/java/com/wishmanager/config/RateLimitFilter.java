@@ -0,0 +1,73 @@
+package com.wishmanager.config;
+
+import com.wishmanager.service.RateLimitService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.security.Principal;
+
+/**
+ * Applies the path-based rate limit policies and answers 429 with Retry-After when a client
+ * is over its limit. Runs right after Spring Security, so user-keyed policies see the
+ * authenticated user, and before the other filters, so rejected requests never reach the
+ * connection pool. Nothing the client sends is trusted as its identity: requests without an
+ * authenticated user are limited per IP.
+ */
+@Slf4j
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 1)
+public class RateLimitFilter extends OncePerRequestFilter {
+    
+    @Autowired
+    private RateLimitService rateLimitService;
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RateLimitService.Policy policy = rateLimitService.match(request.getMethod(), request.getServletPath());
+        // Chat-keyed policies need the update body and are applied by the webhook controller
+        if (policy == null || RateLimitService.KEY_CHAT.equals(policy.getKey()) || "OPTIONS".equals(request.getMethod())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        long retryAfterMs = rateLimitService.tryAcquire(policy.getName(),
+                resolveKey(request, policy.getKey()), "ip:" + request.getRemoteAddr());
+        if (retryAfterMs == 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        log.debug("Rate limited {} {} under policy '{}', retry in {}ms",
+                request.getMethod(), request.getRequestURI(), policy.getName(), retryAfterMs);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfterMs + 999) / 1000));
+        // Controllers allow any origin; without these the browser hides the 429 behind a CORS error
+        response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+        response.setHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, HttpHeaders.RETRY_AFTER);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Too many requests\"}");
+    }
+    
+    private String resolveKey(HttpServletRequest request, String keyType) {
+        if (RateLimitService.KEY_USER.equals(keyType)) {
+            Principal user = request.getUserPrincipal();
+            if (user != null) {
+                return "user:" + user.getName();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
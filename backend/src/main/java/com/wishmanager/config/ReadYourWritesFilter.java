@@ -0,0 +1,94 @@
+package com.wishmanager.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives clients read-your-writes consistency on top of replica routing: for a short window
+ * after a client's mutating request, its reads are pinned to the primary.
+ * A mutating response carries a cookie with the end of the window, so the client's next reads
+ * stay on the primary whichever node serves them. Authenticated users are also remembered
+ * per node, for clients that do not keep cookies. Neither is shared between clients the way
+ * a network address is.
+ */
+@Component
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    
+    public static final String PRIMARY_UNTIL_COOKIE = "primary_until";
+    
+    private static final Set<String> MUTATING_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    
+    @Value("${database.read-replicas.sticky-window-seconds:5}")
+    private long stickyWindowSeconds;
+    
+    private final Map<String, Long> lastWriteByUser = new ConcurrentHashMap<>();
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Principal user = request.getUserPrincipal();
+        boolean mutating = MUTATING_METHODS.contains(request.getMethod());
+        long now = System.currentTimeMillis();
+        
+        Long lastWrite = user != null ? lastWriteByUser.get(user.getName()) : null;
+        boolean sticky = lastWrite != null && now - lastWrite < stickyWindowSeconds * 1000
+                || primaryUntil(request) > now;
+        
+        if (mutating) {
+            // Added up front, once the controller has written the body the headers are gone
+            Cookie cookie = new Cookie(PRIMARY_UNTIL_COOKIE, String.valueOf(now + stickyWindowSeconds * 1000));
+            cookie.setMaxAge((int) stickyWindowSeconds);
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+        
+        ReplicaRoutingDataSource.requirePrimary(sticky);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.requirePrimary(false);
+            if (mutating && user != null) {
+                // Measured from completion, so the window covers replication of this write
+                lastWriteByUser.put(user.getName(), System.currentTimeMillis());
+            }
+        }
+    }
+    
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - stickyWindowSeconds * 1000;
+        lastWriteByUser.values().removeIf(lastWrite -> lastWrite < cutoff);
+    }
+    
+    private long primaryUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (PRIMARY_UNTIL_COOKIE.equals(cookie.getName())) {
+                try {
+                    // Trusted as is: a forged value can only send the client's own reads to the primary
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
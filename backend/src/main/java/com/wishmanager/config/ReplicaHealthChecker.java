@@ -0,0 +1,17 @@
+package com.wishmanager.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ReplicaHealthChecker {
+    
+    @Autowired
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+    
+    @Scheduled(fixedDelayString = "${database.read-replicas.health-check-interval-ms:5000}")
+    public void checkReplicas() {
+        replicaRoutingDataSource.checkReplicas();
+    }
+}
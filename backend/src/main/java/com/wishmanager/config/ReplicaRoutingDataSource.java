@@ -0,0 +1,140 @@
+package com.wishmanager.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Sends read-only transactions to a healthy read replica and everything else to the primary.
+ * Replicas that fail the health check or lag behind more than the allowed maximum are skipped;
+ * without a usable replica reads fall back to the primary.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    
+    private static final String PRIMARY = "primary";
+    
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+    
+    private static final String LAG_QUERY =
+            "SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+    
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final double maxLagSeconds;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources, double maxLagSeconds) {
+        this.primary = primary;
+        this.maxLagSeconds = maxLagSeconds;
+        this.replicas = IntStream.range(0, replicaDataSources.size())
+                .mapToObj(i -> new Replica("replica-" + i, replicaDataSources.get(i)))
+                .toList();
+        
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach(replica -> targets.put(replica.name, replica.dataSource));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+    
+    /**
+     * Forces reads on the current thread to the primary, used for read-your-writes stickiness
+     */
+    public static void requirePrimary(boolean required) {
+        if (required) {
+            PRIMARY_REQUIRED.set(Boolean.TRUE);
+        } else {
+            PRIMARY_REQUIRED.remove();
+        }
+    }
+    
+    public static boolean isPrimaryRequired() {
+        return Boolean.TRUE.equals(PRIMARY_REQUIRED.get());
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas.isEmpty()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || Boolean.TRUE.equals(PRIMARY_REQUIRED.get())) {
+            return PRIMARY;
+        }
+        
+        // Round robin over healthy replicas, starting at a rotating offset
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.healthy) {
+                return replica.name;
+            }
+        }
+        
+        log.debug("No healthy read replica, routing read to primary");
+        return PRIMARY;
+    }
+    
+    /**
+     * Probes every replica and records whether it is reachable and within the allowed lag
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean wasHealthy = replica.healthy;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(2);
+                try (ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+                    resultSet.next();
+                    double lagSeconds = resultSet.getDouble(1);
+                    replica.healthy = lagSeconds <= maxLagSeconds;
+                    if (!replica.healthy) {
+                        log.warn("Read replica {} lags {}s behind primary (max {}s)", replica.name, lagSeconds, maxLagSeconds);
+                    }
+                }
+            } catch (Exception e) {
+                replica.healthy = false;
+                log.warn("Read replica {} failed health check: {}", replica.name, e.getMessage());
+            }
+            
+            if (replica.healthy && !wasHealthy) {
+                log.info("Read replica {} is healthy", replica.name);
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        closeQuietly(primary);
+        replicas.forEach(replica -> closeQuietly(replica.dataSource));
+    }
+    
+    private void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource hikariDataSource) {
+            hikariDataSource.close();
+        }
+    }
+    
+    private static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        // Replicas start out unused until the first health check passes
+        private volatile boolean healthy = false;
+        
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
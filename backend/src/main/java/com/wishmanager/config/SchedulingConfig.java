@@ -0,0 +1,38 @@
+package com.wishmanager.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+@Configuration
+public class SchedulingConfig {
+    
+    public static final String MAINTENANCE_SCHEDULER = "maintenanceScheduler";
+    
+    @Value("${scheduling.maintenance.pool-size:3}")
+    private int maintenancePoolSize;
+    
+    /**
+     * The default scheduler for short periodic tasks (flushes, evictions, health checks), sized by
+     * spring.task.scheduling.pool.size. Declared explicitly because a second TaskScheduler bean
+     * would otherwise switch off Boot's auto-configured one.
+     */
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+    
+    /**
+     * Runs the batch jobs that pause between batches (archive, booking sweep, stats reconcile),
+     * one thread each, so their runs never hold up the default scheduler's tasks
+     */
+    @Bean(name = MAINTENANCE_SCHEDULER)
+    public ThreadPoolTaskScheduler maintenanceScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(maintenancePoolSize);
+        scheduler.setThreadNamePrefix("maintenance-");
+        return scheduler;
+    }
+}
@@ -1,8 +1,10 @@
 package com.wishmanager.config;
 
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
 
 @Configuration
 public class WebConfig {
@@ -11,4 +13,16 @@ public class WebConfig {
     public RestTemplate restTemplate() {
         return new RestTemplate();
     }
+    
+    /**
+     * ETags for the bootstrap response, hashed from the body, so a mini-app reopened
+     * without changes gets a 304 instead of the payload
+     */
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> bootstrapEtagFilter() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registration = new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+        registration.addUrlPatterns("/bootstrap");
+        registration.setName("bootstrapEtagFilter");
+        return registration;
+    }
 }
@@ -0,0 +1,31 @@
+package com.wishmanager.controller;
+
+import com.wishmanager.dto.BootstrapResponse;
+import com.wishmanager.service.BootstrapService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/bootstrap")
+@CrossOrigin(origins = "*")
+public class BootstrapController {
+    
+    @Autowired
+    private BootstrapService bootstrapService;
+    
+    /**
+     * First screen of the mini-app in one round trip; answered with 304 when the client's ETag still matches
+     */
+    @GetMapping
+    public ResponseEntity<BootstrapResponse> bootstrap(
+            @RequestParam UUID userId,
+            @RequestParam(required = false) String startParam) {
+        BootstrapResponse response = bootstrapService.bootstrap(userId, startParam);
+        // Always revalidated; the ETag filter turns an unchanged body into an empty 304
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache().cachePrivate()).body(response);
+    }
+}
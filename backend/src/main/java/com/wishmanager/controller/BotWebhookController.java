@@ -1,21 +1,34 @@
 package com.wishmanager.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wishmanager.service.BotService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+@Slf4j
 @RestController
 @RequestMapping("/bot")
 @CrossOrigin(origins = "*")
+@ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "webhook", matchIfMissing = true)
 public class BotWebhookController {
     
     @Autowired
     private BotService botService;
     
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
     @PostMapping("/webhook")
     public ResponseEntity<?> handleWebhook(@RequestBody String update) {
-        botService.handleUpdate(update);
+        try {
+            // Telegram redelivers anything but 2xx, so even updates of a rate limited chat are acknowledged
+            botService.handleUpdate(objectMapper.readTree(update));
+        } catch (Exception e) {
+            log.error("Error processing webhook update: {}", update, e);
+        }
         return ResponseEntity.ok().build();
     }
 }
@@ -1,13 +1,18 @@
 package com.wishmanager.controller;
 
+import com.wishmanager.dto.BookedWishResponse;
 import com.wishmanager.dto.WishCreateRequest;
+import com.wishmanager.dto.WishMoveRequest;
 import com.wishmanager.dto.WishResponse;
 import com.wishmanager.service.WishService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -24,6 +29,16 @@ public class WishController {
         return ResponseEntity.ok(response);
     }
     
+    @GetMapping("/booked")
+    public ResponseEntity<List<BookedWishResponse>> getBookedWishes(
+            @RequestParam UUID userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            @RequestParam(required = false) UUID beforeId,
+            @RequestParam(defaultValue = "20") int size) {
+        List<BookedWishResponse> bookings = wishService.getBookedWishes(userId, before, beforeId, size);
+        return ResponseEntity.ok(bookings);
+    }
+    
     @PatchMapping("/{id}")
     public ResponseEntity<WishResponse> updateWish(@PathVariable UUID id, @Valid @RequestBody WishCreateRequest request) {
         WishResponse response = wishService.updateWish(id, request);
@@ -36,9 +51,15 @@ public class WishController {
         return ResponseEntity.ok().build();
     }
     
+    @PostMapping("/{id}/move")
+    public ResponseEntity<?> moveWish(@PathVariable UUID id, @RequestBody WishMoveRequest request) {
+        wishService.moveWish(id, request.getAfterId());
+        return ResponseEntity.ok().build();
+    }
+    
     @PostMapping("/{id}/book")
     public ResponseEntity<WishResponse> bookWish(@PathVariable UUID id, @RequestBody BookRequest request) {
-        WishResponse response = wishService.bookWish(id, request.isHideBookerName());
+        WishResponse response = wishService.bookWish(id, request.getUserId(), request.isHideBookerName());
         return ResponseEntity.ok(response);
     }
     
@@ -61,8 +82,12 @@ public class WishController {
     }
     
     public static class BookRequest {
+        private UUID userId; // the booker, required
         private boolean hideBookerName = false;
         
+        public UUID getUserId() { return userId; }
+        public void setUserId(UUID userId) { this.userId = userId; }
+        
         public boolean isHideBookerName() { return hideBookerName; }
         public void setHideBookerName(boolean hideBookerName) { this.hideBookerName = hideBookerName; }
     }
@@ -1,7 +1,14 @@
 package com.wishmanager.controller;
 
+import com.wishmanager.dto.BulkInviteRequest;
+import com.wishmanager.dto.BulkInviteResponse;
+import com.wishmanager.dto.TrendingWishlistResponse;
+import com.wishmanager.dto.WishlistCloneRequest;
+import com.wishmanager.dto.WishlistCloneResponse;
 import com.wishmanager.dto.WishlistCreateRequest;
 import com.wishmanager.dto.WishlistResponse;
+import com.wishmanager.dto.WishlistSummaryResponse;
+import com.wishmanager.service.TrendingService;
 import com.wishmanager.service.WishlistService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +26,9 @@ public class WishlistController {
     @Autowired
     private WishlistService wishlistService;
     
+    @Autowired
+    private TrendingService trendingService;
+    
     @PostMapping
     public ResponseEntity<WishlistResponse> createWishlist(@Valid @RequestBody WishlistCreateRequest request) {
         WishlistResponse response = wishlistService.createWishlist(request);
@@ -26,19 +36,52 @@ public class WishlistController {
     }
     
     @GetMapping
-    public ResponseEntity<List<WishlistResponse>> getWishlists(
+    public ResponseEntity<List<?>> getWishlists(
             @RequestParam(required = false) UUID owner,
-            @RequestParam(required = false) Boolean publicOnly) {
+            @RequestParam(required = false) Boolean publicOnly,
+            @RequestParam(required = false) UUID userId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        if (owner == null && !Boolean.TRUE.equals(publicOnly) && userId != null) {
+            // Unfiltered, a user's wishlists are the ones they are a member of
+            return ResponseEntity.ok(wishlistService.getMemberWishlists(userId, page, size));
+        }
         List<WishlistResponse> wishlists = wishlistService.getWishlists(owner, publicOnly);
         return ResponseEntity.ok(wishlists);
     }
     
+    @GetMapping("/member")
+    public ResponseEntity<List<WishlistSummaryResponse>> getMemberWishlists(
+            @RequestParam UUID userId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        List<WishlistSummaryResponse> wishlists = wishlistService.getMemberWishlists(userId, page, size);
+        return ResponseEntity.ok(wishlists);
+    }
+    
+    @GetMapping("/trending")
+    public ResponseEntity<List<TrendingWishlistResponse>> getTrendingWishlists(
+            @RequestParam(defaultValue = "20") int limit) {
+        List<TrendingWishlistResponse> trending = trendingService.getTrending(limit);
+        return ResponseEntity.ok(trending);
+    }
+    
     @GetMapping("/{id}")
-    public ResponseEntity<WishlistResponse> getWishlist(@PathVariable UUID id) {
-        WishlistResponse wishlist = wishlistService.getWishlistById(id);
+    public ResponseEntity<WishlistResponse> getWishlist(
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "false") boolean includeArchived) {
+        WishlistResponse wishlist = wishlistService.getWishlistById(id, includeArchived);
         return ResponseEntity.ok(wishlist);
     }
     
+    @PostMapping("/{id}/clone")
+    public ResponseEntity<WishlistCloneResponse> cloneWishlist(
+            @PathVariable UUID id,
+            @Valid @RequestBody WishlistCloneRequest request) {
+        WishlistCloneResponse response = wishlistService.cloneWishlist(id, request);
+        return ResponseEntity.ok(response);
+    }
+    
     @PostMapping("/{id}/join")
     public ResponseEntity<?> joinWishlist(@PathVariable UUID id) {
         wishlistService.joinWishlist(id);
@@ -47,10 +90,16 @@ public class WishlistController {
     
     @PostMapping("/{id}/invite")
     public ResponseEntity<?> inviteToWishlist(@PathVariable UUID id, @RequestBody InviteRequest request) {
-        wishlistService.inviteToWishlist(id, request.getUserId(), request.getTelegramId());
+        wishlistService.inviteToWishlist(id, request.getUserId(), request.getTelegramId(), request.getInviterId());
         return ResponseEntity.ok().build();
     }
     
+    @PostMapping("/{id}/invites")
+    public ResponseEntity<BulkInviteResponse> inviteManyToWishlist(@PathVariable UUID id, @Valid @RequestBody BulkInviteRequest request) {
+        BulkInviteResponse response = wishlistService.inviteToWishlist(id, request);
+        return ResponseEntity.ok(response);
+    }
+    
     @PostMapping("/{id}/leave")
     public ResponseEntity<?> leaveWishlist(@PathVariable UUID id) {
         wishlistService.leaveWishlist(id);
@@ -60,11 +109,14 @@ public class WishlistController {
     public static class InviteRequest {
         private UUID userId;
         private String telegramId;
+        private UUID inviterId;
         
         // Getters and setters
         public UUID getUserId() { return userId; }
         public void setUserId(UUID userId) { this.userId = userId; }
         public String getTelegramId() { return telegramId; }
         public void setTelegramId(String telegramId) { this.telegramId = telegramId; }
+        public UUID getInviterId() { return inviterId; }
+        public void setInviterId(UUID inviterId) { this.inviterId = inviterId; }
     }
 }
@@ -0,0 +1,24 @@
+package com.wishmanager.dto;
+
+import com.wishmanager.entity.Wish;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookedWishResponse {
+    
+    private UUID id;
+    private String name;
+    private Wish.Status status;
+    private Boolean hideBookerName;
+    private LocalDateTime updatedAt;
+    private UUID wishlistId;
+    private String wishlistTitle;
+    private UUID ownerId;
+    private String ownerDisplayName;
+}
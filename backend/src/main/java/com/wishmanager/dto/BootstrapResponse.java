@@ -0,0 +1,21 @@
+package com.wishmanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Everything the mini-app renders on its first screen
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BootstrapResponse {
+    
+    private UserResponse user;
+    private List<WishlistSummaryResponse> wishlists;
+    private List<BookedWishResponse> bookings;
+    private WishlistResponse startWishlist; // wishlist deep-linked from /start, null if none
+}
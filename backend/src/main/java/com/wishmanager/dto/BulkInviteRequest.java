@@ -0,0 +1,24 @@
+package com.wishmanager.dto;
+
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkInviteRequest {
+    
+    @Size(max = 500, message = "At most 500 users can be invited at once")
+    private List<UUID> userIds = new ArrayList<>();
+    
+    @Size(max = 500, message = "At most 500 users can be invited at once")
+    private List<String> telegramIds = new ArrayList<>();
+    
+    private UUID inviterId; // the inviting member, named in the notification; defaults to the owner
+}
@@ -0,0 +1,19 @@
+package com.wishmanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkInviteResponse {
+    
+    private List<UUID> invited;
+    private List<UUID> alreadyMembers;
+    private List<UUID> unknownUserIds;
+    private List<String> unknownTelegramIds;
+}
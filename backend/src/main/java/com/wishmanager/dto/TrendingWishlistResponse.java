@@ -0,0 +1,19 @@
+package com.wishmanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingWishlistResponse {
+    
+    private UUID id;
+    private UUID ownerId;
+    private String title;
+    private String description;
+    private Long viewCount;
+    private Double trendingScore; // decayed views as of the last ranking refresh
+}
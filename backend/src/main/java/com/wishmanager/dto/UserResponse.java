@@ -0,0 +1,17 @@
+package com.wishmanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserResponse {
+    
+    private UUID id;
+    private String displayName;
+    private String avatarUrl;
+}
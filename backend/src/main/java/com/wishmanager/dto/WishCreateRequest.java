@@ -5,11 +5,15 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.UUID;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class WishCreateRequest {
     
+    private UUID wishlistId; // required on create, ignored on update
+    
     @NotBlank(message = "Name is required")
     private String name;
     
@@ -0,0 +1,15 @@
+package com.wishmanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WishMoveRequest {
+    
+    private UUID afterId; // wish to place it after; null moves it to the top
+}
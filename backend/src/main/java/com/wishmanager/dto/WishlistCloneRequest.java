@@ -0,0 +1,24 @@
+package com.wishmanager.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WishlistCloneRequest {
+    
+    @NotNull(message = "User ID is required")
+    private UUID userId; // the cloning user, owner of the copy
+    
+    private String title; // defaults to the source title
+    
+    private Boolean isPublic; // defaults to the source setting
+    
+    private LocalDate eventDate; // not copied, last year's date is rarely wanted
+}
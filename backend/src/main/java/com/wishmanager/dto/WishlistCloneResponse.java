@@ -0,0 +1,18 @@
+package com.wishmanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WishlistCloneResponse {
+    
+    private UUID id;
+    private UUID sourceId;
+    private String title;
+    private int wishCount;
+}
@@ -2,10 +2,13 @@ package com.wishmanager.dto;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDate;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -18,4 +21,9 @@ public class WishlistCreateRequest {
     
     @NotNull(message = "Public flag is required")
     private Boolean isPublic;
+    
+    @Positive(message = "Booking TTL must be positive")
+    private Integer bookingTtlHours;
+    
+    private LocalDate eventDate;
 }
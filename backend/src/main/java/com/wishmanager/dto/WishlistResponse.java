@@ -3,6 +3,7 @@ package com.wishmanager.dto;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -17,6 +18,8 @@ public class WishlistResponse {
     private String title;
     private String description;
     private Boolean isPublic;
+    private Integer bookingTtlHours;
+    private LocalDate eventDate;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private List<WishResponse> wishes;
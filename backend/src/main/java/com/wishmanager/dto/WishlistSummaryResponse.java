@@ -0,0 +1,26 @@
+package com.wishmanager.dto;
+
+import com.wishmanager.entity.Membership;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WishlistSummaryResponse {
+    
+    private UUID id;
+    private UUID ownerId;
+    private String title;
+    private String description;
+    private Boolean isPublic;
+    private Membership.Role role; // role of the requesting user
+    private LocalDateTime updatedAt;
+    private Integer wishCount;
+    private Integer bookedCount;
+    private Integer giftedCount;
+    private Integer memberCount;
+}
@@ -0,0 +1,56 @@
+package com.wishmanager.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A wish moved out of the hot wishes table by the archiver. Read-only from the application's side.
+ */
+@Entity
+@Immutable
+@Table(name = "wishes_archive")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedWish {
+    
+    @Id
+    private UUID id;
+    
+    @Column(name = "wishlist_id", nullable = false)
+    private UUID wishlistId;
+    
+    @Column(name = "name", nullable = false)
+    private String name;
+    
+    @Column(name = "description", columnDefinition = "TEXT")
+    private String description;
+    
+    @Column(name = "links", columnDefinition = "JSONB")
+    private String links; // JSON array of URLs
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private Wish.Status status;
+    
+    @Column(name = "booked_by")
+    private UUID bookedBy;
+    
+    @Column(name = "hide_booker_name", nullable = false)
+    private Boolean hideBookerName;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -43,6 +43,9 @@ public class Wish {
     @Column(name = "hide_booker_name", nullable = false)
     private Boolean hideBookerName = false;
     
+    @Column(name = "rank", nullable = false)
+    private String rank; // see RankKeys
+    
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -33,6 +34,12 @@ public class Wishlist {
     @Column(name = "is_public", nullable = false)
     private Boolean isPublic = false;
     
+    @Column(name = "booking_ttl_hours")
+    private Integer bookingTtlHours; // null: bookings never expire
+    
+    @Column(name = "event_date")
+    private LocalDate eventDate;
+    
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,37 @@
+package com.wishmanager.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.util.UUID;
+
+/**
+ * Counters of one wishlist. Written only through WishlistStatsService, in SQL.
+ */
+@Entity
+@Immutable
+@Table(name = "wishlist_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WishlistStats {
+    
+    @Id
+    @Column(name = "wishlist_id")
+    private UUID wishlistId;
+    
+    @Column(name = "wish_count", nullable = false)
+    private Integer wishCount;
+    
+    @Column(name = "booked_count", nullable = false)
+    private Integer bookedCount;
+    
+    @Column(name = "gifted_count", nullable = false)
+    private Integer giftedCount;
+    
+    @Column(name = "member_count", nullable = false)
+    private Integer memberCount;
+}
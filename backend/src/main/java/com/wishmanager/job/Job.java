@@ -0,0 +1,9 @@
+package com.wishmanager.job;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A claimed job as handed to its handler
+ */
+public record Job(long id, String queue, JsonNode payload, int attempts, int maxAttempts) {
+}
@@ -0,0 +1,13 @@
+package com.wishmanager.job;
+
+/**
+ * Processes jobs of one queue. Delivery is at least once: a job whose worker dies or
+ * exceeds the visibility timeout is handed out again, so handlers must be idempotent.
+ * Throwing schedules a retry with backoff; returning normally removes the job.
+ */
+public interface JobHandler {
+    
+    String queue();
+    
+    void handle(Job job) throws Exception;
+}
@@ -0,0 +1,208 @@
+package com.wishmanager.job;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Postgres-backed job queue. Enqueueing inside a transaction makes the job part of it,
+ * so a job exists if and only if the change that caused it was committed.
+ */
+@Slf4j
+@Service
+public class JobQueue {
+    
+    private static final String ENQUEUE_SQL =
+            "INSERT INTO jobs (queue, payload, run_at, max_attempts) " +
+            "VALUES (?, ?::jsonb, CURRENT_TIMESTAMP + ? * interval '1 millisecond', ?)";
+    
+    private static final String ENQUEUE_BATCH_SQL =
+            "INSERT INTO jobs (queue, payload, run_at, max_attempts) " +
+            "SELECT ?, p::jsonb, CURRENT_TIMESTAMP, ? FROM unnest(?::text[]) AS p";
+    
+    private static final String CLAIM_SQL =
+            "UPDATE jobs SET status = 'RUNNING', attempts = attempts + 1, locked_by = ?, " +
+            "locked_until = CURRENT_TIMESTAMP + ? * interval '1 millisecond', updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id IN (" +
+            "  SELECT id FROM jobs WHERE queue = ? AND status = 'READY' AND run_at <= CURRENT_TIMESTAMP " +
+            "  ORDER BY run_at LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id, queue, payload, attempts, max_attempts";
+    
+    private static final String COMPLETE_SQL = "DELETE FROM jobs WHERE id = ANY(?)";
+    
+    private static final String FAIL_SQL =
+            "UPDATE jobs SET status = CASE WHEN attempts >= max_attempts THEN 'DEAD' ELSE 'READY' END, " +
+            "run_at = CURRENT_TIMESTAMP + ? * interval '1 millisecond', last_error = ?, locked_by = NULL, locked_until = NULL, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = ? AND locked_by = ? RETURNING status";
+    
+    private static final String RELEASE_SQL =
+            "UPDATE jobs SET status = 'READY', attempts = attempts - 1, locked_by = NULL, locked_until = NULL, " +
+            "updated_at = CURRENT_TIMESTAMP WHERE id = ANY(?) AND locked_by = ?";
+    
+    private static final String REAP_SQL =
+            "UPDATE jobs SET status = CASE WHEN attempts >= max_attempts THEN 'DEAD' ELSE 'READY' END, " +
+            "locked_by = NULL, locked_until = NULL, last_error = 'visibility timeout expired', updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id IN (" +
+            "  SELECT id FROM jobs WHERE status = 'RUNNING' AND locked_until < CURRENT_TIMESTAMP " +
+            "  LIMIT ? FOR UPDATE SKIP LOCKED)";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${jobs.max-attempts:8}")
+    private int defaultMaxAttempts;
+    
+    @Value("${jobs.backoff-base-ms:1000}")
+    private long backoffBaseMs;
+    
+    @Value("${jobs.backoff-max-ms:600000}")
+    private long backoffMaxMs;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    // Lets local workers pick up freshly committed jobs without waiting for the next poll
+    private final Map<String, Semaphore> wakeups = new ConcurrentHashMap<>();
+    
+    public void enqueue(String queue, Object payload) {
+        enqueue(queue, payload, Duration.ZERO);
+    }
+    
+    public void enqueue(String queue, Object payload, Duration delay) {
+        String json = toJson(payload);
+        jdbcTemplate.update(ENQUEUE_SQL, queue, json, delay.toMillis(), defaultMaxAttempts);
+        log.debug("Enqueued job on queue {}: {}", queue, json);
+        wakeAfterCommit(queue);
+    }
+    
+    /**
+     * Inserts all payloads with one statement
+     */
+    public void enqueueAll(String queue, Collection<?> payloads) {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        
+        String[] json = payloads.stream().map(this::toJson).toArray(String[]::new);
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(ENQUEUE_BATCH_SQL);
+            ps.setString(1, queue);
+            ps.setInt(2, defaultMaxAttempts);
+            ps.setArray(3, connection.createArrayOf("text", json));
+            return ps;
+        });
+        log.debug("Enqueued {} jobs on queue {}", json.length, queue);
+        wakeAfterCommit(queue);
+    }
+    
+    List<Job> claim(String queue, String workerId, int limit, long visibilityTimeoutMs) {
+        return jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new Job(
+                rs.getLong("id"),
+                rs.getString("queue"),
+                readJson(rs.getString("payload")),
+                rs.getInt("attempts"),
+                rs.getInt("max_attempts")
+        ), workerId, visibilityTimeoutMs, queue, limit);
+    }
+    
+    void complete(Collection<Long> jobIds) {
+        if (jobIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(COMPLETE_SQL);
+            ps.setArray(1, connection.createArrayOf("bigint", jobIds.toArray()));
+            return ps;
+        });
+    }
+    
+    /**
+     * Schedules the next attempt with exponential backoff and jitter.
+     * Returns true when the job ran out of attempts and is now dead.
+     */
+    boolean fail(Job job, String workerId, String error) {
+        long backoffMs = Math.min(backoffMaxMs, backoffBaseMs << Math.min(job.attempts() - 1, 30));
+        backoffMs = backoffMs / 2 + ThreadLocalRandom.current().nextLong(backoffMs / 2 + 1);
+        List<String> status = jdbcTemplate.queryForList(FAIL_SQL, String.class, backoffMs, error, job.id(), workerId);
+        return status.contains("DEAD");
+    }
+    
+    /**
+     * Returns claimed but never started jobs, e.g. on shutdown, without counting an attempt
+     */
+    void release(Collection<Long> jobIds, String workerId) {
+        if (jobIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(RELEASE_SQL);
+            ps.setArray(1, connection.createArrayOf("bigint", jobIds.toArray()));
+            ps.setString(2, workerId);
+            return ps;
+        });
+    }
+    
+    int reapExpired(int limit) {
+        return jdbcTemplate.update(REAP_SQL, limit);
+    }
+    
+    boolean awaitWork(String queue, long timeoutMs) throws InterruptedException {
+        return wakeup(queue).tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+    
+    private void wakeAfterCommit(String queue) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wake(queue);
+                }
+            });
+        } else {
+            wake(queue);
+        }
+    }
+    
+    private void wake(String queue) {
+        Semaphore wakeup = wakeup(queue);
+        if (wakeup.availablePermits() == 0) {
+            wakeup.release();
+        }
+    }
+    
+    private Semaphore wakeup(String queue) {
+        return wakeups.computeIfAbsent(queue, name -> new Semaphore(0));
+    }
+    
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize job payload", e);
+        }
+    }
+    
+    private JsonNode readJson(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to parse job payload", e);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.wishmanager.job;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs registered {@link JobHandler}s. Every queue gets one poller thread that claims jobs in
+ * batches, sized to the free slots of the queue's worker pool, and hands them to that pool.
+ * Any number of nodes can run workers side by side; SKIP LOCKED keeps their claims disjoint.
+ * Concurrency limits apply per node.
+ */
+@Slf4j
+@Component
+public class JobWorker {
+    
+    @Autowired
+    private JobQueue jobQueue;
+    
+    @Autowired
+    private List<JobHandler> handlers;
+    
+    @Autowired
+    private Environment environment;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${jobs.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${jobs.batch-size:50}")
+    private int batchSize;
+    
+    @Value("${jobs.poll-interval-ms:500}")
+    private long pollIntervalMs;
+    
+    @Value("${jobs.default-concurrency:2}")
+    private int defaultConcurrency;
+    
+    @Value("${jobs.visibility-timeout-ms:60000}")
+    private long defaultVisibilityTimeoutMs;
+    
+    @Value("${jobs.reap-batch-size:1000}")
+    private int reapBatchSize;
+    
+    private final String workerId = workerId();
+    private final List<QueueWorker> workers = new ArrayList<>();
+    private volatile boolean running;
+    
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Job workers disabled");
+            return;
+        }
+        
+        running = true;
+        for (JobHandler handler : handlers) {
+            String queue = handler.queue();
+            int concurrency = environment.getProperty("jobs.queues." + queue + ".concurrency", Integer.class, defaultConcurrency);
+            long visibilityTimeoutMs = environment.getProperty("jobs.queues." + queue + ".visibility-timeout-ms", Long.class, defaultVisibilityTimeoutMs);
+            
+            QueueWorker worker = new QueueWorker(handler, concurrency, visibilityTimeoutMs);
+            workers.add(worker);
+            worker.start();
+            log.info("Started job worker for queue '{}' with concurrency {} as {}", queue, concurrency, workerId);
+        }
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.forEach(QueueWorker::stop);
+    }
+    
+    /**
+     * Makes jobs of crashed or stuck workers claimable again once their visibility timeout passes
+     */
+    @Scheduled(fixedDelayString = "${jobs.reap-interval-ms:30000}")
+    public void reapExpired() {
+        if (!enabled) {
+            return;
+        }
+        
+        try {
+            int reaped = jobQueue.reapExpired(reapBatchSize);
+            if (reaped > 0) {
+                log.warn("Released {} jobs whose visibility timeout expired", reaped);
+            }
+        } catch (Exception e) {
+            log.error("Error releasing expired jobs", e);
+        }
+    }
+    
+    private static String workerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+    
+    private class QueueWorker {
+        private final JobHandler handler;
+        private final String queue;
+        private final long visibilityTimeoutMs;
+        private final Semaphore slots;
+        private final ExecutorService pool;
+        // Completions are deleted in bulk by the poller instead of one statement per job
+        private final Queue<Long> completed = new ConcurrentLinkedQueue<>();
+        private Thread poller;
+        
+        QueueWorker(JobHandler handler, int concurrency, long visibilityTimeoutMs) {
+            this.handler = handler;
+            this.queue = handler.queue();
+            this.visibilityTimeoutMs = visibilityTimeoutMs;
+            this.slots = new Semaphore(concurrency);
+            this.pool = Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, "job-" + queue);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        
+        void start() {
+            poller = new Thread(this::pollLoop, "job-poller-" + queue);
+            poller.setDaemon(true);
+            poller.start();
+        }
+        
+        void stop() {
+            poller.interrupt();
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("Jobs on queue '{}' still running at shutdown, they will be retried after the visibility timeout", queue);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flushCompleted();
+        }
+        
+        private void pollLoop() {
+            while (running) {
+                try {
+                    flushCompleted();
+                    
+                    // Wait for a free slot so we never claim jobs we cannot start right away
+                    slots.acquire();
+                    int free = 1 + slots.drainPermits();
+                    slots.release(free);
+                    
+                    List<Job> jobs = jobQueue.claim(queue, workerId, Math.min(free, batchSize), visibilityTimeoutMs);
+                    if (jobs.isEmpty()) {
+                        jobQueue.awaitWork(queue, pollIntervalMs);
+                        continue;
+                    }
+                    
+                    dispatch(jobs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    log.error("Error polling job queue '{}'", queue, e);
+                    sleepQuietly();
+                }
+            }
+        }
+        
+        private void dispatch(List<Job> jobs) throws InterruptedException {
+            for (int i = 0; i < jobs.size(); i++) {
+                Job job = jobs.get(i);
+                slots.acquire();
+                try {
+                    pool.execute(() -> {
+                        try {
+                            run(job);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // Shutting down: hand back everything not yet started
+                    slots.release();
+                    List<Long> unstarted = jobs.subList(i, jobs.size()).stream().map(Job::id).toList();
+                    jobQueue.release(unstarted, workerId);
+                    return;
+                }
+            }
+        }
+        
+        private void run(Job job) {
+            try {
+                handler.handle(job);
+                completed.add(job.id());
+                meterRegistry.counter("jobs.completed", "queue", queue).increment();
+            } catch (Exception e) {
+                boolean dead = false;
+                try {
+                    dead = jobQueue.fail(job, workerId, String.valueOf(e));
+                } catch (Exception failError) {
+                    log.error("Error recording failure of job {} on queue '{}'", job.id(), queue, failError);
+                }
+                
+                if (dead) {
+                    log.error("Job {} on queue '{}' failed {} times and is dead", job.id(), queue, job.attempts(), e);
+                    meterRegistry.counter("jobs.dead", "queue", queue).increment();
+                } else {
+                    log.warn("Job {} on queue '{}' failed (attempt {} of {}), retrying later: {}",
+                            job.id(), queue, job.attempts(), job.maxAttempts(), e.toString());
+                    meterRegistry.counter("jobs.failed", "queue", queue).increment();
+                }
+            }
+        }
+        
+        private void flushCompleted() {
+            List<Long> ids = new ArrayList<>();
+            Long id;
+            while ((id = completed.poll()) != null) {
+                ids.add(id);
+            }
+            try {
+                jobQueue.complete(ids);
+            } catch (Exception e) {
+                // Not deleted means redelivered after the visibility timeout, which handlers tolerate
+                log.error("Error completing {} jobs on queue '{}'", ids.size(), queue, e);
+            }
+        }
+        
+        private void sleepQuietly() {
+            try {
+                Thread.sleep(pollIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.wishmanager.job;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.wishmanager.entity.User;
+import com.wishmanager.entity.Wish;
+import com.wishmanager.entity.Wishlist;
+import com.wishmanager.repository.UserRepository;
+import com.wishmanager.repository.WishRepository;
+import com.wishmanager.repository.WishlistRepository;
+import com.wishmanager.service.BotService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Delivers Telegram notifications (invitations, wish updates, event reminders) off the request path.
+ * Payloads reference entities by ID and are resolved at delivery time.
+ */
+@Slf4j
+@Component
+public class TelegramNotificationJobHandler implements JobHandler {
+    
+    public static final String QUEUE = "telegram-notification";
+    
+    private static final String TYPE_INVITATION = "invitation";
+    private static final String TYPE_WISH = "wish";
+    private static final String TYPE_EVENT_REMINDER = "event_reminder";
+    
+    @Autowired
+    private BotService botService;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private WishlistRepository wishlistRepository;
+    
+    @Autowired
+    private WishRepository wishRepository;
+    
+    public static Map<String, Object> invitation(UUID userId, UUID wishlistId, UUID inviterId) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", TYPE_INVITATION);
+        payload.put("userId", userId);
+        payload.put("wishlistId", wishlistId);
+        payload.put("inviterId", inviterId);
+        return payload;
+    }
+    
+    public static Map<String, Object> wishUpdate(UUID userId, UUID wishId, String action, String actorName) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", TYPE_WISH);
+        payload.put("userId", userId);
+        payload.put("wishId", wishId);
+        payload.put("action", action);
+        payload.put("actorName", actorName);
+        return payload;
+    }
+    
+    public static Map<String, Object> eventReminder(UUID userId, UUID wishlistId, int daysLeft) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", TYPE_EVENT_REMINDER);
+        payload.put("userId", userId);
+        payload.put("wishlistId", wishlistId);
+        payload.put("daysLeft", daysLeft);
+        return payload;
+    }
+    
+    @Override
+    public String queue() {
+        return QUEUE;
+    }
+    
+    @Override
+    public void handle(Job job) {
+        JsonNode payload = job.payload();
+        Optional<User> user = userRepository.findById(uuid(payload, "userId"));
+        if (user.isEmpty()) {
+            log.debug("Skipping notification job {}, user no longer exists", job.id());
+            return;
+        }
+        
+        try {
+            switch (payload.path("type").asText()) {
+                case TYPE_INVITATION -> sendInvitation(user.get(), payload);
+                case TYPE_WISH -> sendWishUpdate(user.get(), payload);
+                case TYPE_EVENT_REMINDER -> sendEventReminder(user.get(), payload);
+                default -> log.warn("Skipping notification job {} with unknown type: {}", job.id(), payload);
+            }
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+                throw e;
+            }
+            // Blocked bot, deleted chat and the like will not improve with retries
+            log.warn("Dropping notification job {} for user {}: {}", job.id(), user.get().getId(), e.getStatusCode());
+        }
+    }
+    
+    private void sendInvitation(User user, JsonNode payload) {
+        Optional<Wishlist> wishlist = wishlistRepository.findById(uuid(payload, "wishlistId"));
+        if (wishlist.isEmpty()) {
+            log.debug("Skipping invitation for user {}, wishlist no longer exists", user.getId());
+            return;
+        }
+        
+        UUID inviterId = uuid(payload, "inviterId");
+        User inviter = inviterId != null ? userRepository.findById(inviterId).orElse(null) : null;
+        botService.sendInvitationNotification(user, wishlist.get(), inviter);
+    }
+    
+    private void sendWishUpdate(User user, JsonNode payload) {
+        Optional<Wish> wish = wishRepository.findById(uuid(payload, "wishId"));
+        if (wish.isEmpty()) {
+            log.debug("Skipping wish notification for user {}, wish no longer exists", user.getId());
+            return;
+        }
+        
+        botService.sendWishNotification(user, wish.get(), payload.path("action").asText(), payload.path("actorName").asText());
+    }
+    
+    private void sendEventReminder(User user, JsonNode payload) {
+        Optional<Wishlist> wishlist = wishlistRepository.findById(uuid(payload, "wishlistId"));
+        if (wishlist.isEmpty()) {
+            log.debug("Skipping event reminder for user {}, wishlist no longer exists", user.getId());
+            return;
+        }
+        
+        // Counted at delivery so the message reflects bookings made since the reminder fired
+        long freeCount = wishRepository.countByWishlistIdAndStatus(wishlist.get().getId(), Wish.Status.FREE);
+        botService.sendEventReminder(user, wishlist.get(), payload.path("daysLeft").asInt(), freeCount);
+    }
+    
+    private static UUID uuid(JsonNode payload, String field) {
+        JsonNode value = payload.get(field);
+        return value == null || value.isNull() ? null : UUID.fromString(value.asText());
+    }
+}
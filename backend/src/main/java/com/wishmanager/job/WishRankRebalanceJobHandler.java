@@ -0,0 +1,105 @@
+package com.wishmanager.job;
+
+import com.wishmanager.cache.CacheInvalidationBus;
+import com.wishmanager.cache.CacheInvalidationListener.EntityType;
+import com.wishmanager.util.RankKeys;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Rewrites the rank keys of one wishlist evenly spaced once repeated moves to the same spot have
+ * made some of them long. Order is preserved; only the keys get short again.
+ */
+@Slf4j
+@Component
+public class WishRankRebalanceJobHandler implements JobHandler {
+    
+    public static final String QUEUE = "wish-rank-rebalance";
+    
+    // Same lock as adding and moving wishes take, so they wait instead of computing keys from stale neighbours
+    private static final String LOCK_WISHLIST_SQL =
+            "SELECT id FROM wishlists WHERE id = ? FOR NO KEY UPDATE";
+    
+    private static final String LOCK_SQL =
+            "SELECT id, rank FROM wishes WHERE wishlist_id = ? ORDER BY rank, id FOR UPDATE";
+    
+    private static final String REBALANCE_SQL =
+            "UPDATE wishes w SET rank = r.rank " +
+            "FROM unnest(?::uuid[], ?::text[]) AS r(id, rank) " +
+            "WHERE w.id = r.id AND w.rank <> r.rank";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+    
+    @Value("${wishes.rank.rebalance-length:24}")
+    private int rebalanceLength;
+    
+    private TransactionTemplate transactionTemplate;
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    public static Map<String, Object> rebalance(UUID wishlistId) {
+        return Map.of("wishlistId", wishlistId);
+    }
+    
+    @Override
+    public String queue() {
+        return QUEUE;
+    }
+    
+    @Override
+    public void handle(Job job) {
+        UUID wishlistId = UUID.fromString(job.payload().get("wishlistId").asText());
+        
+        Integer updated = transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForList(LOCK_WISHLIST_SQL, UUID.class, wishlistId);
+            List<UUID> ids = new ArrayList<>();
+            int longest = 0;
+            for (Map<String, Object> row : jdbcTemplate.queryForList(LOCK_SQL, wishlistId)) {
+                ids.add((UUID) row.get("id"));
+                longest = Math.max(longest, ((String) row.get("rank")).length());
+            }
+            // Duplicate jobs for the same wishlist find the work already done
+            if (longest <= rebalanceLength) {
+                return 0;
+            }
+            
+            String[] ranks = new String[ids.size()];
+            for (int i = 0; i < ranks.length; i++) {
+                ranks[i] = RankKeys.spaced(i, ranks.length);
+            }
+            return jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(REBALANCE_SQL);
+                ps.setArray(1, connection.createArrayOf("uuid", ids.toArray()));
+                ps.setArray(2, connection.createArrayOf("text", ranks));
+                return ps;
+            });
+        });
+        
+        if (updated != null && updated > 0) {
+            invalidationBus.publish(EntityType.WISHLIST, wishlistId);
+            log.info("Rebalanced rank keys of wishlist {}, {} wishes updated", wishlistId, updated);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.wishmanager.repository;
+
+import com.wishmanager.entity.ArchivedWish;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ArchivedWishRepository extends JpaRepository<ArchivedWish, UUID> {
+    
+    List<ArchivedWish> findByWishlistIdOrderByCreatedAtDesc(UUID wishlistId);
+}
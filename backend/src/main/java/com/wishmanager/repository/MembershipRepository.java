@@ -1,6 +1,8 @@
 package com.wishmanager.repository;
 
+import com.wishmanager.dto.WishlistSummaryResponse;
 import com.wishmanager.entity.Membership;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -26,4 +28,10 @@ public interface MembershipRepository extends JpaRepository<Membership, UUID> {
     
     @Query("SELECT m FROM Membership m WHERE m.userId = :userId AND m.wishlistId = :wishlistId")
     Optional<Membership> findUserMembershipInWishlist(@Param("userId") UUID userId, @Param("wishlistId") UUID wishlistId);
+    
+    @Query("SELECT new com.wishmanager.dto.WishlistSummaryResponse(w.id, w.ownerId, w.title, w.description, w.isPublic, m.role, w.updatedAt, " +
+           "COALESCE(s.wishCount, 0), COALESCE(s.bookedCount, 0), COALESCE(s.giftedCount, 0), COALESCE(s.memberCount, 0)) " +
+           "FROM Membership m JOIN Wishlist w ON w.id = m.wishlistId LEFT JOIN WishlistStats s ON s.wishlistId = w.id " +
+           "WHERE m.userId = :userId ORDER BY w.updatedAt DESC, w.id")
+    List<WishlistSummaryResponse> findMemberWishlists(@Param("userId") UUID userId, Pageable pageable);
 }
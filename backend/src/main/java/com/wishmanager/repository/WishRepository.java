@@ -1,12 +1,19 @@
 package com.wishmanager.repository;
 
+import com.wishmanager.dto.BookedWishResponse;
 import com.wishmanager.entity.Wish;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
@@ -14,11 +21,44 @@ public interface WishRepository extends JpaRepository<Wish, UUID> {
     
     List<Wish> findByWishlistId(UUID wishlistId);
     
-    List<Wish> findByWishlistIdOrderByCreatedAtDesc(UUID wishlistId);
+    /**
+     * Loads a wish and locks its row until the transaction ends, so a status change cannot
+     * race another one or the booking sweeper, which skips locked rows.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Wish w WHERE w.id = :id")
+    Optional<Wish> findByIdForUpdate(@Param("id") UUID id);
+    
+    List<Wish> findByWishlistIdOrderByRankAscIdAsc(UUID wishlistId);
+    
+    @Query("SELECT min(w.rank) FROM Wish w WHERE w.wishlistId = :wishlistId")
+    String findFirstRank(@Param("wishlistId") UUID wishlistId);
+    
+    @Query("SELECT min(w.rank) FROM Wish w WHERE w.wishlistId = :wishlistId AND w.rank > :rank AND w.id <> :id")
+    String findNextRank(@Param("wishlistId") UUID wishlistId, @Param("rank") String rank, @Param("id") UUID id);
     
     @Query("SELECT w FROM Wish w WHERE w.wishlistId = :wishlistId AND w.status = :status")
     List<Wish> findByWishlistIdAndStatus(@Param("wishlistId") UUID wishlistId, @Param("status") Wish.Status status);
     
+    long countByWishlistIdAndStatus(UUID wishlistId, Wish.Status status);
+    
     @Query("SELECT w FROM Wish w WHERE w.bookedBy = :userId")
     List<Wish> findByBookedBy(@Param("userId") UUID userId);
+    
+    @Query("SELECT new com.wishmanager.dto.BookedWishResponse(w.id, w.name, w.status, w.hideBookerName, w.updatedAt, l.id, l.title, l.ownerId, u.displayName) " +
+           "FROM Wish w JOIN Wishlist l ON l.id = w.wishlistId JOIN User u ON u.id = l.ownerId " +
+           "WHERE w.bookedBy = :userId AND w.status IN :statuses ORDER BY w.updatedAt DESC, w.id DESC")
+    List<BookedWishResponse> findBookingsByUser(@Param("userId") UUID userId,
+                                                @Param("statuses") Collection<Wish.Status> statuses,
+                                                Pageable pageable);
+    
+    @Query("SELECT new com.wishmanager.dto.BookedWishResponse(w.id, w.name, w.status, w.hideBookerName, w.updatedAt, l.id, l.title, l.ownerId, u.displayName) " +
+           "FROM Wish w JOIN Wishlist l ON l.id = w.wishlistId JOIN User u ON u.id = l.ownerId " +
+           "WHERE w.bookedBy = :userId AND w.status IN :statuses AND (w.updatedAt, w.id) < (:before, :beforeId) " +
+           "ORDER BY w.updatedAt DESC, w.id DESC")
+    List<BookedWishResponse> findBookingsByUserBefore(@Param("userId") UUID userId,
+                                                      @Param("statuses") Collection<Wish.Status> statuses,
+                                                      @Param("before") LocalDateTime before,
+                                                      @Param("beforeId") UUID beforeId,
+                                                      Pageable pageable);
 }
@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
@@ -19,4 +20,11 @@ public interface WishlistRepository extends JpaRepository<Wishlist, UUID> {
     
     @Query("SELECT w FROM Wishlist w WHERE w.isPublic = true")
     List<Wishlist> findAllPublic();
+    
+    /**
+     * Locks a wishlist against concurrent rank key changes until the transaction ends. Adding
+     * wishes to it is not blocked, only other callers of this method are.
+     */
+    @Query(value = "SELECT id FROM wishlists WHERE id = :id FOR NO KEY UPDATE", nativeQuery = true)
+    Optional<UUID> lockForRankChange(@Param("id") UUID id);
 }
@@ -0,0 +1,11 @@
+package com.wishmanager.repository;
+
+import com.wishmanager.entity.WishlistStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface WishlistStatsRepository extends JpaRepository<WishlistStats, UUID> {
+}
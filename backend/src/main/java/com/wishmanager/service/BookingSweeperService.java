@@ -0,0 +1,182 @@
+package com.wishmanager.service;
+
+import com.wishmanager.cache.CacheInvalidationBus;
+import com.wishmanager.config.SchedulingConfig;
+import com.wishmanager.cache.CacheInvalidationListener.EntityType;
+import com.wishmanager.job.JobQueue;
+import com.wishmanager.job.TelegramNotificationJobHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Releases bookings that outlived their wishlist's booking TTL.
+ * <p>
+ * The sweep walks the wishlists that have a TTL in id order, a batch at a time, and releases the
+ * expired bookings of each batch with UPDATEs of at most chunk-size rows. Bookings in wishlists
+ * without a TTL are never read, rows being changed by a request are skipped rather than waited
+ * for, and every chunk commits on its own.
+ */
+@Slf4j
+@Service
+public class BookingSweeperService {
+    
+    private static final UUID FIRST_ID = new UUID(0, 0);
+    
+    private static final String NEXT_WISHLISTS_SQL =
+            "SELECT id FROM wishlists WHERE booking_ttl_hours IS NOT NULL AND id > ? ORDER BY id LIMIT ?";
+    
+    private static final String RELEASE_SQL =
+            "UPDATE wishes w SET status = 'FREE', booked_by = NULL, hide_booker_name = false " +
+            "FROM (" +
+            "  SELECT c.id, c.booked_by FROM wishlists l JOIN wishes c ON c.wishlist_id = l.id " +
+            "  WHERE l.id = ANY(?) AND l.booking_ttl_hours IS NOT NULL AND c.status = 'BOOKED' " +
+            "  AND c.updated_at < CURRENT_TIMESTAMP - make_interval(hours => l.booking_ttl_hours) " +
+            "  LIMIT ? FOR UPDATE OF c SKIP LOCKED) expired " +
+            "WHERE w.id = expired.id " +
+            "RETURNING w.id, w.wishlist_id, expired.booked_by";
+    
+    private static final String EXPIRED_ACTION = "Booking expired";
+    private static final String SWEEPER_ACTOR = "Wish Manager";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+    
+    @Autowired
+    private JobQueue jobQueue;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private WishlistStatsService statsService;
+    
+    @Value("${booking-sweeper.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${booking-sweeper.wishlist-batch-size:500}")
+    private int wishlistBatchSize;
+    
+    @Value("${booking-sweeper.chunk-size:1000}")
+    private int chunkSize;
+    
+    @Value("${booking-sweeper.chunk-pause-ms:50}")
+    private long chunkPauseMs;
+    
+    private TransactionTemplate transactionTemplate;
+    private Counter releasedCounter;
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        releasedCounter = meterRegistry.counter("bookings.expired");
+    }
+    
+    @Scheduled(fixedDelayString = "${booking-sweeper.interval-ms:300000}",
+               initialDelayString = "${booking-sweeper.initial-delay-ms:30000}",
+               scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        
+        try {
+            releaseExpiredBookings();
+        } catch (InterruptedException e) {
+            // The maintenance scheduler is shutting down
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Error releasing expired bookings", e);
+        }
+    }
+    
+    public int releaseExpiredBookings() throws InterruptedException {
+        UUID cursor = FIRST_ID;
+        int total = 0;
+        
+        while (true) {
+            List<UUID> wishlistIds = jdbcTemplate.queryForList(NEXT_WISHLISTS_SQL, UUID.class, cursor, wishlistBatchSize);
+            if (wishlistIds.isEmpty()) {
+                break;
+            }
+            
+            // A full chunk may have left more expired bookings in the batch
+            int released;
+            do {
+                released = transactionTemplate.execute(status -> releaseChunk(wishlistIds));
+                total += released;
+                if (released > 0) {
+                    Thread.sleep(chunkPauseMs);
+                }
+            } while (released == chunkSize);
+            
+            if (wishlistIds.size() < wishlistBatchSize) {
+                break;
+            }
+            cursor = wishlistIds.get(wishlistIds.size() - 1);
+        }
+        
+        if (total > 0) {
+            log.info("Released {} expired bookings", total);
+        }
+        return total;
+    }
+    
+    private int releaseChunk(List<UUID> batch) {
+        List<Map<String, Object>> released = jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(RELEASE_SQL);
+            ps.setArray(1, connection.createArrayOf("uuid", batch.toArray()));
+            ps.setInt(2, chunkSize);
+            return ps;
+        }, new ColumnMapRowMapper());
+        if (released.isEmpty()) {
+            return 0;
+        }
+        
+        Set<UUID> wishlistIds = new HashSet<>();
+        List<Map<String, Object>> notifications = new ArrayList<>();
+        for (Map<String, Object> row : released) {
+            UUID wishId = (UUID) row.get("id");
+            UUID bookerId = (UUID) row.get("booked_by");
+            wishlistIds.add((UUID) row.get("wishlist_id"));
+            if (bookerId != null) {
+                notifications.add(TelegramNotificationJobHandler.wishUpdate(bookerId, wishId, EXPIRED_ACTION, SWEEPER_ACTOR));
+            }
+        }
+        // Every released booking turns one BOOKED wish of its wishlist back to FREE
+        statsService.adjustAll(released.stream().map(row -> (UUID) row.get("wishlist_id")).toList(), 0, -1, 0, 0);
+        
+        // One invalidation per wishlist rather than per wish keeps NOTIFY traffic proportional to lists
+        wishlistIds.forEach(wishlistId -> invalidationBus.publish(EntityType.WISHLIST, wishlistId));
+        
+        // Tell the former bookers; the jobs commit together with the release
+        jobQueue.enqueueAll(TelegramNotificationJobHandler.QUEUE, notifications);
+        
+        releasedCounter.increment(released.size());
+        log.debug("Released {} expired bookings in {} wishlists", released.size(), wishlistIds.size());
+        return released.size();
+    }
+}
@@ -0,0 +1,160 @@
+package com.wishmanager.service;
+
+import com.wishmanager.config.ReplicaRoutingDataSource;
+import com.wishmanager.dto.BookedWishResponse;
+import com.wishmanager.dto.BootstrapResponse;
+import com.wishmanager.dto.UserResponse;
+import com.wishmanager.dto.WishlistResponse;
+import com.wishmanager.dto.WishlistSummaryResponse;
+import com.wishmanager.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Assembles the mini-app's first screen in one call. The user, their wishlists, their bookings and
+ * the deep-linked wishlist are independent reads, so they run in parallel on a small bounded pool;
+ * when the pool is saturated the request thread runs the reads itself instead of queueing them.
+ */
+@Slf4j
+@Service
+public class BootstrapService {
+    
+    // Deep-link payload of /start, as in t.me/<bot>?start=wishlist_<id>
+    public static final String WISHLIST_START_PREFIX = "wishlist_";
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private WishlistService wishlistService;
+    
+    @Autowired
+    private WishService wishService;
+    
+    @Value("${bootstrap.threads:8}")
+    private int threads;
+    
+    @Value("${bootstrap.queue-capacity:64}")
+    private int queueCapacity;
+    
+    @Value("${bootstrap.timeout-ms:5000}")
+    private long timeoutMs;
+    
+    @Value("${bootstrap.page-size:20}")
+    private int pageSize;
+    
+    private ThreadPoolExecutor executor;
+    
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bootstrap-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+    
+    public BootstrapResponse bootstrap(UUID userId, String startParam) {
+        log.debug("Bootstrapping mini-app for user {} - start param: {}", userId, startParam);
+        
+        UUID startWishlistId = parseStartParam(startParam);
+        CompletableFuture<UserResponse> user = submit(() -> userRepository.findById(userId)
+                .map(found -> new UserResponse(found.getId(), found.getDisplayName(), found.getAvatarUrl()))
+                .orElseThrow(() -> {
+                    log.error("User not found with ID: {}", userId);
+                    return new RuntimeException("User not found with id: " + userId);
+                }));
+        CompletableFuture<List<WishlistSummaryResponse>> wishlists = submit(() -> wishlistService.getMemberWishlists(userId, 0, pageSize));
+        CompletableFuture<List<BookedWishResponse>> bookings = submit(() -> wishService.getBookedWishes(userId, null, null, pageSize));
+        CompletableFuture<WishlistResponse> startWishlist = startWishlistId == null
+                ? CompletableFuture.completedFuture(null)
+                : submit(() -> loadStartWishlist(startWishlistId));
+        
+        BootstrapResponse response = new BootstrapResponse(await(user), await(wishlists), await(bookings), await(startWishlist));
+        log.info("Bootstrapped mini-app for user {} - {} wishlists, {} bookings, start wishlist: {}",
+                userId, response.getWishlists().size(), response.getBookings().size(), startWishlistId);
+        return response;
+    }
+    
+    /**
+     * Wishlist ID from a {@code wishlist_<id>} start parameter, null for anything else
+     */
+    public static UUID parseStartParam(String startParam) {
+        if (startParam == null || !startParam.startsWith(WISHLIST_START_PREFIX)) {
+            return null;
+        }
+        try {
+            return UUID.fromString(startParam.substring(WISHLIST_START_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring malformed start parameter: {}", startParam);
+            return null;
+        }
+    }
+    
+    private WishlistResponse loadStartWishlist(UUID wishlistId) {
+        try {
+            return wishlistService.getWishlistById(wishlistId);
+        } catch (RuntimeException e) {
+            // A stale deep link should not keep the app from starting
+            log.warn("Deep-linked wishlist {} could not be loaded: {}", wishlistId, e.getMessage());
+            return null;
+        }
+    }
+    
+    private <T> CompletableFuture<T> submit(Supplier<T> read) {
+        // Worker threads route to the primary whenever the request would (read-your-writes)
+        boolean primaryRequired = ReplicaRoutingDataSource.isPrimaryRequired();
+        return CompletableFuture.supplyAsync(() -> {
+            // Restored afterwards: with a saturated pool this runs on the request thread itself
+            boolean previous = ReplicaRoutingDataSource.isPrimaryRequired();
+            ReplicaRoutingDataSource.requirePrimary(primaryRequired);
+            try {
+                return read.get();
+            } finally {
+                ReplicaRoutingDataSource.requirePrimary(previous);
+            }
+        }, executor);
+    }
+    
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Bootstrap read failed", e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.error("Bootstrap read timed out after {} ms", timeoutMs);
+            throw new RuntimeException("Bootstrap timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while bootstrapping", e);
+        }
+    }
+}
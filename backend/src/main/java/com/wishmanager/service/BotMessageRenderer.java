@@ -0,0 +1,354 @@
+package com.wishmanager.service;
+
+import com.wishmanager.cache.CacheInvalidationListener;
+import com.wishmanager.entity.Wishlist;
+import com.wishmanager.entity.WishlistStats;
+import com.wishmanager.repository.WishlistRepository;
+import com.wishmanager.repository.WishlistStatsRepository;
+import com.wishmanager.util.TelegramTemplate;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Renders the bot's messages from templates compiled at startup, with every user-supplied value
+ * escaped for the HTML parse mode.
+ * <p>
+ * Wishlist cards are cached per wishlist until the wishlist, its wishes or its members change, so
+ * repeated button presses on a popular list neither hit the database nor rebuild the text. The
+ * web app keyboard is built once and shared by every message.
+ */
+@Slf4j
+@Component
+public class BotMessageRenderer implements CacheInvalidationListener {
+    
+    public static final TelegramTemplate.ParseMode PARSE_MODE = TelegramTemplate.ParseMode.HTML;
+    
+    // Messages without values are rendered once, up front
+    private static final String WELCOME = TelegramTemplate.html(
+            "🎁 <b>Welcome to Wish Manager Bot!</b>\n\n" +
+            "I can help you manage your wishlists and send notifications about wish activities.\n\n" +
+            "Available commands:\n" +
+            "/start - Show this welcome message\n" +
+            "/help - Show help information\n" +
+            "/mywishlists - Show your wishlists\n" +
+            "/add - Add a wish right here in the chat\n\n" +
+            "You can also use the web app by clicking the button below:").render();
+    
+    private static final String HELP = TelegramTemplate.html(
+            "📚 <b>Wish Manager Bot Help</b>\n\n" +
+            "Commands:\n" +
+            "• /start - Welcome message and setup\n" +
+            "• /help - Show this help message\n" +
+            "• /mywishlists - List your wishlists\n" +
+            "• /add - Add a wish step by step, /cancel to stop\n\n" +
+            "Features:\n" +
+            "• Create and manage wishlists\n" +
+            "• Invite friends to your wishlists\n" +
+            "• Get notifications when wishes are booked or gifted\n" +
+            "• Access your wishlists via the web app\n\n" +
+            "Use the web app button below to access all features!").render();
+    
+    private static final TelegramTemplate UNKNOWN_COMMAND = TelegramTemplate.html(
+            "❓ Unknown command: {command}\n\n" +
+            "Use /help to see available commands or click the web app button to access all features.",
+            "command");
+    
+    private static final String REFRESHED = TelegramTemplate.html(
+            "🔄 Refreshed! Use the web app button to access your wishlists.").render();
+    
+    private static final TelegramTemplate WISHLIST_CARD = TelegramTemplate.html(
+            "📋 <b>{title}</b>\n\n" +
+            "Description: {description}\n" +
+            "Visibility: {visibility}\n" +
+            "{wishes} wishes, {booked} booked, {gifted} gifted, {members} members\n\n" +
+            "Click below to open in web app:",
+            "title", "description", "visibility", "wishes", "booked", "gifted", "members");
+    
+    private static final TelegramTemplate WISH_UPDATE = TelegramTemplate.html(
+            "🎁 <b>Wish Update!</b>\n\n" +
+            "Wish: {wish}\n" +
+            "Action: {action}\n" +
+            "By: {actor}\n\n" +
+            "Click below to view the wishlist:",
+            "wish", "action", "actor");
+    
+    private static final TelegramTemplate INVITATION = TelegramTemplate.html(
+            "📋 <b>You've been invited to a wishlist!</b>\n\n" +
+            "Wishlist: {wishlist}\n" +
+            "Invited by: {inviter}\n\n" +
+            "Click below to view the wishlist:",
+            "wishlist", "inviter");
+    
+    private static final TelegramTemplate EVENT_REMINDER = TelegramTemplate.html(
+            "⏰ <b>Event Reminder!</b>\n\n" +
+            "Wishlist: {wishlist}\n" +
+            "Event in {days}, {free} still free.\n\n" +
+            "Click below to view the wishlist:",
+            "wishlist", "days", "free");
+    
+    private static final String ADD_NOT_LINKED = TelegramTemplate.html(
+            "🔗 Please open the web app once so I know who you are, then send /add again.").render();
+    
+    private static final String ADD_NO_WISHLISTS = TelegramTemplate.html(
+            "📋 You don't have a wishlist yet. Create one in the web app, then send /add again.").render();
+    
+    private static final String ADD_CHOOSE_WISHLIST = TelegramTemplate.html(
+            "📋 Which wishlist should the wish go to?").render();
+    
+    private static final TelegramTemplate ADD_NAME = TelegramTemplate.html(
+            "🎁 Adding a wish to <b>{wishlist}</b>.\n\n" +
+            "What is it called? Send /cancel to stop.",
+            "wishlist");
+    
+    private static final String ADD_NAME_INVALID = TelegramTemplate.html(
+            "✏️ Please send the wish's name as text, up to 255 characters.").render();
+    
+    private static final String ADD_LINK = TelegramTemplate.html(
+            "🔗 Send a link to it, or /skip.").render();
+    
+    private static final String ADD_LINK_INVALID = TelegramTemplate.html(
+            "🔗 That doesn't look like a link. Send one starting with http:// or https://, or /skip.").render();
+    
+    private static final String ADD_DESCRIPTION = TelegramTemplate.html(
+            "📝 Any details, like size or color? Send them, or /skip.").render();
+    
+    private static final TelegramTemplate ADD_DONE = TelegramTemplate.html(
+            "✅ Added <b>{wish}</b> to {wishlist}!",
+            "wish", "wishlist");
+    
+    private static final String ADD_FAILED = TelegramTemplate.html(
+            "⚠️ Sorry, the wish could not be saved. Please try again with /add.").render();
+    
+    private static final String ADD_CANCELLED = TelegramTemplate.html(
+            "👌 Cancelled, nothing was added.").render();
+    
+    private static final String NOTHING_TO_CANCEL = TelegramTemplate.html(
+            "There is nothing to cancel.").render();
+    
+    private static final String WEB_APP_BUTTON_TEXT = "🎁 Open Wish Manager";
+    
+    @Autowired
+    private WishlistRepository wishlistRepository;
+    
+    @Autowired
+    private WishlistStatsRepository wishlistStatsRepository;
+    
+    @Value("${telegram.bot.webapp-url}")
+    private String webappUrl;
+    
+    @Value("${telegram.bot.card-cache-size:10000}")
+    private int cardCacheSize;
+    
+    private Map<String, Object> webAppKeyboard;
+    private Map<UUID, String> cards;
+    
+    // Per wishlist, the version of its last change; a card rendered across a change is not cached,
+    // as it may predate it. All guarded by the cards lock
+    private Map<UUID, Long> versions;
+    private long lastVersion;
+    // Version of wishlists without an entry: not below any entry dropped from versions
+    private long versionFloor;
+    
+    @PostConstruct
+    public void init() {
+        webAppKeyboard = buildWebAppKeyboard(webappUrl);
+        cards = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, String> eldest) {
+                return size() > cardCacheSize;
+            }
+        };
+        versions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Long> eldest) {
+                if (size() <= cardCacheSize) {
+                    return false;
+                }
+                versionFloor = Math.max(versionFloor, eldest.getValue());
+                return true;
+            }
+        };
+    }
+    
+    /**
+     * Inline keyboard markup with the web app button
+     */
+    public Map<String, Object> webAppKeyboard() {
+        return webAppKeyboard;
+    }
+    
+    /**
+     * Web app keyboard whose button passes a start parameter on to the app; the shared one for null
+     */
+    public Map<String, Object> webAppKeyboardWithStartParam(String startParam) {
+        if (startParam == null) {
+            return webAppKeyboard;
+        }
+        return buildWebAppKeyboard(webappUrl + (webappUrl.contains("?") ? "&" : "?") + "startapp=" + startParam);
+    }
+    
+    public String welcome() {
+        return WELCOME;
+    }
+    
+    public String help() {
+        return HELP;
+    }
+    
+    public String unknownCommand(String command) {
+        return UNKNOWN_COMMAND.render(command);
+    }
+    
+    public String refreshed() {
+        return REFRESHED;
+    }
+    
+    public String wishUpdate(String wishName, String action, String actorName) {
+        return WISH_UPDATE.render(wishName, action, actorName);
+    }
+    
+    public String invitation(String wishlistTitle, String inviterName) {
+        return INVITATION.render(wishlistTitle, inviterName);
+    }
+    
+    public String eventReminder(String wishlistTitle, int daysLeft, long freeCount) {
+        return EVENT_REMINDER.render(wishlistTitle,
+                daysLeft + (daysLeft == 1 ? " day" : " days"),
+                freeCount + (freeCount == 1 ? " wish is" : " wishes are"));
+    }
+    
+    public String addNotLinked() {
+        return ADD_NOT_LINKED;
+    }
+    
+    public String addNoWishlists() {
+        return ADD_NO_WISHLISTS;
+    }
+    
+    public String addChooseWishlist() {
+        return ADD_CHOOSE_WISHLIST;
+    }
+    
+    public String addName(String wishlistTitle) {
+        return ADD_NAME.render(wishlistTitle);
+    }
+    
+    public String addNameInvalid() {
+        return ADD_NAME_INVALID;
+    }
+    
+    public String addLink() {
+        return ADD_LINK;
+    }
+    
+    public String addLinkInvalid() {
+        return ADD_LINK_INVALID;
+    }
+    
+    public String addDescription() {
+        return ADD_DESCRIPTION;
+    }
+    
+    public String addDone(String wishName, String wishlistTitle) {
+        return ADD_DONE.render(wishName, wishlistTitle);
+    }
+    
+    public String addFailed() {
+        return ADD_FAILED;
+    }
+    
+    public String addCancelled() {
+        return ADD_CANCELLED;
+    }
+    
+    public String nothingToCancel() {
+        return NOTHING_TO_CANCEL;
+    }
+    
+    /**
+     * One button per wishlist, each answering with its callback data prefix and ID
+     */
+    public Map<String, Object> wishlistChoiceKeyboard(List<Wishlist> wishlists, String callbackPrefix) {
+        List<List<Map<String, Object>>> rows = new ArrayList<>(wishlists.size());
+        for (Wishlist wishlist : wishlists) {
+            // Button labels are plain text, no escaping
+            rows.add(List.of(Map.of("text", wishlist.getTitle(), "callback_data", callbackPrefix + wishlist.getId())));
+        }
+        return Map.of("inline_keyboard", rows);
+    }
+    
+    /**
+     * The wishlist's card, from the cache when nothing changed since it was rendered
+     * @return empty if the wishlist does not exist
+     */
+    public Optional<String> wishlistCard(UUID wishlistId) {
+        long renderedAt;
+        synchronized (cards) {
+            String cached = cards.get(wishlistId);
+            if (cached != null) {
+                log.debug("Wishlist card {} served from cache", wishlistId);
+                return Optional.of(cached);
+            }
+            renderedAt = version(wishlistId);
+        }
+        
+        Optional<String> card = wishlistRepository.findById(wishlistId).map(this::renderCard);
+        card.ifPresent(text -> {
+            synchronized (cards) {
+                if (version(wishlistId) == renderedAt) {
+                    cards.put(wishlistId, text);
+                }
+            }
+        });
+        return card;
+    }
+    
+    @Override
+    public void onInvalidate(EntityType type, UUID id) {
+        if (type == EntityType.WISHLIST) {
+            synchronized (cards) {
+                versions.put(id, ++lastVersion);
+                cards.remove(id);
+            }
+        }
+    }
+    
+    @Override
+    public void onInvalidateAll() {
+        synchronized (cards) {
+            versionFloor = ++lastVersion;
+            versions.clear();
+            cards.clear();
+        }
+    }
+    
+    private long version(UUID wishlistId) {
+        Long version = versions.get(wishlistId);
+        return version != null ? version : versionFloor;
+    }
+    
+    private String renderCard(Wishlist wishlist) {
+        WishlistStats stats = wishlistStatsRepository.findById(wishlist.getId())
+                .orElse(new WishlistStats(wishlist.getId(), 0, 0, 0, 0));
+        return WISHLIST_CARD.render(
+                wishlist.getTitle(),
+                wishlist.getDescription() != null ? wishlist.getDescription() : "No description",
+                wishlist.getIsPublic() ? "Public" : "Private",
+                stats.getWishCount(), stats.getBookedCount(), stats.getGiftedCount(), stats.getMemberCount());
+    }
+    
+    private static Map<String, Object> buildWebAppKeyboard(String url) {
+        Map<String, Object> button = Map.of("text", WEB_APP_BUTTON_TEXT, "web_app", Map.of("url", url));
+        return Map.of("inline_keyboard", List.of(List.of(button)));
+    }
+}
@@ -0,0 +1,271 @@
+package com.wishmanager.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Alternative to {@link com.wishmanager.controller.BotWebhookController} that pulls updates
+ * with getUpdates long polling, so the bot works without a public HTTPS URL.
+ * Enabled with {@code telegram.bot.mode=polling}.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "polling")
+public class BotPollingService {
+    
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final String BOT_PATH_PREFIX = "/bot";
+    private static final String GET_UPDATES_ENDPOINT = "/getUpdates";
+    private static final String DELETE_WEBHOOK_ENDPOINT = "/deleteWebhook";
+    
+    @Autowired
+    private BotService botService;
+    
+    @Value("${telegram.bot.token}")
+    private String botToken;
+    
+    @Value("${telegram.bot.api-url:https://api.telegram.org}")
+    private String apiUrl;
+    
+    @Value("${telegram.bot.polling.batch-size:100}")
+    private int batchSize;
+    
+    @Value("${telegram.bot.polling.timeout-seconds:30}")
+    private int timeoutSeconds;
+    
+    @Value("${telegram.bot.polling.workers:4}")
+    private int workers;
+    
+    @Value("${telegram.bot.polling.max-attempts:5}")
+    private int maxAttempts;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    /** Update IDs above the committed offset that were already handled, skipped on redelivery */
+    private final Set<Long> handledAboveOffset = new HashSet<>();
+    
+    /** Failed attempts per update still below the offset, written by the workers */
+    private final Map<Long, Integer> attempts = new ConcurrentHashMap<>();
+    
+    private RestTemplate restTemplate;
+    private ExecutorService executor;
+    private Thread pollingThread;
+    private volatile boolean running;
+    private long offset;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        
+        // The read timeout must outlive the long poll itself
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(10_000);
+        requestFactory.setReadTimeout((timeoutSeconds + 10) * 1000);
+        restTemplate = new RestTemplate(requestFactory);
+        
+        AtomicInteger threadCounter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "bot-update-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        // getUpdates is rejected by Telegram while a webhook is registered
+        deleteWebhook();
+        
+        running = true;
+        pollingThread = new Thread(this::pollLoop, "bot-update-poller");
+        pollingThread.setDaemon(true);
+        pollingThread.start();
+        
+        log.info("Started Telegram long polling - batchSize: {}, timeout: {}s, workers: {}",
+                batchSize, timeoutSeconds, workers);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (pollingThread != null) {
+            pollingThread.interrupt();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        log.info("Stopped Telegram long polling at offset {}", offset);
+    }
+    
+    private void pollLoop() {
+        long backoffMs = 1000;
+        
+        while (running) {
+            try {
+                List<JsonNode> updates = fetchUpdates();
+                if (updates.isEmpty() || processBatch(updates)) {
+                    backoffMs = 1000;
+                    continue;
+                }
+                
+                // A failed update comes straight back with the next poll, so give its cause time to clear
+                log.debug("Update failed, polling again in {} ms", backoffMs);
+                Thread.sleep(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+                
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.error("Error polling Telegram updates at offset {}, retrying in {} ms", offset, backoffMs, e);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+    
+    /**
+     * Fetches the next batch. Passing the offset confirms every update below it,
+     * which is how handled updates are committed on Telegram's side.
+     */
+    private List<JsonNode> fetchUpdates() throws Exception {
+        String url = apiUrl + BOT_PATH_PREFIX + botToken + GET_UPDATES_ENDPOINT +
+                "?offset=" + offset + "&limit=" + batchSize + "&timeout=" + timeoutSeconds;
+        
+        String body = restTemplate.getForObject(url, String.class);
+        JsonNode response = objectMapper.readTree(body);
+        
+        if (response == null || !response.path("ok").asBoolean(false)) {
+            throw new IllegalStateException("getUpdates failed: " + body);
+        }
+        
+        List<JsonNode> updates = new ArrayList<>();
+        response.path("result").forEach(updates::add);
+        log.debug("Fetched {} updates at offset {}", updates.size(), offset);
+        return updates;
+    }
+    
+    /**
+     * Handles a batch in parallel while keeping updates of the same chat in order.
+     * The offset only moves past an update once it and everything before it were handled;
+     * a failed update stops its chat and is redelivered on the next poll.
+     * @return false if an update failed and will be redelivered
+     */
+    private boolean processBatch(List<JsonNode> updates) throws InterruptedException {
+        Map<Object, List<JsonNode>> updatesByChat = new LinkedHashMap<>();
+        long maxUpdateId = offset - 1;
+        
+        for (JsonNode update : updates) {
+            long updateId = update.get("update_id").asLong();
+            maxUpdateId = Math.max(maxUpdateId, updateId);
+            if (handledAboveOffset.contains(updateId)) {
+                continue;
+            }
+            Long chatId = botService.resolveChatId(update);
+            Object key = chatId != null ? chatId : "update_" + updateId;
+            updatesByChat.computeIfAbsent(key, k -> new ArrayList<>()).add(update);
+        }
+        
+        List<Future<ChatResult>> futures = new ArrayList<>();
+        for (List<JsonNode> chatUpdates : updatesByChat.values()) {
+            futures.add(executor.submit(() -> processChat(chatUpdates)));
+        }
+        
+        long firstFailedId = Long.MAX_VALUE;
+        for (Future<ChatResult> future : futures) {
+            ChatResult result;
+            try {
+                result = future.get();
+            } catch (ExecutionException e) {
+                // processChat never throws, so this only happens on executor failure
+                log.error("Unexpected error in update worker", e);
+                continue;
+            }
+            handledAboveOffset.addAll(result.handledIds());
+            if (result.failedId() != null) {
+                firstFailedId = Math.min(firstFailedId, result.failedId());
+            }
+        }
+        
+        offset = firstFailedId != Long.MAX_VALUE ? firstFailedId : maxUpdateId + 1;
+        handledAboveOffset.removeIf(id -> id < offset);
+        attempts.keySet().removeIf(id -> id < offset);
+        
+        log.debug("Processed batch of {} updates in {} chats, next offset: {}",
+                updates.size(), updatesByChat.size(), offset);
+        return firstFailedId == Long.MAX_VALUE;
+    }
+    
+    private ChatResult processChat(List<JsonNode> chatUpdates) {
+        List<Long> handledIds = new ArrayList<>();
+        
+        for (JsonNode update : chatUpdates) {
+            long updateId = update.get("update_id").asLong();
+            try {
+                botService.handleUpdate(update);
+            } catch (HttpClientErrorException e) {
+                if (e.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)) {
+                    log.warn("Rate limited by Telegram on update {}, holding back the rest of its chat", updateId);
+                    return new ChatResult(handledIds, updateId);
+                }
+                // Telegram rejected the request itself (blocked bot, deleted message), a retry gets the same answer
+                log.warn("Telegram rejected the reply to update {}, skipping it: {}", updateId, e.getMessage());
+            } catch (Exception e) {
+                int attempt = attempts.merge(updateId, 1, Integer::sum);
+                if (attempt < maxAttempts) {
+                    log.error("Error handling update {} (attempt {} of {}), holding back the rest of its chat",
+                            updateId, attempt, maxAttempts, e);
+                    return new ChatResult(handledIds, updateId);
+                }
+                // Dead letter: logged in full and committed, so one poison update cannot stall every chat
+                log.error("Giving up on update {} after {} attempts: {}", updateId, attempt, update, e);
+            }
+            handledIds.add(updateId);
+        }
+        return new ChatResult(handledIds, null);
+    }
+    
+    private void deleteWebhook() {
+        try {
+            String url = apiUrl + BOT_PATH_PREFIX + botToken + DELETE_WEBHOOK_ENDPOINT;
+            restTemplate.postForObject(url, null, String.class);
+            log.debug("Deleted webhook before switching to long polling");
+        } catch (Exception e) {
+            log.warn("Could not delete webhook, getUpdates may be rejected", e);
+        }
+    }
+    
+    private record ChatResult(List<Long> handledIds, Long failedId) {
+    }
+}
@@ -6,8 +6,8 @@ import com.wishmanager.entity.User;
 import com.wishmanager.entity.Wishlist;
 import com.wishmanager.entity.Wish;
 import com.wishmanager.repository.UserRepository;
-import com.wishmanager.repository.WishlistRepository;
 import com.wishmanager.repository.MembershipRepository;
+import com.wishmanager.service.ConversationStore.Conversation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -28,7 +28,9 @@ import java.util.UUID;
 @Slf4j
 public class BotService {
     
-    private final WishlistRepository wishlistRepository;
+    private final BotMessageRenderer messageRenderer;
+    private final WishDialogService wishDialogService;
+    private final RateLimitService rateLimitService;
     // Future use: UserRepository and MembershipRepository for advanced features
     @SuppressWarnings("unused")
     private final UserRepository userRepository;
@@ -43,12 +45,14 @@ public class BotService {
     @Value("${telegram.bot.username}")
     private String botUsername;
     
-    @Value("${telegram.bot.webapp-url}")
-    private String webappUrl;
+    @Value("${telegram.bot.api-url:https://api.telegram.org}")
+    private String apiUrl;
     
-    private static final String TELEGRAM_API_URL = "https://api.telegram.org/bot";
+    private static final String BOT_PATH_PREFIX = "/bot";
     private static final String SEND_MESSAGE_ENDPOINT = "/sendMessage";
     private static final String EDIT_MESSAGE_TEXT_ENDPOINT = "/editMessageText";
+    // Per-chat limit for both ingestion modes; the policy name predates polling
+    private static final String CHAT_POLICY = "webhook";
     
     /**
      * Handles incoming Telegram webhook updates
@@ -59,55 +63,96 @@ public class BotService {
             log.debug("Received webhook update: {}", updateJson);
             
             JsonNode update = objectMapper.readTree(updateJson);
-            
-            // Handle different types of updates
-            if (update.has("message")) {
-                handleMessage(update.get("message"));
-            } else if (update.has("callback_query")) {
-                handleCallbackQuery(update.get("callback_query"));
-            } else if (update.has("inline_query")) {
-                handleInlineQuery(update.get("inline_query"));
-            } else {
-                log.debug("Unhandled update type: {}", update);
-            }
+            handleUpdate(update);
             
         } catch (Exception e) {
             log.error("Error processing webhook update: {}", updateJson, e);
         }
     }
     
+    /**
+     * Dispatches an already parsed update. Unlike the webhook entry point this
+     * lets exceptions propagate, so callers can decide whether the update counts as handled.
+     * Updates from a chat over its rate limit are dropped and count as handled, since a
+     * redelivered flood would only be limited again.
+     * @param update Single element of a webhook body or of a getUpdates result
+     */
+    public void handleUpdate(JsonNode update) {
+        Long chatId = resolveChatId(update);
+        if (chatId != null && rateLimitService.tryAcquire(CHAT_POLICY, String.valueOf(chatId)) > 0) {
+            log.warn("Dropping update from rate limited chat {}", chatId);
+            return;
+        }
+        
+        // Handle different types of updates
+        if (update.has("message")) {
+            handleMessage(update.get("message"));
+        } else if (update.has("callback_query")) {
+            handleCallbackQuery(update.get("callback_query"));
+        } else if (update.has("inline_query")) {
+            handleInlineQuery(update.get("inline_query"));
+        } else {
+            log.debug("Unhandled update type: {}", update);
+        }
+    }
+    
+    /**
+     * Resolves the chat an update belongs to, used to keep per-chat ordering
+     * @return chat ID, or null if the update is not bound to a chat
+     */
+    public Long resolveChatId(JsonNode update) {
+        JsonNode chat = null;
+        if (update.has("message")) {
+            chat = update.get("message").get("chat");
+        } else if (update.has("callback_query") && update.get("callback_query").has("message")) {
+            chat = update.get("callback_query").get("message").get("chat");
+        } else if (update.has("inline_query")) {
+            // Inline queries have no chat; the sender is the natural ordering key
+            chat = update.get("inline_query").get("from");
+        }
+        
+        if (chat == null || !chat.has("id")) {
+            return null;
+        }
+        return chat.get("id").asLong();
+    }
+    
     /**
      * Handles incoming messages from users
      */
     private void handleMessage(JsonNode message) {
-        try {
-            JsonNode chat = message.get("chat");
-            JsonNode from = message.get("from");
-            
-            if (chat == null || from == null) {
-                log.warn("Message missing chat or from information");
-                return;
-            }
-            
-            long chatId = chat.get("id").asLong();
-            long userId = from.get("id").asLong();
-            String text = message.has("text") ? message.get("text").asText() : null;
-            
-            log.info("Received message from user {} in chat {}: {}", userId, chatId, text);
-            
-            // Handle different commands
-            if (text != null) {
-                if (text.startsWith("/start")) {
-                    handleStartCommand(chatId, userId, text);
-                } else if (text.startsWith("/help")) {
-                    handleHelpCommand(chatId, userId);
+        JsonNode chat = message.get("chat");
+        JsonNode from = message.get("from");
+        
+        if (chat == null || from == null) {
+            log.warn("Message missing chat or from information");
+            return;
+        }
+        
+        long chatId = chat.get("id").asLong();
+        long userId = from.get("id").asLong();
+        String text = message.has("text") ? message.get("text").asText() : null;
+        
+        log.info("Received message from user {} in chat {}: {}", userId, chatId, text);
+        
+        // Handle different commands
+        if (text != null) {
+            if (text.startsWith("/start")) {
+                handleStartCommand(chatId, userId, text);
+            } else if (text.startsWith("/help")) {
+                handleHelpCommand(chatId, userId);
+            } else if (text.startsWith("/add")) {
+                handleAddCommand(chatId, userId);
+            } else if (text.startsWith("/cancel")) {
+                handleCancelCommand(chatId, userId);
+            } else {
+                Optional<Conversation> conversation = wishDialogService.activeConversation(chatId);
+                if (conversation.isPresent()) {
+                    handleDialogAnswer(conversation.get(), userId, text);
                 } else {
                     handleUnknownCommand(chatId, userId, text);
                 }
             }
-            
-        } catch (Exception e) {
-            log.error("Error handling message", e);
         }
     }
     
@@ -115,30 +160,28 @@ public class BotService {
      * Handles callback queries from inline keyboards
      */
     private void handleCallbackQuery(JsonNode callbackQuery) {
-        try {
-            JsonNode message = callbackQuery.get("message");
-            JsonNode data = callbackQuery.get("data");
-            String callbackQueryId = callbackQuery.get("id").asText();
-            
-            if (message == null || data == null) {
-                log.warn("Callback query missing message or data");
-                return;
-            }
-            
-            long chatId = message.get("chat").get("id").asLong();
-            String callbackData = data.asText();
-            
-            log.info("Received callback query: {} in chat {}", callbackData, chatId);
-            
-            // Handle different callback data
-            if (callbackData.startsWith("wishlist_")) {
-                handleWishlistCallback(chatId, callbackData, callbackQueryId);
-            } else if (callbackData.equals("refresh")) {
-                handleRefreshCallback(chatId, callbackQueryId);
-            }
-            
-        } catch (Exception e) {
-            log.error("Error handling callback query", e);
+        JsonNode message = callbackQuery.get("message");
+        JsonNode data = callbackQuery.get("data");
+        
+        if (message == null || data == null) {
+            log.warn("Callback query missing message or data");
+            return;
+        }
+        
+        long chatId = message.get("chat").get("id").asLong();
+        String callbackData = data.asText();
+        
+        log.info("Received callback query: {} in chat {}", callbackData, chatId);
+        
+        // Handle different callback data
+        // Edits address the message the keyboard is attached to, not the callback query
+        long messageId = message.get("message_id").asLong();
+        if (callbackData.startsWith("wishlist_")) {
+            handleWishlistCallback(chatId, callbackData, messageId);
+        } else if (callbackData.startsWith(WishDialogService.CALLBACK_PREFIX)) {
+            handleAddWishlistCallback(chatId, callbackQuery.get("from").get("id").asLong(), callbackData, messageId);
+        } else if (callbackData.equals("refresh")) {
+            handleRefreshCallback(chatId, messageId);
         }
     }
     
@@ -146,129 +189,95 @@ public class BotService {
      * Handles inline queries for quick access to wishlists
      */
     private void handleInlineQuery(JsonNode inlineQuery) {
-        try {
-            String queryId = inlineQuery.get("id").asText();
-            long userId = inlineQuery.get("from").get("id").asLong();
-            String query = inlineQuery.has("query") ? inlineQuery.get("query").asText() : "";
-            
-            log.info("Received inline query from user {}: {}", userId, query);
-            
-            // For now, just answer with empty results
-            // In the future, this could search user's wishlists
-            answerInlineQuery(queryId, new JsonNode[0]);
-            
-        } catch (Exception e) {
-            log.error("Error handling inline query", e);
-        }
+        String queryId = inlineQuery.get("id").asText();
+        long userId = inlineQuery.get("from").get("id").asLong();
+        String query = inlineQuery.has("query") ? inlineQuery.get("query").asText() : "";
+        
+        log.info("Received inline query from user {}: {}", userId, query);
+        
+        // For now, just answer with empty results
+        // In the future, this could search user's wishlists
+        answerInlineQuery(queryId, new JsonNode[0]);
     }
     
     /**
      * Handles /start command
      */
     private void handleStartCommand(long chatId, long userId, String command) {
-        try {
-            String welcomeMessage = "🎁 Welcome to Wish Manager Bot!\n\n" +
-                    "I can help you manage your wishlists and send notifications about wish activities.\n\n" +
-                    "Available commands:\n" +
-                    "/start - Show this welcome message\n" +
-                    "/help - Show help information\n" +
-                    "/mywishlists - Show your wishlists\n\n" +
-                    "You can also use the web app by clicking the button below:";
-            
-            Map<String, Object> keyboard = createWebAppKeyboard();
-            
-            sendMessage(chatId, welcomeMessage, keyboard);
-            
-        } catch (Exception e) {
-            log.error("Error handling start command", e);
-        }
+        // Deep links (t.me/<bot>?start=wishlist_<id>) are handed to the web app, which opens that wishlist
+        String[] parts = command.trim().split("\\s+", 2);
+        String startParam = parts.length > 1 && BootstrapService.parseStartParam(parts[1]) != null ? parts[1] : null;
+        
+        postMessage(chatId, messageRenderer.welcome(), messageRenderer.webAppKeyboardWithStartParam(startParam));
     }
     
     /**
      * Handles /help command
      */
     private void handleHelpCommand(long chatId, long userId) {
-        try {
-            String helpMessage = "📚 Wish Manager Bot Help\n\n" +
-                    "Commands:\n" +
-                    "• /start - Welcome message and setup\n" +
-                    "• /help - Show this help message\n" +
-                    "• /mywishlists - List your wishlists\n\n" +
-                    "Features:\n" +
-                    "• Create and manage wishlists\n" +
-                    "• Invite friends to your wishlists\n" +
-                    "• Get notifications when wishes are booked or gifted\n" +
-                    "• Access your wishlists via the web app\n\n" +
-                    "Use the web app button below to access all features!";
-            
-            Map<String, Object> keyboard = createWebAppKeyboard();
-            
-            sendMessage(chatId, helpMessage, keyboard);
-            
-        } catch (Exception e) {
-            log.error("Error handling help command", e);
-        }
+        postMessage(chatId, messageRenderer.help(), messageRenderer.webAppKeyboard());
+    }
+    
+    /**
+     * Handles /add command, the first step of adding a wish from the chat
+     */
+    private void handleAddCommand(long chatId, long userId) {
+        WishDialogService.Reply reply = wishDialogService.start(chatId, userId);
+        postMessage(chatId, reply.text(), reply.keyboard());
+    }
+    
+    /**
+     * Handles /cancel command
+     */
+    private void handleCancelCommand(long chatId, long userId) {
+        WishDialogService.Reply reply = wishDialogService.cancel(chatId, userId);
+        postMessage(chatId, reply.text(), reply.keyboard());
+    }
+    
+    /**
+     * Handles a message answering the current step of the /add dialog
+     */
+    private void handleDialogAnswer(Conversation conversation, long userId, String text) {
+        wishDialogService.answer(conversation, userId, text)
+                .ifPresent(reply -> postMessage(conversation.chatId(), reply.text(), reply.keyboard()));
     }
     
     /**
      * Handles unknown commands
      */
     private void handleUnknownCommand(long chatId, long userId, String command) {
-        try {
-            String response = "❓ Unknown command: " + command + "\n\n" +
-                    "Use /help to see available commands or click the web app button to access all features.";
-            
-            Map<String, Object> keyboard = createWebAppKeyboard();
-            
-            sendMessage(chatId, response, keyboard);
-            
-        } catch (Exception e) {
-            log.error("Error handling unknown command", e);
-        }
+        postMessage(chatId, messageRenderer.unknownCommand(command), messageRenderer.webAppKeyboard());
     }
     
     /**
      * Handles wishlist-related callbacks
      */
-    private void handleWishlistCallback(long chatId, String callbackData, String callbackQueryId) {
+    private void handleWishlistCallback(long chatId, String callbackData, long messageId) {
+        UUID wishlistId;
         try {
-            // Extract wishlist ID from callback data
-            String[] parts = callbackData.split("_");
-            if (parts.length >= 2) {
-                UUID wishlistId = UUID.fromString(parts[1]);
-                Optional<Wishlist> wishlistOpt = wishlistRepository.findById(wishlistId);
-                
-                if (wishlistOpt.isPresent()) {
-                    Wishlist wishlist = wishlistOpt.get();
-                    String message = "📋 " + wishlist.getTitle() + "\n\n" +
-                            "Description: " + (wishlist.getDescription() != null ? wishlist.getDescription() : "No description") + "\n" +
-                            "Visibility: " + (wishlist.getIsPublic() ? "Public" : "Private") + "\n\n" +
-                            "Click below to open in web app:";
-                    
-                    Map<String, Object> keyboard = createWebAppKeyboard();
-                    
-                    editMessage(chatId, callbackQueryId, message, keyboard);
-                }
-            }
-            
-        } catch (Exception e) {
-            log.error("Error handling wishlist callback", e);
+            wishlistId = UUID.fromString(callbackData.substring("wishlist_".length()));
+        } catch (IllegalArgumentException e) {
+            // Retrying cannot fix a malformed button, so it is dropped rather than failed
+            log.warn("Ignoring malformed wishlist callback {} in chat {}", callbackData, chatId);
+            return;
         }
+        messageRenderer.wishlistCard(wishlistId).ifPresent(card ->
+                editMessage(chatId, messageId, card, messageRenderer.webAppKeyboard()));
+    }
+    
+    /**
+     * Handles the wishlist choice of the /add dialog, replacing the choice buttons with the next prompt
+     */
+    private void handleAddWishlistCallback(long chatId, long userId, String callbackData, long messageId) {
+        wishDialogService.chooseWishlist(chatId, userId, callbackData)
+                .ifPresent(reply -> editMessage(chatId, messageId, reply.text(), reply.keyboard()));
     }
     
     /**
      * Handles refresh callback
      */
-    private void handleRefreshCallback(long chatId, String callbackQueryId) {
-        try {
-            String message = "🔄 Refreshed! Use the web app button to access your wishlists.";
-            Map<String, Object> keyboard = createWebAppKeyboard();
-            
-            editMessage(chatId, callbackQueryId, message, keyboard);
-            
-        } catch (Exception e) {
-            log.error("Error handling refresh callback", e);
-        }
+    private void handleRefreshCallback(long chatId, long messageId) {
+        editMessage(chatId, messageId, messageRenderer.refreshed(), messageRenderer.webAppKeyboard());
     }
     
     /**
@@ -280,23 +289,12 @@ public class BotService {
             return;
         }
         
-        try {
-            long chatId = Long.parseLong(user.getTelegramId());
-            
-            String message = String.format("🎁 Wish Update!\n\n" +
-                    "Wish: %s\n" +
-                    "Action: %s\n" +
-                    "By: %s\n\n" +
-                    "Click below to view the wishlist:", 
-                    wish.getName(), action, actorName);
-            
-            Map<String, Object> keyboard = createWebAppKeyboard();
-            
-            sendMessage(chatId, message, keyboard);
-            
-        } catch (Exception e) {
-            log.error("Error sending wish notification to user {}", user.getId(), e);
-        }
+        long chatId = Long.parseLong(user.getTelegramId());
+        
+        String message = messageRenderer.wishUpdate(wish.getName(), action, actorName);
+        
+        // Delivery errors propagate so the notification job is retried
+        postMessage(chatId, message, messageRenderer.webAppKeyboard());
     }
     
     /**
@@ -308,125 +306,100 @@ public class BotService {
             return;
         }
         
-        try {
-            long chatId = Long.parseLong(user.getTelegramId());
-            
-            String message = String.format("📋 You've been invited to a wishlist!\n\n" +
-                    "Wishlist: %s\n" +
-                    "Invited by: %s\n\n" +
-                    "Click below to view the wishlist:", 
-                    wishlist.getTitle(), inviter.getDisplayName());
-            
-            Map<String, Object> keyboard = createWebAppKeyboard();
-            
-            sendMessage(chatId, message, keyboard);
-            
-        } catch (Exception e) {
-            log.error("Error sending invitation notification to user {}", user.getId(), e);
-        }
+        long chatId = Long.parseLong(user.getTelegramId());
+        
+        String message = messageRenderer.invitation(wishlist.getTitle(),
+                inviter != null ? inviter.getDisplayName() : "a friend");
+        
+        // Delivery errors propagate so the notification job is retried
+        postMessage(chatId, message, messageRenderer.webAppKeyboard());
     }
     
     /**
-     * Creates a web app keyboard with the bot's web app URL
+     * Sends a reminder that a wishlist's event is coming up
      */
-    private Map<String, Object> createWebAppKeyboard() {
-        Map<String, Object> keyboard = new HashMap<>();
-        Map<String, Object> inlineKeyboard = new HashMap<>();
+    public void sendEventReminder(User user, Wishlist wishlist, int daysLeft, long freeCount) {
+        if (user.getTelegramId() == null) {
+            log.debug("User {} has no telegram ID, skipping event reminder", user.getId());
+            return;
+        }
         
-        // Create web app button
-        Map<String, Object> button = new HashMap<>();
-        button.put("text", "🎁 Open Wish Manager");
-        button.put("web_app", Map.of("url", webappUrl));
+        long chatId = Long.parseLong(user.getTelegramId());
         
-        inlineKeyboard.put("inline_keyboard", new Object[][]{{button}});
-        keyboard.put("reply_markup", inlineKeyboard);
+        String message = messageRenderer.eventReminder(wishlist.getTitle(), daysLeft, freeCount);
         
-        return keyboard;
+        // Delivery errors propagate so the notification job is retried
+        postMessage(chatId, message, messageRenderer.webAppKeyboard());
     }
     
     /**
-     * Sends a message to a chat
+     * Sends a message to a chat, throwing if the Bot API call fails
      */
-    private void sendMessage(long chatId, String text, Map<String, Object> replyMarkup) {
-        try {
-            String url = TELEGRAM_API_URL + botToken + SEND_MESSAGE_ENDPOINT;
-            
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("chat_id", chatId);
-            payload.put("text", text);
-            payload.put("parse_mode", "HTML");
-            
-            if (replyMarkup != null) {
-                payload.put("reply_markup", replyMarkup);
-            }
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
-            
-            restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
-            
-            log.debug("Sent message to chat {}: {}", chatId, text);
-            
-        } catch (Exception e) {
-            log.error("Error sending message to chat {}", chatId, e);
+    private void postMessage(long chatId, String text, Map<String, Object> replyMarkup) {
+        String url = apiUrl + BOT_PATH_PREFIX + botToken + SEND_MESSAGE_ENDPOINT;
+        
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("chat_id", chatId);
+        payload.put("text", text);
+        payload.put("parse_mode", BotMessageRenderer.PARSE_MODE.apiValue());
+        
+        if (replyMarkup != null) {
+            payload.put("reply_markup", replyMarkup);
         }
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
+        
+        restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+        
+        log.debug("Sent message to chat {}: {}", chatId, text);
     }
     
     /**
      * Edits a message in a chat
      */
-    private void editMessage(long chatId, String messageId, String text, Map<String, Object> replyMarkup) {
-        try {
-            String url = TELEGRAM_API_URL + botToken + EDIT_MESSAGE_TEXT_ENDPOINT;
-            
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("chat_id", chatId);
-            payload.put("message_id", messageId);
-            payload.put("text", text);
-            payload.put("parse_mode", "HTML");
-            
-            if (replyMarkup != null) {
-                payload.put("reply_markup", replyMarkup);
-            }
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
-            
-            restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
-            
-            log.debug("Edited message in chat {}: {}", chatId, text);
-            
-        } catch (Exception e) {
-            log.error("Error editing message in chat {}", chatId, e);
+    private void editMessage(long chatId, long messageId, String text, Map<String, Object> replyMarkup) {
+        String url = apiUrl + BOT_PATH_PREFIX + botToken + EDIT_MESSAGE_TEXT_ENDPOINT;
+        
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("chat_id", chatId);
+        payload.put("message_id", messageId);
+        payload.put("text", text);
+        payload.put("parse_mode", BotMessageRenderer.PARSE_MODE.apiValue());
+        
+        if (replyMarkup != null) {
+            payload.put("reply_markup", replyMarkup);
         }
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
+        
+        restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+        
+        log.debug("Edited message in chat {}: {}", chatId, text);
     }
     
     /**
      * Answers an inline query
      */
     private void answerInlineQuery(String queryId, JsonNode[] results) {
-        try {
-            String url = TELEGRAM_API_URL + botToken + "/answerInlineQuery";
-            
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("inline_query_id", queryId);
-            payload.put("results", results);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
-            
-            restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
-            
-            log.debug("Answered inline query: {}", queryId);
-            
-        } catch (Exception e) {
-            log.error("Error answering inline query {}", queryId, e);
-        }
+        String url = apiUrl + BOT_PATH_PREFIX + botToken + "/answerInlineQuery";
+        
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("inline_query_id", queryId);
+        payload.put("results", results);
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
+        
+        restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+        
+        log.debug("Answered inline query: {}", queryId);
     }
 }
@@ -0,0 +1,234 @@
+package com.wishmanager.service;
+
+import com.wishmanager.cache.CacheInvalidationBus;
+import com.wishmanager.cache.CacheInvalidationListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Per-chat state of unfinished bot dialogs.
+ * <p>
+ * bot_conversations is the source of truth: every change is written through to it, and a chat
+ * missing from memory is read from it, so a dialog continues on whichever node receives the chat's
+ * next update and survives restarts. Recently used chats are kept in an access-ordered map, bounded
+ * by the size cap; a change on one node evicts the chat from the other nodes' maps through the
+ * invalidation bus. Chats found to have no dialog are remembered as well, so ordinary messages
+ * do not query the table. Records untouched for longer than the TTL expire.
+ */
+@Slf4j
+@Component
+public class ConversationStore implements CacheInvalidationListener {
+    
+    public enum Step {
+        WISHLIST, NAME, LINK, DESCRIPTION
+    }
+    
+    /**
+     * One chat's dialog, answered only by the Telegram user who started it; fields of later
+     * steps stay null until they are reached
+     */
+    public record Conversation(long chatId, Step step, UUID userId, long telegramUserId, UUID wishlistId,
+                               String name, String link, long touchedAt) {
+        
+        public Conversation next(Step step, UUID wishlistId, String name, String link) {
+            return new Conversation(chatId, step, userId, telegramUserId, wishlistId, name, link, touchedAt);
+        }
+    }
+    
+    private static final String UPSERT_SQL =
+            "INSERT INTO bot_conversations (chat_id, step, user_id, telegram_user_id, wishlist_id, wish_name, wish_link, touched_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (chat_id) DO UPDATE SET step = EXCLUDED.step, user_id = EXCLUDED.user_id, " +
+            "telegram_user_id = EXCLUDED.telegram_user_id, wishlist_id = EXCLUDED.wishlist_id, wish_name = EXCLUDED.wish_name, wish_link = EXCLUDED.wish_link, " +
+            "touched_at = EXCLUDED.touched_at";
+    
+    private static final String SELECT_SQL =
+            "SELECT chat_id, step, user_id, telegram_user_id, wishlist_id, wish_name, wish_link, touched_at " +
+            "FROM bot_conversations WHERE chat_id = ? AND touched_at >= ?";
+    
+    private static final String DELETE_SQL =
+            "DELETE FROM bot_conversations WHERE chat_id = ? RETURNING touched_at";
+    
+    private static final String EXPIRE_SQL =
+            "DELETE FROM bot_conversations WHERE touched_at < ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${bot.conversations.ttl-minutes:30}")
+    private long ttlMinutes;
+    
+    @Value("${bot.conversations.max-size:10000}")
+    private int maxSize;
+    
+    // Also holds step-less records for chats known to have no dialog
+    private Map<Long, Conversation> conversations;
+    // Bumped by every invalidation, a read that overlapped one may be stale and is not cached
+    private long invalidations;
+    private Counter evictedCounter;
+    
+    @PostConstruct
+    public void init() {
+        evictedCounter = meterRegistry.counter("bot.conversations.evicted");
+        conversations = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Conversation> eldest) {
+                // The row stays, an evicted chat is read back on its next update
+                if (size() <= maxSize) {
+                    return false;
+                }
+                if (eldest.getValue().step() != null) {
+                    evictedCounter.increment();
+                }
+                return true;
+            }
+        };
+        meterRegistry.gauge("bot.conversations.active", this, ConversationStore::size);
+    }
+    
+    /**
+     * @return the chat's dialog, empty if there is none or it expired
+     */
+    public Optional<Conversation> get(long chatId) {
+        long now = System.currentTimeMillis();
+        long readAfter;
+        synchronized (conversations) {
+            Conversation conversation = conversations.get(chatId);
+            if (conversation != null && !isExpired(conversation, now)) {
+                return conversation.step() != null ? Optional.of(conversation) : Optional.empty();
+            }
+            if (conversation != null) {
+                conversations.remove(chatId);
+                if (conversation.step() != null) {
+                    log.debug("Conversation in chat {} expired at step {}", chatId, conversation.step());
+                    return Optional.empty();
+                }
+            }
+            readAfter = invalidations;
+        }
+        
+        List<Conversation> stored = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new Conversation(
+                rs.getLong("chat_id"),
+                Step.valueOf(rs.getString("step")),
+                rs.getObject("user_id", UUID.class),
+                rs.getLong("telegram_user_id"),
+                rs.getObject("wishlist_id", UUID.class),
+                rs.getString("wish_name"),
+                rs.getString("wish_link"),
+                rs.getTimestamp("touched_at").getTime()),
+                chatId, new Timestamp(now - ttlMinutes * 60_000));
+        Conversation found = stored.isEmpty() ? noDialog(chatId, now) : stored.get(0);
+        synchronized (conversations) {
+            if (invalidations != readAfter) {
+                return found.step() != null ? Optional.of(found) : Optional.empty();
+            }
+            // A put on this node while we were reading is newer than the row we read
+            Conversation current = conversations.computeIfAbsent(chatId, id -> found);
+            return current.step() != null ? Optional.of(current) : Optional.empty();
+        }
+    }
+    
+    /**
+     * Stores the chat's dialog and restarts its TTL
+     */
+    public void put(Conversation conversation) {
+        Conversation touched = new Conversation(conversation.chatId(), conversation.step(), conversation.userId(),
+                conversation.telegramUserId(), conversation.wishlistId(), conversation.name(), conversation.link(),
+                System.currentTimeMillis());
+        jdbcTemplate.update(UPSERT_SQL, touched.chatId(), touched.step().name(), touched.userId(), touched.telegramUserId(),
+                touched.wishlistId(), touched.name(), touched.link(), new Timestamp(touched.touchedAt()));
+        invalidationBus.publish(EntityType.CONVERSATION, invalidationKey(touched.chatId()));
+        synchronized (conversations) {
+            conversations.put(touched.chatId(), touched);
+        }
+    }
+    
+    /**
+     * @return whether the chat had a dialog
+     */
+    public boolean remove(long chatId) {
+        List<Timestamp> touchedAt = jdbcTemplate.queryForList(DELETE_SQL, Timestamp.class, chatId);
+        if (!touchedAt.isEmpty()) {
+            invalidationBus.publish(EntityType.CONVERSATION, invalidationKey(chatId));
+        }
+        // After publishing, which also evicts the chat on this node
+        synchronized (conversations) {
+            conversations.put(chatId, noDialog(chatId, System.currentTimeMillis()));
+        }
+        return !touchedAt.isEmpty() && touchedAt.get(0).getTime() >= System.currentTimeMillis() - ttlMinutes * 60_000;
+    }
+    
+    /**
+     * @return number of dialogs held in memory
+     */
+    public int size() {
+        synchronized (conversations) {
+            return (int) conversations.values().stream().filter(conversation -> conversation.step() != null).count();
+        }
+    }
+    
+    @Override
+    public void onInvalidate(EntityType type, UUID id) {
+        if (type == EntityType.CONVERSATION) {
+            synchronized (conversations) {
+                invalidations++;
+                conversations.remove(id.getLeastSignificantBits());
+            }
+        }
+    }
+    
+    @Override
+    public void onInvalidateAll() {
+        synchronized (conversations) {
+            invalidations++;
+            conversations.clear();
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${bot.conversations.cleanup-interval-ms:60000}")
+    public void removeExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (conversations) {
+            conversations.values().removeIf(conversation -> isExpired(conversation, now));
+        }
+        try {
+            int expired = jdbcTemplate.update(EXPIRE_SQL, new Timestamp(now - ttlMinutes * 60_000));
+            log.debug("Removed {} expired bot conversations", expired);
+        } catch (Exception e) {
+            log.error("Error removing expired bot conversations", e);
+        }
+    }
+    
+    // Invalidations are keyed by UUID; the chat ID travels in the low bits
+    private static UUID invalidationKey(long chatId) {
+        return new UUID(0, chatId);
+    }
+    
+    private static Conversation noDialog(long chatId, long now) {
+        return new Conversation(chatId, null, null, 0, null, null, null, now);
+    }
+    
+    private boolean isExpired(Conversation conversation, long now) {
+        return conversation.touchedAt() < now - ttlMinutes * 60_000;
+    }
+}
@@ -0,0 +1,225 @@
+package com.wishmanager.service;
+
+import com.wishmanager.util.SingleFlight;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Remembers responses of requests sent with an Idempotency-Key so that retries replay them.
+ * <p>
+ * Recently completed keys are answered from an in-memory LRU without any database access.
+ * Concurrent duplicates on one node share a single execution; across nodes the first request
+ * claims the key with an insert and duplicates arriving while it runs are told to retry.
+ * A hash of the request body is stored with the key, and a key reused with a different body
+ * is rejected instead of replaying a response to another request.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+    
+    private static final String CLAIM_SQL =
+            "INSERT INTO idempotency_keys (key_hash, request_hash) VALUES (?, ?) ON CONFLICT (key_hash) DO NOTHING";
+    
+    // A claim whose request never finished (node crashed mid-request) may be taken over
+    private static final String TAKE_OVER_SQL =
+            "UPDATE idempotency_keys SET created_at = CURRENT_TIMESTAMP, request_hash = ? " +
+            "WHERE key_hash = ? AND status_code IS NULL AND created_at < CURRENT_TIMESTAMP - ? * interval '1 millisecond'";
+    
+    private static final String FIND_SQL =
+            "SELECT request_hash, status_code, content_type, response_body FROM idempotency_keys WHERE key_hash = ?";
+    
+    private static final String COMPLETE_SQL =
+            "UPDATE idempotency_keys SET status_code = ?, content_type = ?, response_body = ? WHERE key_hash = ?";
+    
+    private static final String RELEASE_SQL =
+            "DELETE FROM idempotency_keys WHERE key_hash = ? AND status_code IS NULL";
+    
+    private static final String CLEANUP_SQL =
+            "DELETE FROM idempotency_keys WHERE key_hash IN (" +
+            "  SELECT key_hash FROM idempotency_keys WHERE created_at < CURRENT_TIMESTAMP - ? * interval '1 hour' LIMIT ?)";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${idempotency.ttl-hours:24}")
+    private int ttlHours;
+    
+    @Value("${idempotency.cache-size:10000}")
+    private int cacheSize;
+    
+    @Value("${idempotency.in-progress-timeout-ms:60000}")
+    private long inProgressTimeoutMs;
+    
+    @Value("${idempotency.cleanup-batch-size:1000}")
+    private int cleanupBatchSize;
+    
+    private SingleFlight<String, StoredResponse> executions;
+    private Map<String, CachedResponse> recent;
+    
+    @PostConstruct
+    public void init() {
+        executions = new SingleFlight<>(inProgressTimeoutMs);
+        recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+    
+    /**
+     * Runs the request at most once per key; repeats get the stored response instead.
+     * The request supplier is only invoked when this call is the one executing it.
+     * @param body the request body, a repeat must send the same one
+     * @param request executes the request and returns its captured response
+     * @return the response, {@link StoredResponse#IN_PROGRESS} if another node is still executing it,
+     * {@link StoredResponse#MISMATCH} if the key was used with a different body
+     */
+    public StoredResponse execute(String clientKey, String method, String path, String idempotencyKey, byte[] body,
+                                  Supplier<StoredResponse> request) {
+        String keyHash = hash((clientKey + "\n" + method + "\n" + path + "\n" + idempotencyKey).getBytes(StandardCharsets.UTF_8));
+        String requestHash = hash(body);
+        
+        CachedResponse cached = cached(keyHash);
+        if (cached != null) {
+            if (!cached.requestHash().equals(requestHash)) {
+                return StoredResponse.MISMATCH;
+            }
+            log.debug("Replaying idempotent response for {} {} from memory", method, path);
+            return cached.response();
+        }
+        
+        // Duplicates arriving while the first one runs on this node wait for and share its response;
+        // a different body runs separately and finds the key taken
+        return executions.execute(keyHash + requestHash, () -> claimAndRun(keyHash, requestHash, request));
+    }
+    
+    /**
+     * Drops keys past their TTL, in batches so the deletes never hold many locks
+     */
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval-ms:600000}", initialDelayString = "${idempotency.cleanup-interval-ms:600000}")
+    public void cleanup() {
+        try {
+            int total = 0;
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update(CLEANUP_SQL, ttlHours, cleanupBatchSize);
+                total += deleted;
+            } while (deleted == cleanupBatchSize);
+            
+            long cutoff = System.currentTimeMillis() - ttlHours * 3_600_000L;
+            synchronized (recent) {
+                recent.values().removeIf(entry -> entry.storedAt() < cutoff);
+            }
+            if (total > 0) {
+                log.info("Deleted {} expired idempotency keys", total);
+            }
+        } catch (Exception e) {
+            log.error("Error deleting expired idempotency keys", e);
+        }
+    }
+    
+    private StoredResponse claimAndRun(String keyHash, String requestHash, Supplier<StoredResponse> request) {
+        byte[] key = HexFormat.of().parseHex(keyHash);
+        byte[] requestKey = HexFormat.of().parseHex(requestHash);
+        boolean claimed = jdbcTemplate.update(CLAIM_SQL, key, requestKey) == 1
+                || jdbcTemplate.update(TAKE_OVER_SQL, requestKey, key, inProgressTimeoutMs) == 1;
+        
+        if (!claimed) {
+            StoredRow stored = find(key);
+            if (stored == null) {
+                // Completed with a server error and released meanwhile; the client retries
+                return StoredResponse.IN_PROGRESS;
+            }
+            // Keys stored before request hashes were recorded have none and match any body
+            if (stored.requestHash() != null && !Arrays.equals(stored.requestHash(), requestKey)) {
+                return StoredResponse.MISMATCH;
+            }
+            if (stored.response() == null) {
+                // Still running on another node
+                return StoredResponse.IN_PROGRESS;
+            }
+            remember(keyHash, requestHash, stored.response());
+            return stored.response();
+        }
+        
+        StoredResponse response;
+        try {
+            response = request.get();
+        } catch (RuntimeException | Error e) {
+            jdbcTemplate.update(RELEASE_SQL, key);
+            throw e;
+        }
+        
+        if (response.status() >= 500) {
+            // Server errors are worth retrying, so the key must not pin them
+            jdbcTemplate.update(RELEASE_SQL, key);
+            return response;
+        }
+        
+        jdbcTemplate.update(COMPLETE_SQL, response.status(), response.contentType(), response.body(), key);
+        remember(keyHash, requestHash, response);
+        return response;
+    }
+    
+    private StoredRow find(byte[] key) {
+        List<StoredRow> rows = jdbcTemplate.query(FIND_SQL, (rs, rowNum) -> {
+            int status = rs.getInt("status_code");
+            StoredResponse response = rs.wasNull()
+                    ? null : new StoredResponse(status, rs.getString("content_type"), rs.getBytes("response_body"));
+            return new StoredRow(rs.getBytes("request_hash"), response);
+        }, key);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+    
+    private CachedResponse cached(String keyHash) {
+        synchronized (recent) {
+            return recent.get(keyHash);
+        }
+    }
+    
+    private void remember(String keyHash, String requestHash, StoredResponse response) {
+        synchronized (recent) {
+            recent.put(keyHash, new CachedResponse(response, requestHash, System.currentTimeMillis()));
+        }
+    }
+    
+    private static String hash(byte[] value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    public record StoredResponse(int status, String contentType, byte[] body) {
+        
+        public static final StoredResponse IN_PROGRESS = new StoredResponse(409, "application/json",
+                "{\"error\":\"A request with this Idempotency-Key is still in progress\"}".getBytes(StandardCharsets.UTF_8));
+        
+        public static final StoredResponse MISMATCH = new StoredResponse(422, "application/json",
+                "{\"error\":\"This Idempotency-Key was used with a different request body\"}".getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private record CachedResponse(StoredResponse response, String requestHash, long storedAt) {
+    }
+    
+    private record StoredRow(byte[] requestHash, StoredResponse response) {
+    }
+}
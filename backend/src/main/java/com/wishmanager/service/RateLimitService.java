@@ -0,0 +1,136 @@
+package com.wishmanager.service;
+
+import com.wishmanager.util.TokenBucketLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory request rate limits, one set of token buckets per configured policy.
+ * Limits apply per node; behind a load balancer the effective limit is the sum over nodes.
+ */
+@Slf4j
+@Service
+public class RateLimitService {
+    
+    public static final String KEY_USER = "user";
+    public static final String KEY_IP = "ip";
+    public static final String KEY_CHAT = "chat";
+    
+    @Autowired
+    private Environment environment;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${rate-limit.stripes:16}")
+    private int stripes;
+    
+    @Value("${rate-limit.max-buckets-per-stripe:4096}")
+    private int maxBucketsPerStripe;
+    
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<String, Policy> policies = new LinkedHashMap<>();
+    private final Map<String, TokenBucketLimiter> limiters = new LinkedHashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        Map<String, Policy> configured = Binder.get(environment)
+                .bind("rate-limit.policies", Bindable.mapOf(String.class, Policy.class))
+                .orElse(Map.of());
+        
+        configured.forEach((name, policy) -> {
+            policy.setName(name);
+            policies.put(name, policy);
+            limiters.put(name, new TokenBucketLimiter(policy.getCapacity(), policy.getRefillPerSecond(), stripes, maxBucketsPerStripe));
+            log.info("Rate limit policy '{}': {} requests burst, {}/s per {} on {}",
+                    name, policy.getCapacity(), policy.getRefillPerSecond(), policy.getKey(), policy.getPaths());
+        });
+    }
+    
+    /**
+     * First policy whose paths and methods match the request, in configuration order
+     * @return the policy, or null if the request is not limited
+     */
+    public Policy match(String method, String path) {
+        if (!enabled) {
+            return null;
+        }
+        
+        for (Policy policy : policies.values()) {
+            boolean methodMatches = policy.getMethods().isEmpty() || policy.getMethods().contains(method);
+            if (methodMatches && policy.getPaths().stream().anyMatch(pattern -> pathMatcher.match(pattern, path))) {
+                return policy;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Takes a token for the key under the named policy
+     * @return 0 if allowed, otherwise milliseconds until the client may retry
+     */
+    public long tryAcquire(String policyName, String key) {
+        return tryAcquire(policyName, key, key);
+    }
+    
+    /**
+     * Takes a token for the key under the named policy, limiting by the overflow key (the
+     * client's IP) instead when too many keys are tracked already
+     * @return 0 if allowed, otherwise milliseconds until the client may retry
+     */
+    public long tryAcquire(String policyName, String key, String overflowKey) {
+        TokenBucketLimiter limiter = limiters.get(policyName);
+        if (!enabled || limiter == null) {
+            return 0;
+        }
+        
+        long waitNanos = limiter.tryAcquire(policyName + ":" + key, policyName + ":" + overflowKey);
+        if (waitNanos == 0) {
+            return 0;
+        }
+        
+        meterRegistry.counter("ratelimit.rejected", "policy", policyName).increment();
+        return Math.max(1, waitNanos / 1_000_000);
+    }
+    
+    @Scheduled(fixedDelayString = "${rate-limit.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        int evicted = 0;
+        int remaining = 0;
+        for (TokenBucketLimiter limiter : limiters.values()) {
+            evicted += limiter.evictIdle();
+            remaining += limiter.size();
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate limit buckets, {} remaining", evicted, remaining);
+        }
+    }
+    
+    @Data
+    public static class Policy {
+        private String name;
+        private List<String> paths = new ArrayList<>();
+        private List<String> methods = new ArrayList<>();
+        private String key = KEY_USER;
+        private int capacity = 60;
+        private double refillPerSecond = 1;
+    }
+}
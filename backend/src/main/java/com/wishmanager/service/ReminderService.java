@@ -0,0 +1,380 @@
+package com.wishmanager.service;
+
+import com.wishmanager.cache.CacheInvalidationBus;
+import com.wishmanager.cache.CacheInvalidationListener;
+import com.wishmanager.cache.CacheInvalidationListener.EntityType;
+import com.wishmanager.entity.Wishlist;
+import com.wishmanager.job.JobQueue;
+import com.wishmanager.job.TelegramNotificationJobHandler;
+import com.wishmanager.util.HierarchicalTimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event reminders ("the birthday is in 3 days, 4 gifts still free").
+ * <p>
+ * Reminders are rows in the reminders table, spread over a fixed number of shards. Every node
+ * leases a fair share of the shards, loads their reminders due within the horizon into a
+ * hierarchical timing wheel and fires them from memory, so scheduling costs O(1) and the
+ * database is read once per horizon refresh instead of polled every minute. Reminders created
+ * on another node reach the shard owner through the invalidation bus.
+ */
+@Slf4j
+@Service
+public class ReminderService implements CacheInvalidationListener {
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO reminders (wishlist_id, shard, remind_at, days_before) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (wishlist_id, days_before) DO UPDATE SET remind_at = EXCLUDED.remind_at, status = 'PENDING'";
+    
+    private static final String LOAD_SQL =
+            "SELECT id, shard, remind_at FROM reminders WHERE shard = ANY(?) AND status = 'PENDING' AND remind_at < ?";
+    
+    private static final String LOAD_WISHLIST_SQL =
+            "SELECT id, shard, remind_at FROM reminders WHERE wishlist_id = ? AND status = 'PENDING' AND remind_at < ?";
+    
+    // Lease an unowned or expired shard, or extend our own
+    private static final String ACQUIRE_LEASE_SQL =
+            "INSERT INTO reminder_shard_leases (shard, owner, lease_until) " +
+            "VALUES (?, ?, CURRENT_TIMESTAMP + ? * interval '1 millisecond') " +
+            "ON CONFLICT (shard) DO UPDATE SET owner = EXCLUDED.owner, lease_until = EXCLUDED.lease_until " +
+            "WHERE reminder_shard_leases.owner = EXCLUDED.owner OR reminder_shard_leases.lease_until < CURRENT_TIMESTAMP " +
+            "RETURNING shard";
+    
+    private static final String LIVE_OWNERS_SQL =
+            "SELECT count(DISTINCT owner) FROM reminder_shard_leases WHERE lease_until > CURRENT_TIMESTAMP AND owner <> ?";
+    
+    private static final String RELEASE_LEASES_SQL =
+            "DELETE FROM reminder_shard_leases WHERE owner = ?";
+    
+    // Marks the reminder sent only while this node still holds the shard, so a reminder fires once
+    private static final String MARK_SENT_SQL =
+            "UPDATE reminders r SET status = 'SENT' FROM reminder_shard_leases l " +
+            "WHERE r.id = ? AND r.status = 'PENDING' AND l.shard = r.shard AND l.owner = ? AND l.lease_until > CURRENT_TIMESTAMP " +
+            "RETURNING r.wishlist_id, r.days_before";
+    
+    private static final String RECIPIENTS_SQL =
+            "SELECT user_id FROM memberships WHERE wishlist_id = ? AND role <> 'OWNER'";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private JobQueue jobQueue;
+    
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+    
+    @Value("${reminders.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${reminders.shards:64}")
+    private int shards;
+    
+    @Value("${reminders.days-before:7,3,1}")
+    private int[] daysBefore;
+    
+    @Value("${reminders.hour:10}")
+    private int reminderHour;
+    
+    @Value("${reminders.lease-ms:30000}")
+    private long leaseMs;
+    
+    @Value("${reminders.lease-renew-interval-ms:10000}")
+    private long leaseRenewIntervalMs;
+    
+    @Value("${reminders.horizon-hours:24}")
+    private int horizonHours;
+    
+    @Value("${reminders.tick-ms:1000}")
+    private long tickMs;
+    
+    private final String nodeId = nodeId();
+    
+    private TransactionTemplate transactionTemplate;
+    // 64 slots per level, 4 levels: about 194 days of range at one-second ticks
+    private HierarchicalTimingWheel<Long> wheel;
+    private final Map<Long, HierarchicalTimingWheel.Timer<Long>> scheduled = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> scheduledShards = new ConcurrentHashMap<>();
+    private final Set<Integer> ownedShards = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService ticker;
+    private ExecutorService delivery;
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        wheel = new HierarchicalTimingWheel<>(tickMs, 6, 4, System.currentTimeMillis());
+    }
+    
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Reminders disabled");
+            return;
+        }
+        
+        delivery = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reminder-delivery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reminder-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        // On the wheel's own thread, so leases keep being renewed however busy the shared scheduler is
+        ticker.scheduleWithFixedDelay(this::renewLeases, 0, leaseRenewIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Started reminder scheduler as {}", nodeId);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (ticker == null) {
+            return;
+        }
+        ticker.shutdownNow();
+        delivery.shutdown();
+        try {
+            // Hand our shards to other nodes right away instead of after the lease runs out
+            jdbcTemplate.update(RELEASE_LEASES_SQL, nodeId);
+        } catch (Exception e) {
+            log.warn("Error releasing reminder shard leases: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * (Re)creates the reminders for a wishlist's event date. Runs in the caller's transaction.
+     */
+    public void scheduleReminders(Wishlist wishlist) {
+        scheduleReminders(wishlist.getId(), wishlist.getEventDate());
+    }
+    
+    public void scheduleReminders(UUID wishlistId, LocalDate eventDate) {
+        if (eventDate == null) {
+            return;
+        }
+        
+        int shard = shardOf(wishlistId);
+        LocalDateTime now = LocalDateTime.now();
+        for (int days : daysBefore) {
+            LocalDateTime remindAt = eventDate.minusDays(days).atTime(reminderHour, 0);
+            if (remindAt.isAfter(now)) {
+                jdbcTemplate.update(INSERT_SQL, wishlistId, shard, Timestamp.valueOf(remindAt), days);
+            }
+        }
+        
+        // Whoever owns the shard loads the new reminders once this commits
+        invalidationBus.publish(EntityType.REMINDER, wishlistId);
+        log.debug("Scheduled event reminders for wishlist {} in shard {}", wishlistId, shard);
+    }
+    
+    @Override
+    public void onInvalidate(EntityType type, UUID id) {
+        if (type != EntityType.REMINDER || !ownedShards.contains(shardOf(id))) {
+            return;
+        }
+        
+        Timestamp horizon = horizon();
+        jdbcTemplate.query(LOAD_WISHLIST_SQL, rs -> {
+            schedule(rs.getLong("id"), rs.getInt("shard"), rs.getTimestamp("remind_at"));
+        }, id, horizon);
+    }
+    
+    @Override
+    public void onInvalidateAll() {
+        if (!ownedShards.isEmpty()) {
+            loadShards(ownedShards);
+        }
+    }
+    
+    /**
+     * Keeps a fair share of the shards leased: extends held leases, takes free ones
+     * up to the share and lets go of any above it so newly started nodes get work
+     */
+    private void renewLeases() {
+        try {
+            Integer otherOwners = jdbcTemplate.queryForObject(LIVE_OWNERS_SQL, Integer.class, nodeId);
+            int share = (int) Math.ceil(shards / (double) (1 + (otherOwners == null ? 0 : otherOwners)));
+            
+            List<Integer> held = new ArrayList<>();
+            for (int shard : ownedShards) {
+                if (held.size() < share && tryLease(shard)) {
+                    held.add(shard);
+                }
+            }
+            for (int shard = 0; shard < shards && held.size() < share; shard++) {
+                if (!held.contains(shard) && tryLease(shard)) {
+                    held.add(shard);
+                }
+            }
+            
+            List<Integer> lost = ownedShards.stream().filter(shard -> !held.contains(shard)).toList();
+            List<Integer> gained = held.stream().filter(shard -> !ownedShards.contains(shard)).toList();
+            
+            if (!lost.isEmpty()) {
+                ownedShards.removeAll(lost);
+                jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                            "DELETE FROM reminder_shard_leases WHERE owner = ? AND shard = ANY(?)");
+                    ps.setString(1, nodeId);
+                    ps.setArray(2, connection.createArrayOf("integer", lost.toArray()));
+                    return ps;
+                });
+                unschedule(lost);
+                log.info("Released reminder shards {}", lost);
+            }
+            if (!gained.isEmpty()) {
+                ownedShards.addAll(gained);
+                loadShards(gained);
+                log.info("Acquired reminder shards {}, now holding {}", gained, ownedShards.size());
+            }
+        } catch (Exception e) {
+            log.error("Error renewing reminder shard leases", e);
+        }
+    }
+    
+    /**
+     * Pulls the next horizon's worth of reminders for the held shards into the wheel
+     */
+    @Scheduled(fixedDelayString = "${reminders.horizon-refresh-interval-ms:3600000}", initialDelayString = "${reminders.horizon-refresh-interval-ms:3600000}")
+    public void refreshHorizon() {
+        if (!enabled || ownedShards.isEmpty()) {
+            return;
+        }
+        
+        try {
+            loadShards(ownedShards);
+        } catch (Exception e) {
+            log.error("Error loading upcoming reminders", e);
+        }
+    }
+    
+    private boolean tryLease(int shard) {
+        return !jdbcTemplate.queryForList(ACQUIRE_LEASE_SQL, Integer.class, shard, nodeId, leaseMs).isEmpty();
+    }
+    
+    private void loadShards(Collection<Integer> shardIds) {
+        Timestamp horizon = horizon();
+        Integer[] shardArray = shardIds.toArray(new Integer[0]);
+        int before = scheduled.size();
+        
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(LOAD_SQL);
+            ps.setArray(1, connection.createArrayOf("integer", shardArray));
+            ps.setTimestamp(2, horizon);
+            return ps;
+        }, rs -> {
+            schedule(rs.getLong("id"), rs.getInt("shard"), rs.getTimestamp("remind_at"));
+        });
+        
+        log.debug("Loaded {} new reminders from {} shards, {} pending in memory",
+                scheduled.size() - before, shardArray.length, wheel.size());
+    }
+    
+    private void schedule(long reminderId, int shard, Timestamp remindAt) {
+        long deadline = remindAt.toLocalDateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        scheduled.computeIfAbsent(reminderId, id -> wheel.schedule(id, deadline));
+        scheduledShards.put(reminderId, shard);
+    }
+    
+    private void unschedule(List<Integer> shardIds) {
+        // Reminders of released shards are fired by their new owner
+        scheduled.keySet().removeIf(reminderId -> {
+            Integer shard = scheduledShards.get(reminderId);
+            if (shard != null && shardIds.contains(shard)) {
+                wheel.cancel(scheduled.get(reminderId));
+                scheduledShards.remove(reminderId);
+                return true;
+            }
+            return false;
+        });
+    }
+    
+    private void tick() {
+        try {
+            for (Long reminderId : wheel.advance(System.currentTimeMillis())) {
+                scheduled.remove(reminderId);
+                scheduledShards.remove(reminderId);
+                delivery.execute(() -> deliver(reminderId));
+            }
+        } catch (Exception e) {
+            log.error("Error advancing reminder wheel", e);
+        }
+    }
+    
+    private void deliver(long reminderId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Map<String, Object>> reminder = jdbcTemplate.queryForList(MARK_SENT_SQL, reminderId, nodeId);
+                if (reminder.isEmpty()) {
+                    log.debug("Reminder {} already sent or shard no longer ours", reminderId);
+                    return;
+                }
+                
+                UUID wishlistId = (UUID) reminder.get(0).get("wishlist_id");
+                int days = (Integer) reminder.get(0).get("days_before");
+                List<Map<String, Object>> notifications = jdbcTemplate.queryForList(RECIPIENTS_SQL, UUID.class, wishlistId)
+                        .stream()
+                        .map(userId -> TelegramNotificationJobHandler.eventReminder(userId, wishlistId, days))
+                        .toList();
+                
+                // Sending goes through the job queue so a Telegram outage does not lose reminders
+                jobQueue.enqueueAll(TelegramNotificationJobHandler.QUEUE, notifications);
+                log.info("Sent event reminder {} for wishlist {} to {} members", reminderId, wishlistId, notifications.size());
+            });
+        } catch (Exception e) {
+            log.error("Error delivering reminder {}, retrying on the next horizon load", reminderId, e);
+        }
+    }
+    
+    private Timestamp horizon() {
+        return Timestamp.valueOf(LocalDateTime.now().plusHours(horizonHours));
+    }
+    
+    private int shardOf(UUID wishlistId) {
+        return Math.floorMod(wishlistId.hashCode(), shards);
+    }
+    
+    private static String nodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
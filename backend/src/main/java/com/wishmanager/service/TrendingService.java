@@ -0,0 +1,155 @@
+package com.wishmanager.service;
+
+import com.wishmanager.dto.TrendingWishlistResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts wishlist views in memory and ranks public wishlists by exponentially decayed views.
+ * A view only increments a striped counter; counts reach the database in one batched upsert
+ * per flush interval, after which the top-K ranking is recomputed and served from memory.
+ */
+@Slf4j
+@Service
+public class TrendingService {
+    
+    // Scores are log2 of decayed views relative to this fixed point (2024-01-01T00:00:00Z)
+    private static final long SCORE_EPOCH_SECONDS = 1704067200L;
+    
+    private static final String FLUSH_SQL =
+            "INSERT INTO wishlist_view_counters (wishlist_id, view_count, trending_score, updated_at) " +
+            "SELECT v.wishlist_id, v.views, ln(v.views::double precision) / ln(2) + ?, CURRENT_TIMESTAMP " +
+            "FROM unnest(?::uuid[], ?::bigint[]) AS v(wishlist_id, views) " +
+            "JOIN wishlists w ON w.id = v.wishlist_id " +
+            "ON CONFLICT (wishlist_id) DO UPDATE SET " +
+            "view_count = wishlist_view_counters.view_count + EXCLUDED.view_count, " +
+            // log2(2^a + 2^b), clamped so power() cannot underflow
+            "trending_score = GREATEST(wishlist_view_counters.trending_score, EXCLUDED.trending_score) + " +
+            "ln(1 + power(2::double precision, GREATEST(-60, -abs(wishlist_view_counters.trending_score - EXCLUDED.trending_score)))) / ln(2), " +
+            "updated_at = CURRENT_TIMESTAMP";
+    
+    private static final String RANKING_SQL =
+            "SELECT w.id, w.owner_id, w.title, w.description, c.view_count, c.trending_score " +
+            "FROM wishlist_view_counters c JOIN wishlists w ON w.id = c.wishlist_id " +
+            "WHERE w.is_public = true " +
+            "ORDER BY c.trending_score DESC LIMIT ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${trending.half-life-hours:24}")
+    private double halfLifeHours;
+    
+    @Value("${trending.top-k:100}")
+    private int topK;
+    
+    private final Map<UUID, LongAdder> pendingViews = new ConcurrentHashMap<>();
+    
+    private volatile List<TrendingWishlistResponse> ranking = List.of();
+    
+    public void recordView(UUID wishlistId) {
+        LongAdder views = pendingViews.get(wishlistId);
+        if (views == null) {
+            views = pendingViews.computeIfAbsent(wishlistId, id -> new LongAdder());
+        }
+        views.increment();
+    }
+    
+    public List<TrendingWishlistResponse> getTrending(int limit) {
+        List<TrendingWishlistResponse> current = ranking;
+        return current.subList(0, Math.max(0, Math.min(limit, current.size())));
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRanking() {
+        try {
+            refreshRanking();
+        } catch (Exception e) {
+            log.error("Error loading trending wishlists", e);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${trending.flush-interval-ms:10000}")
+    public void flush() {
+        try {
+            flushViews();
+            refreshRanking();
+        } catch (Exception e) {
+            log.error("Error flushing wishlist view counters", e);
+        }
+    }
+    
+    private void flushViews() {
+        List<UUID> wishlistIds = new ArrayList<>();
+        List<Long> viewCounts = new ArrayList<>();
+        
+        for (Map.Entry<UUID, LongAdder> entry : pendingViews.entrySet()) {
+            long views = entry.getValue().sumThenReset();
+            if (views > 0) {
+                wishlistIds.add(entry.getKey());
+                viewCounts.add(views);
+            } else {
+                // Idle since the last flush; a view racing with this removal may be lost, which is fine for counters
+                pendingViews.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        
+        if (wishlistIds.isEmpty()) {
+            return;
+        }
+        
+        double scoreOffset = currentScoreOffset();
+        try {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(FLUSH_SQL);
+                ps.setDouble(1, scoreOffset);
+                ps.setArray(2, connection.createArrayOf("uuid", wishlistIds.toArray()));
+                ps.setArray(3, connection.createArrayOf("bigint", viewCounts.toArray()));
+                return ps;
+            });
+        } catch (RuntimeException e) {
+            // Keep the counts for the next flush instead of dropping them
+            for (int i = 0; i < wishlistIds.size(); i++) {
+                pendingViews.computeIfAbsent(wishlistIds.get(i), id -> new LongAdder()).add(viewCounts.get(i));
+            }
+            throw e;
+        }
+        
+        log.debug("Flushed view counters for {} wishlists", wishlistIds.size());
+    }
+    
+    private void refreshRanking() {
+        double scoreOffset = currentScoreOffset();
+        ranking = List.copyOf(jdbcTemplate.query(RANKING_SQL, (rs, rowNum) -> new TrendingWishlistResponse(
+                rs.getObject("id", UUID.class),
+                rs.getObject("owner_id", UUID.class),
+                rs.getString("title"),
+                rs.getString("description"),
+                rs.getLong("view_count"),
+                Math.pow(2, rs.getDouble("trending_score") - scoreOffset)
+        ), topK));
+    }
+    
+    /**
+     * One unit of score per half-life elapsed since the epoch, so a view now weighs
+     * twice as much as a view one half-life ago
+     */
+    private double currentScoreOffset() {
+        double elapsedHours = (System.currentTimeMillis() / 1000.0 - SCORE_EPOCH_SECONDS) / 3600.0;
+        return elapsedHours / halfLifeHours;
+    }
+}
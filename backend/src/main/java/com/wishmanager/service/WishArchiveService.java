@@ -0,0 +1,160 @@
+package com.wishmanager.service;
+
+import com.wishmanager.cache.CacheInvalidationBus;
+import com.wishmanager.config.SchedulingConfig;
+import com.wishmanager.cache.CacheInvalidationListener.EntityType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves gifted wishes past the retention age from wishes into wishes_archive.
+ * <p>
+ * Each batch is one short transaction that deletes a few hundred rows and inserts them into the
+ * archive in a single statement. Candidate rows are locked with SKIP LOCKED, so a wish that a
+ * request is currently updating is simply left for the next batch instead of blocking either side.
+ */
+@Slf4j
+@Service
+public class WishArchiveService {
+    
+    private static final String MOVE_BATCH_SQL =
+            "WITH moved AS (" +
+            "  DELETE FROM wishes WHERE id IN (" +
+            "    SELECT id FROM wishes WHERE status = 'GIFTED' AND updated_at < ? " +
+            "    ORDER BY updated_at LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "  RETURNING id, wishlist_id, name, description, links, status, booked_by, hide_booker_name, created_at, updated_at) " +
+            "INSERT INTO wishes_archive (id, wishlist_id, name, description, links, status, booked_by, hide_booker_name, created_at, updated_at) " +
+            "SELECT id, wishlist_id, name, description, links, status, booked_by, hide_booker_name, created_at, updated_at FROM moved " +
+            "RETURNING wishlist_id";
+    
+    private static final String OLDEST_PENDING_SQL =
+            "SELECT min(updated_at) FROM wishes WHERE status = 'GIFTED' AND updated_at < ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private WishlistStatsService statsService;
+    
+    @Value("${archive.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${archive.gifted-after-days:180}")
+    private int giftedAfterDays;
+    
+    @Value("${archive.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${archive.batch-pause-ms:200}")
+    private long batchPauseMs;
+    
+    @Value("${archive.max-batches-per-run:100}")
+    private int maxBatchesPerRun;
+    
+    private TransactionTemplate transactionTemplate;
+    private Counter archivedCounter;
+    private Timer batchTimer;
+    private final AtomicLong lagSeconds = new AtomicLong();
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        archivedCounter = meterRegistry.counter("wishes.archive.moved");
+        batchTimer = meterRegistry.timer("wishes.archive.batch");
+        // How far past its archive age the oldest not yet archived gifted wish is
+        Gauge.builder("wishes.archive.lag.seconds", lagSeconds, AtomicLong::get).register(meterRegistry);
+    }
+    
+    @Scheduled(fixedDelayString = "${archive.interval-ms:600000}",
+               initialDelayString = "${archive.initial-delay-ms:60000}",
+               scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+        
+        try {
+            archiveGiftedWishes();
+        } catch (InterruptedException e) {
+            // The maintenance scheduler is shutting down
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Error archiving gifted wishes", e);
+        }
+    }
+    
+    /**
+     * Runs batches until nothing is left or the per-run budget is used up, pausing between
+     * batches so the archiver never holds a connection or row locks for long
+     */
+    public int archiveGiftedWishes() throws InterruptedException {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(giftedAfterDays);
+        int total = 0;
+        
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            int moved = batchTimer.record(() -> moveBatch(cutoff));
+            total += moved;
+            archivedCounter.increment(moved);
+            
+            if (moved < batchSize) {
+                break;
+            }
+            Thread.sleep(batchPauseMs);
+        }
+        
+        updateLag(cutoff);
+        if (total > 0) {
+            log.info("Archived {} gifted wishes, lag now {}s", total, lagSeconds.get());
+        }
+        return total;
+    }
+    
+    private int moveBatch(LocalDateTime cutoff) {
+        return transactionTemplate.execute(status -> {
+            List<UUID> wishlistIds = jdbcTemplate.queryForList(MOVE_BATCH_SQL, UUID.class, Timestamp.valueOf(cutoff), batchSize);
+            // Archived wishes drop out of the counters, which cover the live table only
+            statsService.adjustAll(wishlistIds, -1, 0, -1, 0);
+            
+            // Cached wishlist views still list the moved wishes; drop them once this batch commits
+            Set<UUID> touched = new HashSet<>(wishlistIds);
+            touched.forEach(wishlistId -> invalidationBus.publish(EntityType.WISHLIST, wishlistId));
+            
+            log.debug("Moved {} gifted wishes from {} wishlists to the archive", wishlistIds.size(), touched.size());
+            return wishlistIds.size();
+        });
+    }
+    
+    private void updateLag(LocalDateTime cutoff) {
+        Timestamp oldest = jdbcTemplate.queryForObject(OLDEST_PENDING_SQL, Timestamp.class, Timestamp.valueOf(cutoff));
+        lagSeconds.set(oldest == null ? 0 : Duration.between(oldest.toLocalDateTime(), cutoff).toSeconds());
+    }
+}
@@ -0,0 +1,211 @@
+package com.wishmanager.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wishmanager.dto.WishCreateRequest;
+import com.wishmanager.dto.WishResponse;
+import com.wishmanager.entity.User;
+import com.wishmanager.entity.Wishlist;
+import com.wishmanager.repository.UserRepository;
+import com.wishmanager.repository.WishlistRepository;
+import com.wishmanager.service.ConversationStore.Conversation;
+import com.wishmanager.service.ConversationStore.Step;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * The /add dialog: wishlist (only asked when the user owns several), name, link, description.
+ * Each step stores the chat's state in the {@link ConversationStore}; the last one creates the
+ * wish through {@link WishService}. Only the Telegram user who started a dialog can answer or
+ * cancel it, other members of a group chat are ignored. Methods return the reply for the bot to send.
+ */
+@Slf4j
+@Service
+public class WishDialogService {
+    
+    public static final String CALLBACK_PREFIX = "add_";
+    public static final String SKIP_COMMAND = "/skip";
+    
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_LINK_LENGTH = 2048;
+    private static final Pattern LINK = Pattern.compile("https?://\\S+", Pattern.CASE_INSENSITIVE);
+    
+    @Autowired
+    private ConversationStore conversationStore;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private WishlistRepository wishlistRepository;
+    
+    @Autowired
+    private WishService wishService;
+    
+    @Autowired
+    private BotMessageRenderer messageRenderer;
+    
+    @Value("${bot.conversations.max-wishlist-choices:20}")
+    private int maxWishlistChoices;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    /**
+     * Text and keyboard of a reply; the keyboard is null for none
+     */
+    public record Reply(String text, Map<String, Object> keyboard) {
+    }
+    
+    /**
+     * @return the chat's unfinished dialog, to be passed to {@link #answer}
+     */
+    public Optional<Conversation> activeConversation(long chatId) {
+        return conversationStore.get(chatId);
+    }
+    
+    /**
+     * Starts the dialog, replacing any unfinished one in the chat
+     */
+    public Reply start(long chatId, long telegramUserId) {
+        Optional<User> user = userRepository.findByTelegramId(String.valueOf(telegramUserId));
+        if (user.isEmpty()) {
+            log.info("Telegram user {} started /add without an account", telegramUserId);
+            return new Reply(messageRenderer.addNotLinked(), messageRenderer.webAppKeyboard());
+        }
+        
+        UUID userId = user.get().getId();
+        List<Wishlist> wishlists = ownedWishlists(userId);
+        if (wishlists.isEmpty()) {
+            conversationStore.remove(chatId);
+            return new Reply(messageRenderer.addNoWishlists(), messageRenderer.webAppKeyboard());
+        }
+        
+        log.info("Starting /add dialog for user {} in chat {} - {} wishlists to choose from", userId, chatId, wishlists.size());
+        if (wishlists.size() == 1) {
+            Wishlist wishlist = wishlists.get(0);
+            conversationStore.put(new Conversation(chatId, Step.NAME, userId, telegramUserId, wishlist.getId(), null, null, 0));
+            return new Reply(messageRenderer.addName(wishlist.getTitle()), null);
+        }
+        
+        conversationStore.put(new Conversation(chatId, Step.WISHLIST, userId, telegramUserId, null, null, null, 0));
+        return new Reply(messageRenderer.addChooseWishlist(), messageRenderer.wishlistChoiceKeyboard(wishlists, CALLBACK_PREFIX));
+    }
+    
+    /**
+     * Handles a wishlist button of the first step
+     * @return empty if the chat is not at that step, the button was pressed by someone else
+     * or the wishlist is not the user's
+     */
+    public Optional<Reply> chooseWishlist(long chatId, long telegramUserId, String callbackData) {
+        Optional<Conversation> conversation = conversationStore.get(chatId)
+                .filter(current -> current.step() == Step.WISHLIST && current.telegramUserId() == telegramUserId);
+        if (conversation.isEmpty()) {
+            log.debug("Ignoring stale wishlist choice {} in chat {}", callbackData, chatId);
+            return Optional.empty();
+        }
+        
+        UUID wishlistId;
+        try {
+            wishlistId = UUID.fromString(callbackData.substring(CALLBACK_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            log.warn("Malformed wishlist choice {} in chat {}", callbackData, chatId);
+            return Optional.empty();
+        }
+        
+        UUID userId = conversation.get().userId();
+        Optional<Wishlist> wishlist = wishlistRepository.findById(wishlistId)
+                .filter(found -> userId.equals(found.getOwnerId()));
+        if (wishlist.isEmpty()) {
+            log.warn("User {} chose wishlist {} they do not own in chat {}", userId, wishlistId, chatId);
+            return Optional.empty();
+        }
+        
+        conversationStore.put(conversation.get().next(Step.NAME, wishlistId, null, null));
+        return Optional.of(new Reply(messageRenderer.addName(wishlist.get().getTitle()), null));
+    }
+    
+    /**
+     * Handles a text message sent while the chat is in the dialog
+     * @param conversation the chat's dialog as returned by {@link #activeConversation}
+     * @return empty if the message is not from the user who started the dialog
+     */
+    public Optional<Reply> answer(Conversation conversation, long telegramUserId, String text) {
+        if (conversation.telegramUserId() != telegramUserId) {
+            log.debug("Ignoring message of Telegram user {} during the dialog of another user in chat {}",
+                    telegramUserId, conversation.chatId());
+            return Optional.empty();
+        }
+        
+        String value = text.trim();
+        boolean skip = value.equalsIgnoreCase(SKIP_COMMAND);
+        
+        return Optional.of(switch (conversation.step()) {
+            case WISHLIST -> new Reply(messageRenderer.addChooseWishlist(),
+                    messageRenderer.wishlistChoiceKeyboard(ownedWishlists(conversation.userId()), CALLBACK_PREFIX));
+            case NAME -> {
+                if (value.isEmpty() || value.startsWith("/") || value.length() > MAX_NAME_LENGTH) {
+                    yield new Reply(messageRenderer.addNameInvalid(), null);
+                }
+                conversationStore.put(conversation.next(Step.LINK, conversation.wishlistId(), value, null));
+                yield new Reply(messageRenderer.addLink(), null);
+            }
+            case LINK -> {
+                if (!skip && (value.length() > MAX_LINK_LENGTH || !LINK.matcher(value).matches())) {
+                    yield new Reply(messageRenderer.addLinkInvalid(), null);
+                }
+                conversationStore.put(conversation.next(Step.DESCRIPTION, conversation.wishlistId(),
+                        conversation.name(), skip ? null : value));
+                yield new Reply(messageRenderer.addDescription(), null);
+            }
+            case DESCRIPTION -> finish(conversation, skip || value.isEmpty() ? null : value);
+        });
+    }
+    
+    public Reply cancel(long chatId, long telegramUserId) {
+        boolean othersDialog = conversationStore.get(chatId)
+                .filter(conversation -> conversation.telegramUserId() != telegramUserId)
+                .isPresent();
+        if (othersDialog || !conversationStore.remove(chatId)) {
+            return new Reply(messageRenderer.nothingToCancel(), null);
+        }
+        log.info("Cancelled /add dialog in chat {}", chatId);
+        return new Reply(messageRenderer.addCancelled(), null);
+    }
+    
+    private Reply finish(Conversation conversation, String description) {
+        // Ended either way, so a wishlist deleted meanwhile cannot trap the chat in the dialog
+        conversationStore.remove(conversation.chatId());
+        
+        try {
+            String links = conversation.link() != null ? objectMapper.writeValueAsString(List.of(conversation.link())) : null;
+            WishResponse wish = wishService.createWish(
+                    new WishCreateRequest(conversation.wishlistId(), conversation.name(), description, links));
+            String wishlistTitle = wishlistRepository.findById(conversation.wishlistId())
+                    .map(Wishlist::getTitle)
+                    .orElse("your wishlist");
+            
+            log.info("Created wish {} from chat {} for user {}", wish.getId(), conversation.chatId(), conversation.userId());
+            return new Reply(messageRenderer.addDone(wish.getName(), wishlistTitle), messageRenderer.webAppKeyboard());
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.error("Error creating wish from chat {} in wishlist {}", conversation.chatId(), conversation.wishlistId(), e);
+            return new Reply(messageRenderer.addFailed(), null);
+        }
+    }
+    
+    // Most recently updated first, as many as fit a keyboard comfortably
+    private List<Wishlist> ownedWishlists(UUID userId) {
+        return wishlistRepository.findByOwnerId(userId).stream()
+                .sorted(Comparator.comparing(Wishlist::getUpdatedAt, Comparator.nullsLast(Comparator.reverseOrder())))
+                .limit(maxWishlistChoices)
+                .toList();
+    }
+}
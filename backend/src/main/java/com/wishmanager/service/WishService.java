@@ -1,43 +1,124 @@
 package com.wishmanager.service;
 
+import com.wishmanager.cache.CacheInvalidationBus;
+import com.wishmanager.cache.CacheInvalidationListener.EntityType;
+import com.wishmanager.dto.BookedWishResponse;
 import com.wishmanager.dto.WishCreateRequest;
 import com.wishmanager.dto.WishResponse;
 import com.wishmanager.entity.Wish;
+import com.wishmanager.job.JobQueue;
+import com.wishmanager.job.WishRankRebalanceJobHandler;
 import com.wishmanager.repository.WishRepository;
+import com.wishmanager.repository.WishlistRepository;
+import com.wishmanager.util.RankKeys;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @Slf4j
 @Service
 public class WishService {
     
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final Set<Wish.Status> BOOKING_STATUSES = EnumSet.of(Wish.Status.BOOKED, Wish.Status.GIFTED);
+    
     @Autowired
     private WishRepository wishRepository;
     
+    @Autowired
+    private WishlistRepository wishlistRepository;
+    
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+    
+    @Autowired
+    private JobQueue jobQueue;
+    
+    @Autowired
+    private WishlistStatsService statsService;
+    
+    @Value("${wishes.rank.rebalance-length:24}")
+    private int rebalanceLength;
+    
+    @Transactional
     public WishResponse createWish(WishCreateRequest request) {
-        log.info("Creating wish with name: '{}'", request.getName());
+        log.info("Creating wish with name: '{}' in wishlist {}", request.getName(), request.getWishlistId());
         log.debug("Wish details - description: {}, links: {}", 
                   request.getDescription(), request.getLinks());
         
+        if (request.getWishlistId() == null) {
+            log.warn("Attempt to create wish '{}' without a wishlist", request.getName());
+            throw new RuntimeException("Wishlist id is required");
+        }
+        
+        lockRanks(request.getWishlistId());
+        
         Wish wish = new Wish();
+        wish.setWishlistId(request.getWishlistId());
         wish.setName(request.getName());
         wish.setDescription(request.getDescription());
         wish.setLinks(request.getLinks());
         wish.setStatus(Wish.Status.FREE);
         wish.setHideBookerName(false);
+        // New wishes go on top
+        wish.setRank(RankKeys.between(null, wishRepository.findFirstRank(request.getWishlistId())));
         
-        // TODO: Set wishlistId from request or context
-        // For now, we'll need to add wishlistId to WishCreateRequest or get it from context
-        // wish.setWishlistId(request.getWishlistId());
-        
-        Wish savedWish = wishRepository.save(wish);
+        Wish savedWish = wishRepository.saveAndFlush(wish);
+        statsService.onWishStatusChange(savedWish.getWishlistId(), null, savedWish.getStatus());
+        rebalanceIfNeeded(savedWish);
+        publishChange(savedWish);
         log.info("Successfully created wish with ID: {}", savedWish.getId());
         return convertToResponse(savedWish);
     }
     
+    /**
+     * Places a wish right after another one of its wishlist, or on top when afterId is null.
+     * Only the moved wish is written.
+     */
+    @Transactional
+    public void moveWish(UUID id, UUID afterId) {
+        log.info("Moving wish {} after {}", id, afterId);
+        
+        Wish wish = wishRepository.findById(id)
+                .orElseThrow(() -> {
+                    log.error("Wish not found with ID: {}", id);
+                    return new RuntimeException("Wish not found with id: " + id);
+                });
+        lockRanks(wish.getWishlistId());
+        
+        String before = null;
+        if (afterId != null) {
+            Wish anchor = wishRepository.findById(afterId)
+                    .orElseThrow(() -> {
+                        log.error("Wish not found with ID: {}", afterId);
+                        return new RuntimeException("Wish not found with id: " + afterId);
+                    });
+            if (afterId.equals(id) || !anchor.getWishlistId().equals(wish.getWishlistId())) {
+                log.warn("Attempt to move wish {} after wish {} of another wishlist", id, afterId);
+                throw new RuntimeException("Wishes must be distinct and in the same wishlist");
+            }
+            before = anchor.getRank();
+        }
+        
+        String after = wishRepository.findNextRank(wish.getWishlistId(), before == null ? "" : before, id);
+        wish.setRank(RankKeys.between(before, after));
+        log.debug("Wish {} gets rank {} (between {} and {})", id, wish.getRank(), before, after);
+        
+        Wish savedWish = wishRepository.save(wish);
+        rebalanceIfNeeded(savedWish);
+        publishChange(savedWish);
+        log.info("Successfully moved wish with ID: {}", id);
+    }
+    
     public WishResponse updateWish(UUID id, WishCreateRequest request) {
         log.info("Updating wish with ID: {}", id);
         
@@ -55,26 +136,38 @@ public class WishService {
         wish.setLinks(request.getLinks());
         
         Wish savedWish = wishRepository.save(wish);
+        publishChange(savedWish);
         log.info("Successfully updated wish with ID: {}", savedWish.getId());
         return convertToResponse(savedWish);
     }
     
+    @Transactional
     public void deleteWish(UUID id) {
         log.info("Deleting wish with ID: {}", id);
         
-        if (!wishRepository.existsById(id)) {
-            log.error("Wish not found with ID: {}", id);
-            throw new RuntimeException("Wish not found with id: " + id);
-        }
+        Wish wish = wishRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> {
+                    log.error("Wish not found with ID: {}", id);
+                    return new RuntimeException("Wish not found with id: " + id);
+                });
         
-        wishRepository.deleteById(id);
+        wishRepository.delete(wish);
+        wishRepository.flush();
+        statsService.onWishStatusChange(wish.getWishlistId(), wish.getStatus(), null);
+        publishChange(wish);
         log.info("Successfully deleted wish with ID: {}", id);
     }
     
-    public WishResponse bookWish(UUID id, boolean hideBookerName) {
-        log.info("Booking wish with ID: {}, hideBookerName: {}", id, hideBookerName);
+    @Transactional
+    public WishResponse bookWish(UUID id, UUID userId, boolean hideBookerName) {
+        log.info("Booking wish with ID: {} for user {}, hideBookerName: {}", id, userId, hideBookerName);
         
-        Wish wish = wishRepository.findById(id)
+        if (userId == null) {
+            log.warn("Attempt to book wish {} without a booker", id);
+            throw new RuntimeException("User id is required");
+        }
+        
+        Wish wish = wishRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> {
                     log.error("Wish not found with ID: {}", id);
                     return new RuntimeException("Wish not found with id: " + id);
@@ -87,19 +180,21 @@ public class WishService {
         
         wish.setStatus(Wish.Status.BOOKED);
         wish.setHideBookerName(hideBookerName);
-        // TODO: Set bookedBy from current user context
-        // wish.setBookedBy(currentUserId);
+        wish.setBookedBy(userId);
         
         log.debug("Wish {} status changed to BOOKED", id);
-        Wish savedWish = wishRepository.save(wish);
+        Wish savedWish = wishRepository.saveAndFlush(wish);
+        statsService.onWishStatusChange(savedWish.getWishlistId(), Wish.Status.FREE, Wish.Status.BOOKED);
+        publishChange(savedWish);
         log.info("Successfully booked wish with ID: {}", savedWish.getId());
         return convertToResponse(savedWish);
     }
     
+    @Transactional
     public WishResponse unbookWish(UUID id) {
         log.info("Unbooking wish with ID: {}", id);
         
-        Wish wish = wishRepository.findById(id)
+        Wish wish = wishRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> {
                     log.error("Wish not found with ID: {}", id);
                     return new RuntimeException("Wish not found with id: " + id);
@@ -115,15 +210,18 @@ public class WishService {
         wish.setHideBookerName(false);
         
         log.debug("Wish {} status changed to FREE", id);
-        Wish savedWish = wishRepository.save(wish);
+        Wish savedWish = wishRepository.saveAndFlush(wish);
+        statsService.onWishStatusChange(savedWish.getWishlistId(), Wish.Status.BOOKED, Wish.Status.FREE);
+        publishChange(savedWish);
         log.info("Successfully unbooked wish with ID: {}", savedWish.getId());
         return convertToResponse(savedWish);
     }
     
+    @Transactional
     public WishResponse markAsGifted(UUID id) {
         log.info("Marking wish {} as gifted", id);
         
-        Wish wish = wishRepository.findById(id)
+        Wish wish = wishRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> {
                     log.error("Wish not found with ID: {}", id);
                     return new RuntimeException("Wish not found with id: " + id);
@@ -137,15 +235,18 @@ public class WishService {
         wish.setStatus(Wish.Status.GIFTED);
         
         log.debug("Wish {} status changed to GIFTED", id);
-        Wish savedWish = wishRepository.save(wish);
+        Wish savedWish = wishRepository.saveAndFlush(wish);
+        statsService.onWishStatusChange(savedWish.getWishlistId(), Wish.Status.BOOKED, Wish.Status.GIFTED);
+        publishChange(savedWish);
         log.info("Successfully marked wish with ID: {} as gifted", savedWish.getId());
         return convertToResponse(savedWish);
     }
     
+    @Transactional
     public WishResponse unmarkAsGifted(UUID id) {
         log.info("Unmarking wish {} as gifted", id);
         
-        Wish wish = wishRepository.findById(id)
+        Wish wish = wishRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> {
                     log.error("Wish not found with ID: {}", id);
                     return new RuntimeException("Wish not found with id: " + id);
@@ -159,11 +260,62 @@ public class WishService {
         wish.setStatus(Wish.Status.BOOKED);
         
         log.debug("Wish {} status changed from GIFTED to BOOKED", id);
-        Wish savedWish = wishRepository.save(wish);
+        Wish savedWish = wishRepository.saveAndFlush(wish);
+        statsService.onWishStatusChange(savedWish.getWishlistId(), Wish.Status.GIFTED, Wish.Status.BOOKED);
+        publishChange(savedWish);
         log.info("Successfully unmarked wish with ID: {} as gifted", savedWish.getId());
         return convertToResponse(savedWish);
     }
     
+    /**
+     * Wishes the user booked or gifted across all wishlists, newest first, with the wishlist
+     * title and owner joined in. Paginated by keyset: pass the last updatedAt and id as
+     * {@code before} and {@code beforeId}; the id breaks ties between equal timestamps.
+     */
+    @Transactional(readOnly = true)
+    public List<BookedWishResponse> getBookedWishes(UUID userId, LocalDateTime before, UUID beforeId, int size) {
+        log.debug("Getting bookings for user {} - before: {}/{}, size: {}", userId, before, beforeId, size);
+        
+        if (before != null && beforeId == null) {
+            log.warn("Bookings page of user {} requested before {} without beforeId", userId, before);
+            throw new RuntimeException("beforeId is required with before");
+        }
+        
+        PageRequest pageRequest = PageRequest.of(0, Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+        List<BookedWishResponse> bookings = before != null
+                ? wishRepository.findBookingsByUserBefore(userId, BOOKING_STATUSES, before, beforeId, pageRequest)
+                : wishRepository.findBookingsByUser(userId, BOOKING_STATUSES, pageRequest);
+        
+        log.info("Found {} bookings for user {}", bookings.size(), userId);
+        return bookings;
+    }
+    
+    /**
+     * Serializes rank key changes within a wishlist: two wishes added on top, or moved into
+     * the same gap, would otherwise be given the same key
+     */
+    private void lockRanks(UUID wishlistId) {
+        wishlistRepository.lockForRankChange(wishlistId)
+                .orElseThrow(() -> {
+                    log.error("Wishlist not found with ID: {}", wishlistId);
+                    return new RuntimeException("Wishlist not found with id: " + wishlistId);
+                });
+    }
+    
+    private void rebalanceIfNeeded(Wish wish) {
+        // Enqueued in this transaction, so the job sees the new key
+        if (wish.getRank().length() > rebalanceLength) {
+            log.debug("Rank key of wish {} has {} characters, scheduling a rebalance", wish.getId(), wish.getRank().length());
+            jobQueue.enqueue(WishRankRebalanceJobHandler.QUEUE, WishRankRebalanceJobHandler.rebalance(wish.getWishlistId()));
+        }
+    }
+    
+    private void publishChange(Wish wish) {
+        // Wishlist views embed their wishes, so they are stale as well
+        invalidationBus.publish(EntityType.WISH, wish.getId());
+        invalidationBus.publish(EntityType.WISHLIST, wish.getWishlistId());
+    }
+    
     private WishResponse convertToResponse(Wish wish) {
         return new WishResponse(
                 wish.getId(),
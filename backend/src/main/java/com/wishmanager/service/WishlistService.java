@@ -1,26 +1,84 @@
 package com.wishmanager.service;
 
+import com.wishmanager.cache.CacheInvalidationBus;
+import com.wishmanager.cache.CacheInvalidationListener;
+import com.wishmanager.cache.CacheInvalidationListener.EntityType;
+import com.wishmanager.dto.BulkInviteRequest;
+import com.wishmanager.dto.BulkInviteResponse;
+import com.wishmanager.dto.WishlistCloneRequest;
+import com.wishmanager.dto.WishlistCloneResponse;
 import com.wishmanager.dto.WishlistCreateRequest;
 import com.wishmanager.dto.WishlistResponse;
 import com.wishmanager.dto.WishResponse;
 import com.wishmanager.dto.MembershipResponse;
+import com.wishmanager.dto.WishlistSummaryResponse;
+import com.wishmanager.entity.ArchivedWish;
 import com.wishmanager.entity.Wishlist;
 import com.wishmanager.entity.Wish;
 import com.wishmanager.entity.Membership;
+import com.wishmanager.job.JobQueue;
+import com.wishmanager.job.TelegramNotificationJobHandler;
 import com.wishmanager.repository.WishlistRepository;
 import com.wishmanager.repository.WishRepository;
 import com.wishmanager.repository.MembershipRepository;
+import com.wishmanager.repository.ArchivedWishRepository;
+import com.wishmanager.util.SingleFlight;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
-public class WishlistService {
+public class WishlistService implements CacheInvalidationListener {
+    
+    private static final int MAX_PAGE_SIZE = 100;
+    
+    // Copies the wishlist, its owner membership, its wishes and its counters in one statement. Wishes
+    // start over as FREE and keep their ranks; created_at is spaced by a microsecond to keep ties stable
+    private static final String CLONE_SQL =
+            "WITH source AS (" +
+            "  SELECT * FROM wishlists WHERE id = ?" +
+            "), copy AS (" +
+            "  INSERT INTO wishlists (owner_id, title, description, is_public, booking_ttl_hours, event_date) " +
+            "  SELECT ?, COALESCE(?, title), description, COALESCE(?, is_public), booking_ttl_hours, ? FROM source " +
+            "  RETURNING id, owner_id, title" +
+            "), owner AS (" +
+            "  INSERT INTO memberships (user_id, wishlist_id, role) SELECT owner_id, id, 'OWNER' FROM copy" +
+            "), wishes_copy AS (" +
+            "  INSERT INTO wishes (wishlist_id, name, description, links, status, rank, created_at, updated_at) " +
+            "  SELECT c.id, w.name, w.description, w.links, 'FREE', w.rank, " +
+            "    CURRENT_TIMESTAMP - row_number() OVER (ORDER BY w.created_at DESC, w.id) * interval '1 microsecond', CURRENT_TIMESTAMP " +
+            "  FROM wishes w CROSS JOIN copy c WHERE w.wishlist_id = ? " +
+            "  RETURNING 1" +
+            "), stats AS (" +
+            "  INSERT INTO wishlist_stats (wishlist_id, wish_count, member_count) " +
+            "  SELECT id, (SELECT count(*) FROM wishes_copy), 1 FROM copy" +
+            ") " +
+            "SELECT id, title, (SELECT count(*) FROM wishes_copy) AS wish_count FROM copy";
+    
+    // Resolves the invitees and inserts their memberships in one round trip; existing members come back without a membership_id
+    private static final String BULK_INVITE_SQL =
+            "WITH targets AS (" +
+            "  SELECT id, telegram_id FROM users WHERE id = ANY(?) OR telegram_id = ANY(?)" +
+            "), inserted AS (" +
+            "  INSERT INTO memberships (user_id, wishlist_id, role) SELECT id, ?, 'VIEWER' FROM targets " +
+            "  ON CONFLICT (user_id, wishlist_id) DO NOTHING RETURNING id, user_id" +
+            ") " +
+            "SELECT t.id AS user_id, t.telegram_id, i.id AS membership_id FROM targets t LEFT JOIN inserted i ON i.user_id = t.id";
     
     @Autowired
     private WishlistRepository wishlistRepository;
@@ -31,6 +89,39 @@ public class WishlistService {
     @Autowired
     private MembershipRepository membershipRepository;
     
+    @Autowired
+    private ArchivedWishRepository archivedWishRepository;
+    
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+    
+    @Autowired
+    private TrendingService trendingService;
+    
+    @Autowired
+    private JobQueue jobQueue;
+    
+    @Autowired
+    private ReminderService reminderService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private WishlistStatsService statsService;
+    
+    @Value("${wishlist.read-coalescing.max-wait-ms:2000}")
+    private long readCoalescingMaxWaitMs;
+    
+    // Concurrent reads of the same wishlist share one load instead of each running the queries
+    private SingleFlight<UUID, WishlistResponse> wishlistLoads;
+    
+    @PostConstruct
+    public void init() {
+        wishlistLoads = new SingleFlight<>(readCoalescingMaxWaitMs);
+    }
+    
+    @Transactional
     public WishlistResponse createWishlist(WishlistCreateRequest request) {
         log.info("Creating wishlist with title: '{}'", request.getTitle());
         log.debug("Wishlist details - description: {}, isPublic: {}", 
@@ -40,6 +131,8 @@ public class WishlistService {
         wishlist.setTitle(request.getTitle());
         wishlist.setDescription(request.getDescription());
         wishlist.setIsPublic(request.getIsPublic());
+        wishlist.setBookingTtlHours(request.getBookingTtlHours());
+        wishlist.setEventDate(request.getEventDate());
         
         // TODO: Set ownerId from current user context
         // wishlist.setOwnerId(currentUserId);
@@ -52,13 +145,18 @@ public class WishlistService {
         ownerMembership.setUserId(savedWishlist.getOwnerId());
         ownerMembership.setWishlistId(savedWishlist.getId());
         ownerMembership.setRole(Membership.Role.OWNER);
-        membershipRepository.save(ownerMembership);
+        membershipRepository.saveAndFlush(ownerMembership);
+        statsService.create(savedWishlist.getId(), 1);
         log.debug("Created owner membership for wishlist ID: {}", savedWishlist.getId());
+        invalidationBus.publish(EntityType.WISHLIST, savedWishlist.getId());
+        
+        reminderService.scheduleReminders(savedWishlist);
         
         log.info("Successfully created wishlist with ID: {}", savedWishlist.getId());
         return convertToResponse(savedWishlist);
     }
     
+    @Transactional(readOnly = true)
     public List<WishlistResponse> getWishlists(UUID owner, Boolean publicOnly) {
         log.debug("Getting wishlists - owner: {}, publicOnly: {}", owner, publicOnly);
         
@@ -76,8 +174,8 @@ public class WishlistService {
             log.debug("Finding all public wishlists");
             wishlists = wishlistRepository.findAllPublic();
         } else {
-            log.debug("Finding wishlists where user is a member");
-            // TODO: Get wishlists where user is a member
+            // With a known user the controller serves getMemberWishlists instead
+            log.debug("No owner, public filter or user given, returning no wishlists");
             wishlists = List.of();
         }
         
@@ -88,9 +186,61 @@ public class WishlistService {
                 .collect(Collectors.toList());
     }
     
+    /**
+     * Wishlists the user is a member of (any role), most recently active first.
+     * One join over memberships and wishlists, no per-wishlist follow-up queries.
+     */
+    @Transactional(readOnly = true)
+    public List<WishlistSummaryResponse> getMemberWishlists(UUID userId, int page, int size) {
+        log.debug("Finding wishlists where user {} is a member - page: {}, size: {}", userId, page, size);
+        
+        PageRequest pageRequest = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+        List<WishlistSummaryResponse> wishlists = membershipRepository.findMemberWishlists(userId, pageRequest);
+        
+        log.info("Found {} wishlists for member {}", wishlists.size(), userId);
+        return wishlists;
+    }
+    
+    @Transactional(readOnly = true)
     public WishlistResponse getWishlistById(UUID id) {
         log.debug("Getting wishlist by ID: {}", id);
+        // Coalesced callers share one loaded response, each gets its own copy to change
+        WishlistResponse response = copyOf(wishlistLoads.execute(id, () -> loadWishlist(id)));
+        // Only wishlists that exist count, unknown IDs must not grow the view counters
+        trendingService.recordView(id);
+        return response;
+    }
+    
+    /**
+     * Wishlist including wishes moved to the archive, for history views.
+     * Rarely requested, so it bypasses read coalescing.
+     */
+    @Transactional(readOnly = true)
+    public WishlistResponse getWishlistById(UUID id, boolean includeArchived) {
+        if (!includeArchived) {
+            return getWishlistById(id);
+        }
         
+        log.debug("Getting wishlist by ID with archived wishes: {}", id);
+        WishlistResponse response = loadWishlist(id);
+        trendingService.recordView(id);
+        
+        List<WishResponse> archived = archivedWishRepository.findByWishlistIdOrderByCreatedAtDesc(id)
+                .stream()
+                .map(this::convertArchivedWishToResponse)
+                .collect(Collectors.toList());
+        log.debug("Found {} archived wishes for wishlist {}", archived.size(), id);
+        
+        if (!archived.isEmpty()) {
+            // Archived wishes have no place in the owner's order any more, they follow the live ones
+            List<WishResponse> wishes = new ArrayList<>(response.getWishes());
+            wishes.addAll(archived);
+            response.setWishes(wishes);
+        }
+        return response;
+    }
+    
+    private WishlistResponse loadWishlist(UUID id) {
         Wishlist wishlist = wishlistRepository.findById(id)
                 .orElseThrow(() -> {
                     log.error("Wishlist not found with ID: {}", id);
@@ -101,6 +251,7 @@ public class WishlistService {
         return convertToResponse(wishlist);
     }
     
+    @Transactional
     public void joinWishlist(UUID wishlistId) {
         log.info("User attempting to join wishlist ID: {}", wishlistId);
         
@@ -127,43 +278,150 @@ public class WishlistService {
         membership.setUserId(currentUserId);
         membership.setWishlistId(wishlistId);
         membership.setRole(Membership.Role.VIEWER);
-        membershipRepository.save(membership);
+        membershipRepository.saveAndFlush(membership);
+        statsService.adjust(wishlistId, 0, 0, 0, 1);
+        publishMembershipChange(membership);
         
         log.info("User {} successfully joined wishlist {}", currentUserId, wishlistId);
     }
     
-    public void inviteToWishlist(UUID wishlistId, UUID userId, String telegramId) {
-        log.info("Inviting user {} to wishlist {}", userId, wishlistId);
+    @Transactional
+    public void inviteToWishlist(UUID wishlistId, UUID userId, String telegramId, UUID inviterId) {
+        log.info("Inviting user {} (telegram ID {}) to wishlist {}", userId, telegramId, wishlistId);
         
-        // TODO: Check if current user has permission to invite (OWNER or EDITOR)
-        // TODO: Validate that the user exists or create invitation
+        BulkInviteRequest request = new BulkInviteRequest();
+        request.setInviterId(inviterId);
+        if (userId != null) {
+            request.getUserIds().add(userId);
+        } else if (telegramId != null) {
+            request.getTelegramIds().add(telegramId);
+        }
         
-        if (membershipRepository.existsByUserIdAndWishlistId(userId, wishlistId)) {
-            log.warn("User {} is already a member of wishlist {}", userId, wishlistId);
+        BulkInviteResponse result = inviteToWishlist(wishlistId, request);
+        if (!result.getAlreadyMembers().isEmpty()) {
+            log.warn("User {} is already a member of wishlist {}", result.getAlreadyMembers().get(0), wishlistId);
             throw new RuntimeException("User is already a member of this wishlist");
         }
+        if (result.getInvited().isEmpty()) {
+            log.warn("Cannot invite unknown user {} (telegram ID {}) to wishlist {}", userId, telegramId, wishlistId);
+            throw new RuntimeException("User not found");
+        }
+    }
+    
+    /**
+     * Copies a wishlist and its current wishes inside the database, without loading them.
+     * The copy belongs to the cloning user and gets fresh, unbooked wishes in the same order;
+     * archived wishes are not copied. Private wishlists may only be cloned by their members.
+     */
+    @Transactional
+    public WishlistCloneResponse cloneWishlist(UUID sourceId, WishlistCloneRequest request) {
+        UUID userId = request.getUserId();
+        log.info("User {} cloning wishlist {}", userId, sourceId);
         
-        wishlistRepository.findById(wishlistId)
+        Wishlist source = wishlistRepository.findById(sourceId)
+                .orElseThrow(() -> {
+                    log.error("Wishlist not found with ID: {}", sourceId);
+                    return new RuntimeException("Wishlist not found with id: " + sourceId);
+                });
+        if (!Boolean.TRUE.equals(source.getIsPublic())
+                && membershipRepository.findUserMembershipInWishlist(userId, sourceId).isEmpty()) {
+            log.warn("User {} is not a member of private wishlist {}", userId, sourceId);
+            throw new RuntimeException("Only members may clone a private wishlist");
+        }
+        
+        WishlistCloneResponse response = jdbcTemplate.queryForObject(CLONE_SQL, (rs, rowNum) -> new WishlistCloneResponse(
+                rs.getObject("id", UUID.class),
+                sourceId,
+                rs.getString("title"),
+                rs.getInt("wish_count")
+        ), sourceId, userId, request.getTitle(), request.getIsPublic(), request.getEventDate(), sourceId);
+        
+        invalidationBus.publish(EntityType.WISHLIST, response.getId());
+        reminderService.scheduleReminders(response.getId(), request.getEventDate());
+        
+        log.info("Cloned wishlist {} into {} with {} wishes", sourceId, response.getId(), response.getWishCount());
+        return response;
+    }
+    
+    /**
+     * Adds many users as viewers in one statement: telegram IDs are resolved, memberships inserted
+     * and existing ones skipped by the unique constraint, so the cost does not grow with the number
+     * of invitees and concurrent invitations cannot fail on duplicates. Invitees are notified in the
+     * name of the inviter, who must be a member; without one the owner is named.
+     */
+    @Transactional
+    public BulkInviteResponse inviteToWishlist(UUID wishlistId, BulkInviteRequest request) {
+        log.info("Inviting {} users and {} telegram IDs to wishlist {}",
+                request.getUserIds().size(), request.getTelegramIds().size(), wishlistId);
+        
+        // TODO: Check if current user has permission to invite (OWNER or EDITOR)
+        
+        Wishlist wishlist = wishlistRepository.findById(wishlistId)
                 .orElseThrow(() -> {
                     log.error("Wishlist not found with ID: {}", wishlistId);
                     return new RuntimeException("Wishlist not found with id: " + wishlistId);
                 });
         
-        Membership membership = new Membership();
-        membership.setUserId(userId);
-        membership.setWishlistId(wishlistId);
-        membership.setRole(Membership.Role.VIEWER);
-        membershipRepository.save(membership);
-        log.debug("Created membership for user {} in wishlist {}", userId, wishlistId);
+        UUID inviterId = request.getInviterId() != null ? request.getInviterId() : wishlist.getOwnerId();
+        if (request.getInviterId() != null
+                && membershipRepository.findUserMembershipInWishlist(inviterId, wishlistId).isEmpty()) {
+            log.warn("User {} is not a member of wishlist {} and cannot invite to it", inviterId, wishlistId);
+            throw new RuntimeException("Only members may invite to a wishlist");
+        }
+        
+        UUID[] userIds = request.getUserIds().stream().distinct().toArray(UUID[]::new);
+        String[] telegramIds = request.getTelegramIds().stream().distinct().toArray(String[]::new);
         
-        // TODO: Send invitation notification via Telegram if telegramId is provided
-        if (telegramId != null) {
-            log.debug("Telegram ID provided for notification: {}", telegramId);
+        List<InviteTarget> targets = jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(BULK_INVITE_SQL);
+            ps.setArray(1, connection.createArrayOf("uuid", userIds));
+            ps.setArray(2, connection.createArrayOf("varchar", telegramIds));
+            ps.setObject(3, wishlistId);
+            return ps;
+        }, (rs, rowNum) -> new InviteTarget(
+                rs.getObject("user_id", UUID.class),
+                rs.getString("telegram_id"),
+                rs.getObject("membership_id", UUID.class)));
+        
+        List<UUID> invited = new ArrayList<>();
+        List<UUID> alreadyMembers = new ArrayList<>();
+        Set<UUID> foundUserIds = new HashSet<>();
+        Set<String> foundTelegramIds = new HashSet<>();
+        for (InviteTarget target : targets) {
+            foundUserIds.add(target.userId());
+            foundTelegramIds.add(target.telegramId());
+            if (target.membershipId() != null) {
+                invited.add(target.userId());
+            } else {
+                alreadyMembers.add(target.userId());
+            }
         }
         
-        log.info("Successfully invited user {} to wishlist {}", userId, wishlistId);
+        if (!invited.isEmpty()) {
+            statsService.adjust(wishlistId, 0, 0, 0, invited.size());
+            
+            // Wishlist views embed their memberships, one invalidation covers the whole batch
+            invalidationBus.publish(EntityType.WISHLIST, wishlistId);
+            
+            // Committed together with the memberships; delivered by the job worker
+            jobQueue.enqueueAll(TelegramNotificationJobHandler.QUEUE, invited.stream()
+                    .map(userId -> TelegramNotificationJobHandler.invitation(userId, wishlistId, inviterId))
+                    .toList());
+            log.debug("Queued {} invitation notifications for wishlist {}", invited.size(), wishlistId);
+        }
+        
+        BulkInviteResponse response = new BulkInviteResponse(
+                invited,
+                alreadyMembers,
+                Arrays.stream(userIds).filter(id -> !foundUserIds.contains(id)).toList(),
+                Arrays.stream(telegramIds).filter(id -> !foundTelegramIds.contains(id)).toList());
+        
+        log.info("Invited {} users to wishlist {}, {} already members, {} unknown", invited.size(), wishlistId,
+                alreadyMembers.size(), response.getUnknownUserIds().size() + response.getUnknownTelegramIds().size());
+        return response;
     }
     
+    @Transactional
     public void leaveWishlist(UUID wishlistId) {
         log.info("User attempting to leave wishlist ID: {}", wishlistId);
         
@@ -182,11 +440,33 @@ public class WishlistService {
         }
         
         membershipRepository.delete(membership);
+        membershipRepository.flush();
+        statsService.adjust(wishlistId, 0, 0, 0, -1);
+        publishMembershipChange(membership);
         log.info("User {} successfully left wishlist {}", currentUserId, wishlistId);
     }
     
+    @Override
+    public void onInvalidate(EntityType type, UUID id) {
+        if (type == EntityType.WISHLIST) {
+            // Readers arriving after a write must not join a load that may predate it
+            wishlistLoads.forget(id);
+        }
+    }
+    
+    @Override
+    public void onInvalidateAll() {
+        wishlistLoads.forgetAll();
+    }
+    
+    private void publishMembershipChange(Membership membership) {
+        // Wishlist views embed their memberships, so they are stale as well
+        invalidationBus.publish(EntityType.MEMBERSHIP, membership.getId());
+        invalidationBus.publish(EntityType.WISHLIST, membership.getWishlistId());
+    }
+    
     private WishlistResponse convertToResponse(Wishlist wishlist) {
-        List<WishResponse> wishes = wishRepository.findByWishlistIdOrderByCreatedAtDesc(wishlist.getId())
+        List<WishResponse> wishes = wishRepository.findByWishlistIdOrderByRankAscIdAsc(wishlist.getId())
                 .stream()
                 .map(this::convertWishToResponse)
                 .collect(Collectors.toList());
@@ -202,6 +482,8 @@ public class WishlistService {
                 wishlist.getTitle(),
                 wishlist.getDescription(),
                 wishlist.getIsPublic(),
+                wishlist.getBookingTtlHours(),
+                wishlist.getEventDate(),
                 wishlist.getCreatedAt(),
                 wishlist.getUpdatedAt(),
                 wishes,
@@ -209,6 +491,56 @@ public class WishlistService {
         );
     }
     
+    private WishlistResponse copyOf(WishlistResponse response) {
+        return new WishlistResponse(
+                response.getId(),
+                response.getOwnerId(),
+                response.getTitle(),
+                response.getDescription(),
+                response.getIsPublic(),
+                response.getBookingTtlHours(),
+                response.getEventDate(),
+                response.getCreatedAt(),
+                response.getUpdatedAt(),
+                response.getWishes().stream()
+                        .map(wish -> new WishResponse(
+                                wish.getId(),
+                                wish.getWishlistId(),
+                                wish.getName(),
+                                wish.getDescription(),
+                                wish.getLinks(),
+                                wish.getStatus(),
+                                wish.getBookedBy(),
+                                wish.getHideBookerName(),
+                                wish.getCreatedAt(),
+                                wish.getUpdatedAt()))
+                        .collect(Collectors.toList()),
+                response.getMemberships().stream()
+                        .map(membership -> new MembershipResponse(
+                                membership.getId(),
+                                membership.getUserId(),
+                                membership.getWishlistId(),
+                                membership.getRole(),
+                                membership.getCreatedAt()))
+                        .collect(Collectors.toList())
+        );
+    }
+    
+    private WishResponse convertArchivedWishToResponse(ArchivedWish wish) {
+        return new WishResponse(
+                wish.getId(),
+                wish.getWishlistId(),
+                wish.getName(),
+                wish.getDescription(),
+                wish.getLinks(),
+                wish.getStatus(),
+                wish.getBookedBy(),
+                wish.getHideBookerName(),
+                wish.getCreatedAt(),
+                wish.getUpdatedAt()
+        );
+    }
+    
     private WishResponse convertWishToResponse(Wish wish) {
         return new WishResponse(
                 wish.getId(),
@@ -233,4 +565,7 @@ public class WishlistService {
                 membership.getCreatedAt()
         );
     }
+    
+    private record InviteTarget(UUID userId, String telegramId, UUID membershipId) {
+    }
 }
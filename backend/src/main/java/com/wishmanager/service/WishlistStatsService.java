@@ -0,0 +1,222 @@
+package com.wishmanager.service;
+
+import com.wishmanager.config.SchedulingConfig;
+import com.wishmanager.entity.Wish;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Maintains the wishlist_stats counters.
+ * <p>
+ * Every change to wishes or memberships adjusts the counters of its wishlist by a delta within the
+ * caller's transaction, after the row change itself, so locks are always taken wish first, counters
+ * second. A scheduled reconciliation walks all wishlists in batches, recounts them and repairs drift
+ * left by code paths that bypass this service.
+ */
+@Slf4j
+@Service
+public class WishlistStatsService {
+    
+    private static final String CREATE_SQL =
+            "INSERT INTO wishlist_stats (wishlist_id, member_count) VALUES (?, ?) ON CONFLICT (wishlist_id) DO NOTHING";
+    
+    private static final String ADJUST_SQL =
+            "UPDATE wishlist_stats SET wish_count = wish_count + ?, booked_count = booked_count + ?, " +
+            "gifted_count = gifted_count + ?, member_count = member_count + ? WHERE wishlist_id = ?";
+    
+    // Each occurrence of a wishlist in the array applies the deltas once
+    private static final String ADJUST_ALL_SQL =
+            "UPDATE wishlist_stats s SET wish_count = s.wish_count + ? * d.n, booked_count = s.booked_count + ? * d.n, " +
+            "gifted_count = s.gifted_count + ? * d.n, member_count = s.member_count + ? * d.n " +
+            "FROM (SELECT id, count(*) AS n FROM unnest(?::uuid[]) AS id GROUP BY id) d " +
+            "WHERE s.wishlist_id = d.id";
+    
+    private static final String NEXT_BATCH_SQL =
+            "SELECT id FROM wishlists WHERE id > ? ORDER BY id LIMIT ?";
+    
+    // Bulk writers and the recount lock counter rows in id order, so they cannot deadlock each other
+    private static final String LOCK_SQL =
+            "SELECT wishlist_id FROM wishlist_stats WHERE wishlist_id = ANY(?) ORDER BY wishlist_id FOR UPDATE";
+    
+    private static final String REPAIR_SQL =
+            "INSERT INTO wishlist_stats (wishlist_id, wish_count, booked_count, gifted_count, member_count) " +
+            "SELECT l.id, w.wish_count, w.booked_count, w.gifted_count, m.member_count FROM wishlists l " +
+            "CROSS JOIN LATERAL (" +
+            "  SELECT count(*) AS wish_count, count(*) FILTER (WHERE status = 'BOOKED') AS booked_count, " +
+            "  count(*) FILTER (WHERE status = 'GIFTED') AS gifted_count FROM wishes WHERE wishlist_id = l.id) w " +
+            "CROSS JOIN LATERAL (SELECT count(*) AS member_count FROM memberships WHERE wishlist_id = l.id) m " +
+            "WHERE l.id = ANY(?) " +
+            "ON CONFLICT (wishlist_id) DO UPDATE SET wish_count = EXCLUDED.wish_count, booked_count = EXCLUDED.booked_count, " +
+            "gifted_count = EXCLUDED.gifted_count, member_count = EXCLUDED.member_count " +
+            "WHERE (wishlist_stats.wish_count, wishlist_stats.booked_count, wishlist_stats.gifted_count, wishlist_stats.member_count) " +
+            "IS DISTINCT FROM (EXCLUDED.wish_count, EXCLUDED.booked_count, EXCLUDED.gifted_count, EXCLUDED.member_count) " +
+            "RETURNING wishlist_id";
+    
+    private static final UUID FIRST_ID = new UUID(0, 0);
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${wishlist-stats.reconcile.enabled:true}")
+    private boolean reconcileEnabled;
+    
+    @Value("${wishlist-stats.reconcile.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${wishlist-stats.reconcile.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+    
+    @Value("${wishlist-stats.reconcile.batch-pause-ms:100}")
+    private long batchPauseMs;
+    
+    private TransactionTemplate transactionTemplate;
+    private Counter repairedCounter;
+    
+    // Where the next reconciliation run picks up; wraps around after the last wishlist
+    private UUID cursor = FIRST_ID;
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        repairedCounter = meterRegistry.counter("wishlist.stats.repaired");
+    }
+    
+    /**
+     * Creates the counters of a new wishlist
+     */
+    public void create(UUID wishlistId, int memberCount) {
+        jdbcTemplate.update(CREATE_SQL, wishlistId, memberCount);
+    }
+    
+    public void adjust(UUID wishlistId, int wishes, int booked, int gifted, int members) {
+        if (wishes == 0 && booked == 0 && gifted == 0 && members == 0) {
+            return;
+        }
+        jdbcTemplate.update(ADJUST_SQL, wishes, booked, gifted, members, wishlistId);
+    }
+    
+    /**
+     * Applies the same deltas once per occurrence of a wishlist, for bulk statements that
+     * return the wishlist of every row they changed
+     */
+    public void adjustAll(Collection<UUID> wishlistIds, int wishes, int booked, int gifted, int members) {
+        if (wishlistIds.isEmpty()) {
+            return;
+        }
+        lock(wishlistIds);
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(ADJUST_ALL_SQL);
+            ps.setInt(1, wishes);
+            ps.setInt(2, booked);
+            ps.setInt(3, gifted);
+            ps.setInt(4, members);
+            ps.setArray(5, connection.createArrayOf("uuid", wishlistIds.toArray()));
+            return ps;
+        });
+    }
+    
+    /**
+     * Adjusts the counters for a wish moving from one status to another; null stands for a wish
+     * that did not exist before or no longer exists after
+     */
+    public void onWishStatusChange(UUID wishlistId, Wish.Status from, Wish.Status to) {
+        adjust(wishlistId,
+                (to != null ? 1 : 0) - (from != null ? 1 : 0),
+                (to == Wish.Status.BOOKED ? 1 : 0) - (from == Wish.Status.BOOKED ? 1 : 0),
+                (to == Wish.Status.GIFTED ? 1 : 0) - (from == Wish.Status.GIFTED ? 1 : 0),
+                0);
+    }
+    
+    @Scheduled(fixedDelayString = "${wishlist-stats.reconcile.interval-ms:600000}",
+               initialDelayString = "${wishlist-stats.reconcile.initial-delay-ms:120000}",
+               scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void reconcile() {
+        if (!reconcileEnabled) {
+            return;
+        }
+        
+        try {
+            reconcileBatches();
+        } catch (InterruptedException e) {
+            // The maintenance scheduler is shutting down
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Error reconciling wishlist stats", e);
+        }
+    }
+    
+    /**
+     * Recounts up to the per-run budget of wishlists, continuing where the previous run stopped
+     * @return number of wishlists whose counters had drifted
+     */
+    public synchronized int reconcileBatches() throws InterruptedException {
+        int repaired = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            List<UUID> wishlistIds = jdbcTemplate.queryForList(NEXT_BATCH_SQL, UUID.class, cursor, batchSize);
+            if (wishlistIds.isEmpty()) {
+                cursor = FIRST_ID;
+                break;
+            }
+            
+            repaired += repairBatch(wishlistIds);
+            cursor = wishlistIds.get(wishlistIds.size() - 1);
+            Thread.sleep(batchPauseMs);
+        }
+        
+        if (repaired > 0) {
+            log.warn("Repaired drifted stats of {} wishlists", repaired);
+        } else {
+            log.debug("Wishlist stats reconciled, no drift, cursor at {}", cursor);
+        }
+        return repaired;
+    }
+    
+    private int repairBatch(List<UUID> wishlistIds) {
+        List<UUID> repaired = transactionTemplate.execute(status -> {
+            // Writers adjusting these counters now wait for the recount, so their deltas apply on top of it
+            lock(wishlistIds);
+            // A new statement, so the recount sees everything committed while waiting for the locks
+            return jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(REPAIR_SQL);
+                ps.setArray(1, connection.createArrayOf("uuid", wishlistIds.toArray()));
+                return ps;
+            }, (rs, rowNum) -> rs.getObject("wishlist_id", UUID.class));
+        });
+        
+        if (repaired == null || repaired.isEmpty()) {
+            return 0;
+        }
+        log.debug("Repaired stats of wishlists {}", repaired);
+        repairedCounter.increment(repaired.size());
+        return repaired.size();
+    }
+    
+    private void lock(Collection<UUID> wishlistIds) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(LOCK_SQL);
+            ps.setArray(1, connection.createArrayOf("uuid", wishlistIds.toArray()));
+            return ps;
+        }, rs -> {
+        });
+    }
+}
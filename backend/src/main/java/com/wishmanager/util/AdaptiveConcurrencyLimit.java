@@ -0,0 +1,97 @@
+package com.wishmanager.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that adapts to observed latency, after the gradient algorithm of Netflix's
+ * concurrency-limits library.
+ * <p>
+ * A long-term average of request latency stands in for the latency of an unloaded system. When
+ * recent latency rises above it, requests are queueing somewhere (here: waiting for database
+ * connections), and the limit shrinks in proportion; while latency stays at the baseline the limit
+ * grows by a small headroom each sample. Admission is a lock-free check of in-flight requests
+ * against a share of the limit, so lower priorities are turned away before higher ones.
+ */
+public class AdaptiveConcurrencyLimit {
+    
+    // Latency may exceed the baseline by this factor before the limit shrinks
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_WINDOW = 600;
+    private static final int WARMUP_SAMPLES = 10;
+    
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    private volatile double limit;
+    private double longRttNanos;
+    private long samples;
+    
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+    
+    /**
+     * Admits a request if in-flight requests are below the given share of the limit.
+     * Every admitted request must be followed by {@link #release}.
+     */
+    public boolean tryAcquire(double share) {
+        int allowed = Math.max(1, (int) (limit * share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Ends a request admitted by {@link #tryAcquire}
+     * @param rttNanos time the request took, or a negative value to leave the limit alone
+     */
+    public void release(long rttNanos) {
+        int current = inFlight.getAndDecrement();
+        if (rttNanos > 0) {
+            onSample(rttNanos, current);
+        }
+    }
+    
+    public int getLimit() {
+        return (int) limit;
+    }
+    
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    
+    private synchronized void onSample(long rttNanos, int inFlightAtSample) {
+        samples++;
+        if (samples <= WARMUP_SAMPLES) {
+            longRttNanos += (rttNanos - longRttNanos) / samples;
+            return;
+        }
+        longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+        
+        // Once a slowdown is over the baseline is still inflated; pull it down so the next one is noticed
+        if (longRttNanos / rttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+        
+        // Far below the limit the latency says nothing about whether a higher limit would help
+        if (inFlightAtSample < limit / 2) {
+            return;
+        }
+        
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / rttNanos));
+        double headroom = Math.sqrt(limit);
+        double target = limit * gradient + headroom;
+        double next = limit * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
@@ -0,0 +1,145 @@
+package com.wishmanager.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: schedule and cancel are O(1) no matter how many timers are pending.
+ * <p>
+ * Level 0 has one slot per tick; each higher level covers a whole rotation of the level below
+ * per slot. A timer is filed in the lowest level whose span reaches its deadline and moves down
+ * a level each time the slot it sits in comes up, until it fires from level 0. Timers beyond the
+ * span of the top level wait in an overflow list that is re-filed once per top-level rotation.
+ * <p>
+ * The wheel does not run a clock itself; the owner calls {@link #advance(long)} periodically
+ * and receives everything that came due. All methods are thread-safe.
+ */
+public class HierarchicalTimingWheel<T> {
+    
+    private final long tickMs;
+    private final int bitsPerLevel;
+    private final int mask;
+    private final int levels;
+    private final ArrayDeque<Timer<T>>[][] slots;
+    private final List<Timer<T>> overflow = new ArrayList<>();
+    private long currentTick;
+    private int size;
+    
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(long tickMs, int bitsPerLevel, int levels, long startMs) {
+        this.tickMs = tickMs;
+        this.bitsPerLevel = bitsPerLevel;
+        this.mask = (1 << bitsPerLevel) - 1;
+        this.levels = levels;
+        this.slots = new ArrayDeque[levels][1 << bitsPerLevel];
+        for (int level = 0; level < levels; level++) {
+            for (int slot = 0; slot <= mask; slot++) {
+                slots[level][slot] = new ArrayDeque<>();
+            }
+        }
+        this.currentTick = startMs / tickMs;
+    }
+    
+    /**
+     * Files a timer; deadlines already past fire on the next advance
+     */
+    public synchronized Timer<T> schedule(T value, long deadlineMs) {
+        Timer<T> timer = new Timer<>(value, Math.max(deadlineMs / tickMs, currentTick + 1));
+        file(timer);
+        size++;
+        return timer;
+    }
+    
+    /**
+     * Cancelled timers stay in their slot and are dropped when it comes up
+     */
+    public synchronized void cancel(Timer<T> timer) {
+        if (!timer.cancelled && !timer.fired) {
+            timer.cancelled = true;
+            size--;
+        }
+    }
+    
+    public synchronized int size() {
+        return size;
+    }
+    
+    /**
+     * Moves the wheel forward to the given time and returns the values of all timers that came due
+     */
+    public synchronized List<T> advance(long nowMs) {
+        List<T> due = new ArrayList<>();
+        long targetTick = nowMs / tickMs;
+        
+        while (currentTick < targetTick) {
+            currentTick++;
+            
+            // Top-level rotation complete: overflow timers may be in range now
+            if ((currentTick & ((1L << (levels * bitsPerLevel)) - 1)) == 0) {
+                refile(overflow);
+            }
+            // Cascade from the highest level whose slot boundary we just crossed
+            for (int level = levels - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (level * bitsPerLevel)) - 1)) == 0) {
+                    refile(slots[level][slotIndex(currentTick, level)]);
+                }
+            }
+            
+            ArrayDeque<Timer<T>> slot = slots[0][slotIndex(currentTick, 0)];
+            while (!slot.isEmpty()) {
+                Timer<T> timer = slot.poll();
+                if (!timer.cancelled) {
+                    timer.fired = true;
+                    size--;
+                    due.add(timer.value);
+                }
+            }
+        }
+        return due;
+    }
+    
+    private void file(Timer<T> timer) {
+        // A timer belongs to the lowest level whose current rotation still contains its tick,
+        // i.e. the one above which its tick and the current tick agree
+        for (int level = 0; level < levels; level++) {
+            int shift = (level + 1) * bitsPerLevel;
+            if ((timer.tick >>> shift) == (currentTick >>> shift)) {
+                slots[level][slotIndex(timer.tick, level)].add(timer);
+                return;
+            }
+        }
+        overflow.add(timer);
+    }
+    
+    private void refile(Collection<Timer<T>> slot) {
+        List<Timer<T>> timers = new ArrayList<>(slot);
+        slot.clear();
+        for (Timer<T> timer : timers) {
+            if (!timer.cancelled) {
+                file(timer);
+            }
+        }
+    }
+    
+    private int slotIndex(long tick, int level) {
+        return (int) ((tick >>> (level * bitsPerLevel)) & mask);
+    }
+    
+    public static class Timer<T> {
+        private final T value;
+        private final long tick;
+        private boolean cancelled;
+        private boolean fired;
+        
+        Timer(T value, long tick) {
+            this.value = value;
+            this.tick = tick;
+        }
+        
+        public T getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.wishmanager.util;
+
+/**
+ * Lexicographic rank keys for user-defined ordering: a key can always be generated between any
+ * two others, so moving an item rewrites only that item.
+ * <p>
+ * Keys are base-62 fractions (digits 0-9, A-Z, a-z, compared bytewise, i.e. with "C" collation)
+ * that never end in the zero digit. Repeated inserts at the same spot make keys longer, roughly
+ * one character per five or six inserts, which is what occasional rebalancing undoes.
+ */
+public final class RankKeys {
+
+    private static final String DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final int BASE = DIGITS.length();
+
+    private RankKeys() {
+    }
+
+    /**
+     * Key strictly between two keys
+     * @param before key to sort after, or null for the start of the list
+     * @param after key to sort before, or null for the end of the list
+     */
+    public static String between(String before, String after) {
+        String low = before == null ? "" : before;
+        if (after != null && low.compareTo(after) >= 0) {
+            throw new IllegalArgumentException("Rank " + before + " does not sort before " + after);
+        }
+        return midpoint(low, after);
+    }
+
+    /**
+     * Evenly spaced key for position {@code index} of {@code count}, as written by rebalancing
+     */
+    public static String spaced(long index, long count) {
+        // Enough digits that count items spread with gaps of at least one digit step
+        int width = 1;
+        for (long capacity = BASE; capacity < count + 1; capacity *= BASE) {
+            width++;
+        }
+        long step = pow(width) / (count + 1);
+        long value = step * (index + 1);
+
+        char[] key = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            key[i] = DIGITS.charAt((int) (value % BASE));
+            value /= BASE;
+        }
+        return stripTrailingZeros(new String(key));
+    }
+
+    private static String midpoint(String low, String high) {
+        if (high != null) {
+            // Shared leading digits (with low padded by zeros) stay as they are
+            int shared = 0;
+            while (shared < high.length() && digitAt(low, shared) == high.charAt(shared)) {
+                shared++;
+            }
+            if (shared > 0) {
+                return high.substring(0, shared) + midpoint(low.substring(Math.min(shared, low.length())), high.substring(shared));
+            }
+        }
+
+        int lowDigit = low.isEmpty() ? 0 : DIGITS.indexOf(low.charAt(0));
+        int highDigit = high != null ? DIGITS.indexOf(high.charAt(0)) : BASE;
+        if (highDigit - lowDigit > 1) {
+            return String.valueOf(DIGITS.charAt((lowDigit + highDigit + 1) / 2));
+        }
+
+        // Adjacent first digits: extend the high key if it is longer, otherwise go past the low one
+        if (high != null && high.length() > 1) {
+            return high.substring(0, 1);
+        }
+        return DIGITS.charAt(lowDigit) + midpoint(low.isEmpty() ? "" : low.substring(1), null);
+    }
+
+    private static char digitAt(String key, int index) {
+        return index < key.length() ? key.charAt(index) : DIGITS.charAt(0);
+    }
+
+    private static long pow(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= BASE;
+        }
+        return result;
+    }
+
+    private static String stripTrailingZeros(String key) {
+        int end = key.length();
+        while (end > 1 && key.charAt(end - 1) == DIGITS.charAt(0)) {
+            end--;
+        }
+        return key.substring(0, end);
+    }
+}
@@ -0,0 +1,75 @@
+package com.wishmanager.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent loads of the same key into one. The first caller runs the loader,
+ * callers arriving while it is in flight wait for and share its result or its exception.
+ * Nothing is cached: once the load completes the next caller starts a fresh one.
+ */
+public class SingleFlight<K, V> {
+    
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long maxWaitMs;
+    
+    public SingleFlight(long maxWaitMs) {
+        this.maxWaitMs = maxWaitMs;
+    }
+    
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> ownLoad = new CompletableFuture<>();
+        CompletableFuture<V> existingLoad = inFlight.putIfAbsent(key, ownLoad);
+        
+        if (existingLoad == null) {
+            try {
+                V value = loader.get();
+                ownLoad.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                ownLoad.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, ownLoad);
+            }
+        }
+        
+        try {
+            return existingLoad.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException("Load failed for key: " + key, cause);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timed out after " + maxWaitMs + " ms waiting for in-flight load of key: " + key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for in-flight load of key: " + key);
+        }
+    }
+    
+    /**
+     * Detaches an in-flight load so that later callers start a new one, used when the
+     * underlying data changed while the load was running
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+    
+    public void forgetAll() {
+        inFlight.clear();
+    }
+    
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,135 @@
+package com.wishmanager.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Telegram message template, parsed once into literal text and placeholders.
+ * <p>
+ * Placeholders are written {@code {name}} and filled positionally, in the order the names were
+ * declared. Literal text is trusted markup and copied as is; every value is escaped for the parse
+ * mode, so user-supplied titles and names can neither break the markup nor inject formatting.
+ */
+public final class TelegramTemplate {
+    
+    public enum ParseMode {
+        HTML("HTML"), MARKDOWN_V2("MarkdownV2");
+        
+        private final String apiValue;
+        
+        ParseMode(String apiValue) {
+            this.apiValue = apiValue;
+        }
+        
+        /**
+         * Value of the Bot API's parse_mode field
+         */
+        public String apiValue() {
+            return apiValue;
+        }
+    }
+    
+    private static final String MARKDOWN_V2_SPECIAL = "_*[]()~`>#+-=|{}.!\\";
+    
+    private final ParseMode parseMode;
+    private final String[] literals;
+    private final int[] slots;
+    private final int literalLength;
+    
+    private TelegramTemplate(ParseMode parseMode, String[] literals, int[] slots) {
+        this.parseMode = parseMode;
+        this.literals = literals;
+        this.slots = slots;
+        this.literalLength = Arrays.stream(literals).mapToInt(String::length).sum();
+    }
+    
+    public static TelegramTemplate html(String template, String... names) {
+        return compile(ParseMode.HTML, template, names);
+    }
+    
+    public static TelegramTemplate markdownV2(String template, String... names) {
+        return compile(ParseMode.MARKDOWN_V2, template, names);
+    }
+    
+    /**
+     * @throws IllegalArgumentException for a placeholder that was not declared or an unclosed brace
+     */
+    public static TelegramTemplate compile(ParseMode parseMode, String template, String... names) {
+        List<String> declared = Arrays.asList(names);
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        
+        int position = 0;
+        int open;
+        while ((open = template.indexOf('{', position)) >= 0) {
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder in template: " + template);
+            }
+            String name = template.substring(open + 1, close);
+            int slot = declared.indexOf(name);
+            if (slot < 0) {
+                throw new IllegalArgumentException("Undeclared placeholder {" + name + "} in template: " + template);
+            }
+            literals.add(template.substring(position, open));
+            slots.add(slot);
+            position = close + 1;
+        }
+        literals.add(template.substring(position));
+        
+        return new TelegramTemplate(parseMode, literals.toArray(new String[0]), slots.stream().mapToInt(Integer::intValue).toArray());
+    }
+    
+    public ParseMode parseMode() {
+        return parseMode;
+    }
+    
+    /**
+     * @param values one per declared name, in declaration order; null renders as empty
+     */
+    public String render(Object... values) {
+        StringBuilder text = new StringBuilder(literalLength + 16 * slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            text.append(literals[i]);
+            Object value = values[slots[i]];
+            if (value != null) {
+                escape(String.valueOf(value), text);
+            }
+        }
+        return text.append(literals[slots.length]).toString();
+    }
+    
+    /**
+     * Escapes a value for inclusion in text of the given parse mode
+     */
+    public static String escape(ParseMode parseMode, String value) {
+        StringBuilder text = new StringBuilder(value.length() + 8);
+        escape(parseMode, value, text);
+        return text.toString();
+    }
+    
+    private void escape(String value, StringBuilder text) {
+        escape(parseMode, value, text);
+    }
+    
+    private static void escape(ParseMode parseMode, String value, StringBuilder text) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (parseMode == ParseMode.HTML) {
+                switch (c) {
+                    case '&' -> text.append("&amp;");
+                    case '<' -> text.append("&lt;");
+                    case '>' -> text.append("&gt;");
+                    case '"' -> text.append("&quot;");
+                    default -> text.append(c);
+                }
+            } else {
+                if (MARKDOWN_V2_SPECIAL.indexOf(c) >= 0) {
+                    text.append('\\');
+                }
+                text.append(c);
+            }
+        }
+    }
+}
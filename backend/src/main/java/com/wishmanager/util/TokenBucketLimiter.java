@@ -0,0 +1,145 @@
+package com.wishmanager.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keyed token buckets with a fixed capacity and refill rate, safe for any number of threads
+ * without locks.
+ * <p>
+ * A bucket is a single {@link AtomicLong} holding its "theoretical arrival time" (GCRA): the
+ * instant at which the bucket would be full again. Taking a token moves that instant forward by
+ * one refill interval with a CAS, and a request is refused when it would move further than
+ * capacity intervals ahead of now. A bucket whose instant lies in the past is full and carries no
+ * state, so it can be dropped and recreated without changing any decision.
+ * <p>
+ * Buckets are spread over independent stripes, each holding at most a fixed number of keys.
+ * A key arriving at a full stripe is limited by a bucket of its overflow key instead (the client's
+ * IP), kept in a second set of stripes with the same cap, until idle buckets are evicted. Only
+ * when that stripe is full as well do its keys share one bucket. Memory stays bounded no matter
+ * how many distinct keys clients make up, and a client inventing keys mostly throttles itself.
+ */
+public class TokenBucketLimiter {
+    
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxBucketsPerStripe;
+    private final Map<String, AtomicLong>[] stripes;
+    private final Map<String, AtomicLong>[] overflow;
+    private final AtomicLong[] shared;
+    private final int stripeMask;
+    
+    @SuppressWarnings("unchecked")
+    public TokenBucketLimiter(int capacity, double refillPerSecond, int stripes, int maxBucketsPerStripe) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Capacity and refill rate must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / refillPerSecond));
+        this.burstNanos = intervalNanos * capacity;
+        this.maxBucketsPerStripe = maxBucketsPerStripe;
+        
+        // Power of two so the stripe is picked with a mask
+        int stripeCount = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new Map[stripeCount];
+        this.overflow = new Map[stripeCount];
+        this.shared = new AtomicLong[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new ConcurrentHashMap<>();
+            this.overflow[i] = new ConcurrentHashMap<>();
+            this.shared[i] = new AtomicLong(Long.MIN_VALUE);
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+    
+    /**
+     * Takes one token for the key
+     * @return 0 if the request is allowed, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(String key) {
+        return tryAcquire(key, key);
+    }
+    
+    /**
+     * Takes one token for the key, or for the overflow key while the key's stripe is full
+     * @return 0 if the request is allowed, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(String key, String overflowKey) {
+        AtomicLong bucket = bucket(stripes, key);
+        if (bucket == null) {
+            bucket = bucket(overflow, overflowKey);
+        }
+        if (bucket == null) {
+            bucket = shared[index(overflowKey)];
+        }
+        return tryAcquire(bucket, System.nanoTime());
+    }
+    
+    /**
+     * Drops buckets that are full again, called periodically by the owner
+     * @return number of buckets removed
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        return evictIdle(stripes, now) + evictIdle(overflow, now);
+    }
+    
+    private static int evictIdle(Map<String, AtomicLong>[] maps, long now) {
+        int evicted = 0;
+        for (Map<String, AtomicLong> stripe : maps) {
+            for (Map.Entry<String, AtomicLong> entry : stripe.entrySet()) {
+                // A token taken between the check and the removal is forgotten, which at most
+                // grants that key one extra token
+                long arrival = entry.getValue().get();
+                if ((arrival == Long.MIN_VALUE || arrival - now <= 0) && stripe.remove(entry.getKey(), entry.getValue())) {
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+    
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            size += stripes[i].size() + overflow[i].size();
+        }
+        return size;
+    }
+    
+    /**
+     * @return the key's bucket, created if needed, or null if its stripe is full
+     */
+    private AtomicLong bucket(Map<String, AtomicLong>[] maps, String key) {
+        Map<String, AtomicLong> stripe = maps[index(key)];
+        AtomicLong bucket = stripe.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (stripe.size() >= maxBucketsPerStripe) {
+            return null;
+        }
+        return stripe.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE));
+    }
+    
+    private int index(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & stripeMask;
+    }
+    
+    private long tryAcquire(AtomicLong bucket, long now) {
+        while (true) {
+            long arrival = bucket.get();
+            // Compared as a difference, nanoTime may be negative; MIN_VALUE marks a new bucket
+            long start = arrival == Long.MIN_VALUE || arrival - now < 0 ? now : arrival;
+            long next = start + intervalNanos;
+            long ahead = next - now;
+            if (ahead > burstNanos) {
+                return ahead - burstNanos;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+}
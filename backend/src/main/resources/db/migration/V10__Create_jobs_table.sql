@@ -0,0 +1,25 @@
+-- V10__Create_jobs_table.sql
+-- Durable background job queue. Workers on any node claim READY jobs with
+-- FOR UPDATE SKIP LOCKED; a claimed job is RUNNING until locked_until, after which
+-- it becomes claimable again. Finished jobs are deleted, failed ones are retried
+-- with backoff until max_attempts and then kept as DEAD for inspection.
+CREATE TABLE jobs (
+    id BIGSERIAL PRIMARY KEY,
+    queue VARCHAR(64) NOT NULL,
+    payload JSONB NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'READY' CHECK (status IN ('READY', 'RUNNING', 'DEAD')),
+    attempts INTEGER NOT NULL DEFAULT 0,
+    max_attempts INTEGER NOT NULL,
+    run_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    locked_by VARCHAR(100),
+    locked_until TIMESTAMP,
+    last_error TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Claim path: oldest due jobs of one queue
+CREATE INDEX idx_jobs_ready ON jobs(queue, run_at) WHERE status = 'READY';
+
+-- Reaper path: claims whose visibility timeout expired
+CREATE INDEX idx_jobs_running_locked_until ON jobs(locked_until) WHERE status = 'RUNNING';
@@ -0,0 +1,10 @@
+-- V11__Add_wishlist_booking_ttl.sql
+-- Optional per-wishlist booking lifetime. Bookings older than this are released
+-- by the booking sweeper; NULL keeps bookings until they are undone by hand.
+ALTER TABLE wishlists ADD COLUMN booking_ttl_hours INTEGER CHECK (booking_ttl_hours > 0);
+
+-- Lets the sweeper find the shortest TTL without reading every wishlist
+CREATE INDEX idx_wishlists_booking_ttl_hours ON wishlists(booking_ttl_hours) WHERE booking_ttl_hours IS NOT NULL;
+
+-- Sweeper walks booked wishes oldest first; only BOOKED rows are indexed
+CREATE INDEX idx_wishes_booked_updated_at ON wishes(updated_at) WHERE status = 'BOOKED';
@@ -0,0 +1,25 @@
+-- V12__Create_reminders.sql
+-- Event dates and the reminders derived from them. Reminders are partitioned into a
+-- fixed number of shards; each shard is worked by whichever node holds its lease.
+ALTER TABLE wishlists ADD COLUMN event_date DATE;
+
+CREATE TABLE reminders (
+    id BIGSERIAL PRIMARY KEY,
+    wishlist_id UUID NOT NULL REFERENCES wishlists(id) ON DELETE CASCADE,
+    shard INTEGER NOT NULL,
+    remind_at TIMESTAMP NOT NULL,
+    days_before INTEGER NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING' CHECK (status IN ('PENDING', 'SENT')),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    
+    UNIQUE(wishlist_id, days_before)
+);
+
+-- Loading a shard's upcoming reminders into memory
+CREATE INDEX idx_reminders_pending ON reminders(shard, remind_at) WHERE status = 'PENDING';
+
+CREATE TABLE reminder_shard_leases (
+    shard INTEGER PRIMARY KEY,
+    owner VARCHAR(100) NOT NULL,
+    lease_until TIMESTAMP NOT NULL
+);
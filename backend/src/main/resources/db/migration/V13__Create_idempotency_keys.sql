@@ -0,0 +1,15 @@
+-- V13__Create_idempotency_keys.sql
+-- Responses of mutating requests sent with an Idempotency-Key header, so retries are
+-- answered from here instead of executing again. Rows are keyed by a SHA-256 of client,
+-- method, path and key; status_code stays NULL while the first request is still running.
+-- Rows older than the TTL are deleted in batches.
+CREATE TABLE idempotency_keys (
+    key_hash BYTEA PRIMARY KEY,
+    status_code SMALLINT,
+    content_type VARCHAR(100),
+    response_body BYTEA,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Cleanup path
+CREATE INDEX idx_idempotency_keys_created_at ON idempotency_keys(created_at);
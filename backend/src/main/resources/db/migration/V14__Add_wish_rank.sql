@@ -0,0 +1,44 @@
+-- V14__Add_wish_rank.sql
+-- User-defined wish order. rank is a base-62 fraction compared bytewise, so a key can
+-- always be generated between two neighbours and a move updates a single row. Existing
+-- wishes keep their newest-first order.
+ALTER TABLE wishes ADD COLUMN rank TEXT COLLATE "C";
+
+-- Reordering is not a change of the wish itself: booking TTLs and archiving go by
+-- updated_at, so an update that only touches rank keeps it. Installed before the backfill
+-- below, which would otherwise stamp every existing wish with the deploy time.
+CREATE OR REPLACE FUNCTION update_wishes_updated_at_column()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF ROW(NEW.wishlist_id, NEW.name, NEW.description, NEW.links, NEW.status, NEW.booked_by, NEW.hide_booker_name)
+       IS NOT DISTINCT FROM
+       ROW(OLD.wishlist_id, OLD.name, OLD.description, OLD.links, OLD.status, OLD.booked_by, OLD.hide_booker_name) THEN
+        NEW.updated_at = OLD.updated_at;
+    ELSE
+        NEW.updated_at = CURRENT_TIMESTAMP;
+    END IF;
+    RETURN NEW;
+END;
+$$ language 'plpgsql';
+
+DROP TRIGGER update_wishes_updated_at ON wishes;
+CREATE TRIGGER update_wishes_updated_at
+    BEFORE UPDATE ON wishes
+    FOR EACH ROW
+    EXECUTE FUNCTION update_wishes_updated_at_column();
+
+UPDATE wishes w
+SET rank = lpad(ordered.position::text, 9, '0') || 'V'
+FROM (
+    SELECT id, row_number() OVER (PARTITION BY wishlist_id ORDER BY created_at DESC, id) AS position
+    FROM wishes
+) ordered
+WHERE w.id = ordered.id;
+
+ALTER TABLE wishes ALTER COLUMN rank SET NOT NULL;
+
+-- Serves ordered reads of a wishlist and the first-rank lookup when a wish is added
+CREATE INDEX idx_wishes_wishlist_rank ON wishes(wishlist_id, rank);
+
+-- Prefix of the composite index above
+DROP INDEX IF EXISTS idx_wishes_wishlist_id;
@@ -0,0 +1,25 @@
+-- V15__Create_wishlist_stats.sql
+-- Per-wishlist counters maintained by the application in the same transaction as the change
+-- they count, so listings read one row instead of counting wishes and memberships.
+-- Counts cover the live wishes table; archived gifted wishes drop out of them.
+CREATE TABLE wishlist_stats (
+    wishlist_id UUID PRIMARY KEY REFERENCES wishlists(id) ON DELETE CASCADE,
+    wish_count INTEGER NOT NULL DEFAULT 0,
+    booked_count INTEGER NOT NULL DEFAULT 0,
+    gifted_count INTEGER NOT NULL DEFAULT 0,
+    member_count INTEGER NOT NULL DEFAULT 0
+);
+
+INSERT INTO wishlist_stats (wishlist_id, wish_count, booked_count, gifted_count, member_count)
+SELECT l.id, COALESCE(w.wish_count, 0), COALESCE(w.booked_count, 0), COALESCE(w.gifted_count, 0), COALESCE(m.member_count, 0)
+FROM wishlists l
+LEFT JOIN (
+    SELECT wishlist_id,
+           count(*) AS wish_count,
+           count(*) FILTER (WHERE status = 'BOOKED') AS booked_count,
+           count(*) FILTER (WHERE status = 'GIFTED') AS gifted_count
+    FROM wishes GROUP BY wishlist_id
+) w ON w.wishlist_id = l.id
+LEFT JOIN (
+    SELECT wishlist_id, count(*) AS member_count FROM memberships GROUP BY wishlist_id
+) m ON m.wishlist_id = l.id;
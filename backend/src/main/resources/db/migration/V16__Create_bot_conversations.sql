@@ -0,0 +1,16 @@
+-- V16__Create_bot_conversations.sql
+-- Snapshot of the bot's unfinished chat dialogs (such as /add), one flat row per chat,
+-- so a restart does not drop half-entered wishes. The live state is held in memory and
+-- written here periodically; rows untouched for longer than the dialog TTL are deleted.
+CREATE TABLE bot_conversations (
+    chat_id BIGINT PRIMARY KEY,
+    step VARCHAR(20) NOT NULL,
+    user_id UUID NOT NULL,
+    wishlist_id UUID,
+    wish_name VARCHAR(255),
+    wish_link TEXT,
+    touched_at TIMESTAMP NOT NULL
+);
+
+-- Expiry path
+CREATE INDEX idx_bot_conversations_touched_at ON bot_conversations(touched_at);
@@ -0,0 +1,7 @@
+-- V17__Add_wishes_bookings_keyset_index.sql
+-- The "my bookings" view pages by (updated_at, id): bulk updates give many rows the same
+-- updated_at, so the id breaks ties at page boundaries. status moves behind the sort
+-- columns, so the IN filter on it no longer keeps the scan from returning rows in order.
+CREATE INDEX idx_wishes_booked_by_updated_at_id ON wishes(booked_by, updated_at DESC, id DESC, status);
+
+DROP INDEX IF EXISTS idx_wishes_booked_by_status_updated_at;
@@ -0,0 +1,11 @@
+-- V18__Drive_booking_sweep_from_ttl_wishlists.sql
+-- The booking sweeper used to walk every old BOOKED wish, including those in wishlists
+-- without a TTL. It now walks the wishlists that have a TTL in id order and looks up
+-- only their expired bookings, so its cost follows the bookings that can actually expire.
+CREATE INDEX idx_wishlists_booking_ttl_id ON wishlists(id) INCLUDE (booking_ttl_hours) WHERE booking_ttl_hours IS NOT NULL;
+
+-- Expired bookings of one wishlist are a range of this index
+CREATE INDEX idx_wishes_booked_wishlist_updated_at ON wishes(wishlist_id, updated_at) WHERE status = 'BOOKED';
+
+DROP INDEX IF EXISTS idx_wishlists_booking_ttl_hours;
+DROP INDEX IF EXISTS idx_wishes_booked_updated_at;
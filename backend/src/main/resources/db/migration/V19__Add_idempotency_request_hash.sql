@@ -0,0 +1,4 @@
+-- V19__Add_idempotency_request_hash.sql
+-- SHA-256 of the request body that claimed the key, so a key reused with a different body
+-- is rejected instead of replaying the first response. NULL for keys stored before this.
+ALTER TABLE idempotency_keys ADD COLUMN request_hash BYTEA;
@@ -0,0 +1,21 @@
+-- V20__Make_wish_rank_unique.sql
+-- Wishes added on top concurrently could get the same rank key, leaving their order up to
+-- the plan. Wishlists that already have duplicates get their keys rewritten in the current
+-- order, then the key is made unique per wishlist. The constraint is checked at the end of
+-- each statement, so a rebalance rewriting all keys of a wishlist at once cannot trip over
+-- keys it is about to replace.
+UPDATE wishes w
+SET rank = lpad(ordered.position::text, 9, '0') || 'V'
+FROM (
+    SELECT id, row_number() OVER (PARTITION BY wishlist_id ORDER BY rank, id) AS position
+    FROM wishes
+    WHERE wishlist_id IN (
+        SELECT wishlist_id FROM wishes GROUP BY wishlist_id, rank HAVING count(*) > 1
+    )
+) ordered
+WHERE w.id = ordered.id;
+
+ALTER TABLE wishes ADD CONSTRAINT uq_wishes_wishlist_rank UNIQUE (wishlist_id, rank) DEFERRABLE INITIALLY IMMEDIATE;
+
+-- Same columns as the constraint's index
+DROP INDEX IF EXISTS idx_wishes_wishlist_rank;
@@ -0,0 +1,6 @@
+-- V21__Add_bot_conversation_telegram_user.sql
+-- Telegram user who started the dialog: in a group chat only their messages answer it.
+-- Unfinished dialogs cannot be attributed and are dropped; they last minutes anyway.
+DELETE FROM bot_conversations;
+
+ALTER TABLE bot_conversations ADD COLUMN telegram_user_id BIGINT NOT NULL;
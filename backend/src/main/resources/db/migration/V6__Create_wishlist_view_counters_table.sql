@@ -0,0 +1,14 @@
+-- V6__Create_wishlist_view_counters_table.sql
+-- Wishlist views are counted in memory and flushed here in batches.
+-- trending_score is the base-2 log of the exponentially decayed view count, expressed
+-- relative to a fixed epoch, so scores of different rows compare directly and never
+-- need to be re-decayed; adding views is a log-sum-exp update of a single row.
+CREATE TABLE wishlist_view_counters (
+    wishlist_id UUID PRIMARY KEY REFERENCES wishlists(id) ON DELETE CASCADE,
+    view_count BIGINT NOT NULL DEFAULT 0,
+    trending_score DOUBLE PRECISION NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Serves the top-K trending query without sorting the table
+CREATE INDEX idx_wishlist_view_counters_trending_score ON wishlist_view_counters(trending_score DESC);
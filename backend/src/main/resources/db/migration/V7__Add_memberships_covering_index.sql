@@ -0,0 +1,7 @@
+-- V7__Add_memberships_covering_index.sql
+-- Covering index for the "my wishlists" view: the join from a user's memberships to
+-- their wishlists, including the user's role, is answered by an index-only scan
+CREATE INDEX idx_memberships_user_wishlist_role ON memberships(user_id, wishlist_id, role);
+
+-- Duplicates the index backing UNIQUE(user_id, wishlist_id)
+DROP INDEX IF EXISTS idx_memberships_user_wishlist;
@@ -0,0 +1,7 @@
+-- V8__Add_wishes_bookings_index.sql
+-- Serves the "my bookings" view: a user's booked and gifted wishes, newest first,
+-- with keyset pagination on updated_at
+CREATE INDEX idx_wishes_booked_by_status_updated_at ON wishes(booked_by, status, updated_at DESC);
+
+-- Prefix of the composite index above
+DROP INDEX IF EXISTS idx_wishes_booked_by;
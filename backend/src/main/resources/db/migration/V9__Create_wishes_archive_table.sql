@@ -0,0 +1,22 @@
+-- V9__Create_wishes_archive_table.sql
+-- Cold tier for gifted wishes. Rows are moved here from wishes in small batches by the
+-- archiver, so the hot table and its indexes only hold wishes that are still in play.
+CREATE TABLE wishes_archive (
+    id UUID PRIMARY KEY,
+    wishlist_id UUID NOT NULL REFERENCES wishlists(id) ON DELETE CASCADE,
+    name VARCHAR(255) NOT NULL,
+    description TEXT,
+    links JSONB,
+    status VARCHAR(20) NOT NULL CHECK (status IN ('FREE', 'BOOKED', 'GIFTED')),
+    booked_by UUID REFERENCES users(id) ON DELETE SET NULL,
+    hide_booker_name BOOLEAN NOT NULL DEFAULT FALSE,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- History read path: a wishlist's archived wishes, newest first
+CREATE INDEX idx_wishes_archive_wishlist_id_created_at ON wishes_archive(wishlist_id, created_at DESC);
+
+-- Lets the archiver find the oldest gifted wishes without touching active rows
+CREATE INDEX idx_wishes_gifted_updated_at ON wishes(updated_at) WHERE status = 'GIFTED';
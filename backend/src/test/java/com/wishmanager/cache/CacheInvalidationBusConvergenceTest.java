@@ -0,0 +1,176 @@
+package com.wishmanager.cache;
+
+import com.wishmanager.WishManagerApplication;
+import com.wishmanager.cache.CacheInvalidationListener.EntityType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Starts two application contexts against one Postgres and checks that writes on the first
+ * reach the caches of the second. Needs a database, so it only runs when TEST_DATABASE_URL
+ * (and optionally TEST_DATABASE_USERNAME / TEST_DATABASE_PASSWORD) is set.
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_DATABASE_URL", matches = ".+")
+class CacheInvalidationBusConvergenceTest {
+    
+    private static final long MAX_CONVERGENCE_MS = 1_000;
+    
+    private static ConfigurableApplicationContext writer;
+    private static ConfigurableApplicationContext reader;
+    private static final RecordingListener readerListener = new RecordingListener();
+    
+    private TransactionTemplate transactionTemplate;
+    private CacheInvalidationBus writerBus;
+    
+    @BeforeAll
+    static void startNodes() throws InterruptedException {
+        writer = startNode(new RecordingListener());
+        reader = startNode(readerListener);
+        // The listeners start on ApplicationReadyEvent, give them a moment to issue LISTEN
+        Thread.sleep(500);
+    }
+    
+    @AfterAll
+    static void stopNodes() {
+        if (reader != null) {
+            reader.close();
+        }
+        if (writer != null) {
+            writer.close();
+        }
+    }
+    
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(writer.getBean(PlatformTransactionManager.class));
+        writerBus = writer.getBean(CacheInvalidationBus.class);
+        readerListener.clear();
+    }
+    
+    @Test
+    void committedWriteReachesTheOtherNode() throws InterruptedException {
+        UUID wishlistId = UUID.randomUUID();
+        
+        long startedAt = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> writerBus.publish(EntityType.WISHLIST, wishlistId));
+        awaitTrue(() -> readerListener.invalidated.contains(EntityType.WISHLIST + ":" + wishlistId));
+        long convergedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        
+        assertThat(convergedMs).isLessThan(MAX_CONVERGENCE_MS);
+        assertThat(readerListener.resyncs.get()).isZero();
+    }
+    
+    @Test
+    void rolledBackWriteIsNotSentAndLeavesNoGap() throws InterruptedException {
+        UUID rolledBack = UUID.randomUUID();
+        UUID committed = UUID.randomUUID();
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            writerBus.publish(EntityType.WISH, rolledBack);
+            status.setRollbackOnly();
+        });
+        transactionTemplate.executeWithoutResult(status -> writerBus.publish(EntityType.WISH, committed));
+        awaitTrue(() -> readerListener.invalidated.contains(EntityType.WISH + ":" + committed));
+        
+        assertThat(readerListener.invalidated).doesNotContain(EntityType.WISH + ":" + rolledBack);
+        assertThat(readerListener.resyncs.get()).isZero();
+    }
+    
+    @Test
+    void concurrentTransactionsConvergeWithoutResync() throws Exception {
+        int threads = 8;
+        int transactionsPerThread = 50;
+        List<String> expected = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                List<UUID> ids = new ArrayList<>();
+                for (int i = 0; i < transactionsPerThread; i++) {
+                    UUID id = UUID.randomUUID();
+                    ids.add(id);
+                    expected.add(EntityType.WISHLIST + ":" + id);
+                    expected.add(EntityType.WISH + ":" + id);
+                }
+                futures.add(executor.submit(() -> ids.forEach(id -> transactionTemplate.executeWithoutResult(status -> {
+                    writerBus.publish(EntityType.WISHLIST, id);
+                    writerBus.publish(EntityType.WISH, id);
+                    // Published twice, sent once
+                    writerBus.publish(EntityType.WISHLIST, id);
+                }))));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        awaitTrue(() -> readerListener.invalidated.containsAll(expected));
+        assertThat(readerListener.resyncs.get()).isZero();
+    }
+    
+    private static ConfigurableApplicationContext startNode(RecordingListener listener) {
+        String username = System.getenv().getOrDefault("TEST_DATABASE_USERNAME", "wish_manager");
+        String password = System.getenv().getOrDefault("TEST_DATABASE_PASSWORD", "wish_manager_password");
+        return new SpringApplicationBuilder(WishManagerApplication.class)
+                .initializers(context -> context.getBeanFactory().registerSingleton("recordingListener", listener))
+                .properties(
+                        "spring.datasource.url=" + System.getenv("TEST_DATABASE_URL"),
+                        "spring.datasource.username=" + username,
+                        "spring.datasource.password=" + password,
+                        "server.port=0",
+                        "telegram.bot.mode=webhook")
+                .run();
+    }
+    
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+    
+    private static class RecordingListener implements CacheInvalidationListener {
+        
+        private final Set<String> invalidated = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger resyncs = new AtomicInteger();
+        
+        @Override
+        public void onInvalidate(EntityType type, UUID id) {
+            invalidated.add(type + ":" + id);
+        }
+        
+        @Override
+        public void onInvalidateAll() {
+            resyncs.incrementAndGet();
+        }
+        
+        void clear() {
+            invalidated.clear();
+            resyncs.set(0);
+        }
+    }
+}
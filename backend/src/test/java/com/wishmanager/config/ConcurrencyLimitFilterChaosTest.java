@@ -0,0 +1,141 @@
+package com.wishmanager.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chaos test: closed-loop clients run against the filter in front of a simulated connection pool
+ * whose statements suddenly take 20 times longer, as if Postgres had slowed down. Once the limit
+ * has adapted, admitted requests must stay fast because the rest is shed instead of queued, and
+ * anonymous reads must be shed before the webhook.
+ */
+class ConcurrencyLimitFilterChaosTest {
+    
+    private static final int POOL_SIZE = 10;
+    private static final int CLIENTS = 64;
+    private static final long HEALTHY_DELAY_MS = 5;
+    private static final long SLOW_DELAY_MS = 100;
+    private static final long HEALTHY_PHASE_MS = 1_500;
+    private static final long SETTLE_MS = 1_500;
+    private static final long MEASURED_MS = 2_500;
+    private static final long SHED_BACKOFF_MS = 10;
+    
+    private final Semaphore pool = new Semaphore(POOL_SIZE, true);
+    private volatile long delayMs = HEALTHY_DELAY_MS;
+    
+    private ConcurrencyLimitFilter filter;
+    
+    @BeforeEach
+    void setUp() {
+        filter = new ConcurrencyLimitFilter();
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "initialLimit", 20);
+        ReflectionTestUtils.setField(filter, "minLimit", 4);
+        ReflectionTestUtils.setField(filter, "maxLimit", 200);
+        ReflectionTestUtils.setField(filter, "webhookShare", 1.0);
+        ReflectionTestUtils.setField(filter, "writeShare", 0.9);
+        ReflectionTestUtils.setField(filter, "readShare", 0.8);
+        ReflectionTestUtils.setField(filter, "anonymousReadShare", 0.6);
+        filter.init();
+    }
+    
+    @Test
+    void shedsInsteadOfQueueingWhenTheDatabaseSlowsDown() throws Exception {
+        long startedAt = System.nanoTime();
+        long chaosAt = startedAt + TimeUnit.MILLISECONDS.toNanos(HEALTHY_PHASE_MS);
+        long measureFrom = chaosAt + TimeUnit.MILLISECONDS.toNanos(SETTLE_MS);
+        long endAt = measureFrom + TimeUnit.MILLISECONDS.toNanos(MEASURED_MS);
+        
+        ConcurrentLinkedQueue<Long> admittedLatencies = new ConcurrentLinkedQueue<>();
+        AtomicLong webhookSent = new AtomicLong();
+        AtomicLong webhookShed = new AtomicLong();
+        AtomicLong anonymousSent = new AtomicLong();
+        AtomicLong anonymousShed = new AtomicLong();
+        
+        List<Thread> clients = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++) {
+            boolean webhook = c % 4 == 0;
+            Thread client = new Thread(() -> {
+                try {
+                    long now;
+                    while ((now = System.nanoTime()) < endAt) {
+                        if (now >= chaosAt) {
+                            delayMs = SLOW_DELAY_MS;
+                        }
+                        MockHttpServletResponse response = new MockHttpServletResponse();
+                        filter.doFilter(request(webhook), response, (req, res) -> query());
+                        long latency = System.nanoTime() - now;
+                        
+                        boolean shed = response.getStatus() == 503;
+                        if (now >= measureFrom) {
+                            (webhook ? webhookSent : anonymousSent).incrementAndGet();
+                            if (shed) {
+                                (webhook ? webhookShed : anonymousShed).incrementAndGet();
+                            } else {
+                                admittedLatencies.add(latency);
+                            }
+                        }
+                        if (shed) {
+                            Thread.sleep(SHED_BACKOFF_MS);
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, "chaos-client-" + c);
+            client.start();
+            clients.add(client);
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        
+        List<Long> latencies = new ArrayList<>(admittedLatencies);
+        Collections.sort(latencies);
+        assertThat(latencies).isNotEmpty();
+        long p99Ms = TimeUnit.NANOSECONDS.toMillis(latencies.get((int) (latencies.size() * 0.99)));
+        
+        assertThat(p99Ms).as("p99 of admitted requests during the slowdown").isLessThan(3 * SLOW_DELAY_MS);
+        assertThat(webhookShed.get() + anonymousShed.get()).isPositive();
+        assertThat((double) anonymousShed.get() / anonymousSent.get())
+                .as("anonymous reads are shed at least as often as webhook calls")
+                .isGreaterThanOrEqualTo((double) webhookShed.get() / webhookSent.get());
+    }
+    
+    private MockHttpServletRequest request(boolean webhook) {
+        MockHttpServletRequest request = webhook
+                ? new MockHttpServletRequest("POST", "/bot/webhook")
+                : new MockHttpServletRequest("GET", "/wishlists/public");
+        request.setServletPath(request.getRequestURI());
+        return request;
+    }
+    
+    /** A statement holding one of the pool's connections for the current delay */
+    private void query() {
+        try {
+            pool.acquire();
+            try {
+                Thread.sleep(delayMs);
+            } finally {
+                pool.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
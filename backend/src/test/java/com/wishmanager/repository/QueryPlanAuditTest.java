@@ -0,0 +1,328 @@
+package com.wishmanager.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wishmanager.tools.DatasetGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs EXPLAIN (ANALYZE, BUFFERS) for the SQL behind every custom repository method and fails
+ * on sequential scans over large tables or buffer counts over budget. Indexes no audited query
+ * touched and indexes made redundant by another index on the same columns are reported.
+ * <p>
+ * Needs a disposable Postgres, so it only runs when TEST_DATABASE_URL (and optionally
+ * TEST_DATABASE_USERNAME / TEST_DATABASE_PASSWORD) is set. The schema is migrated and, when it
+ * holds no users yet, seeded by the dataset generator at QUERY_PLAN_AUDIT_SCALE (default 1).
+ */
+@Slf4j
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfEnvironmentVariable(named = "TEST_DATABASE_URL", matches = ".+")
+class QueryPlanAuditTest {
+    
+    private static final List<Class<?>> AUDITED_REPOSITORIES = List.of(
+            UserRepository.class, WishlistRepository.class, WishRepository.class, MembershipRepository.class,
+            ArchivedWishRepository.class);
+    
+    private static final long MAX_BUFFERS = 1000;
+    private static final long SEQ_SCAN_MIN_ROWS = 10_000;
+    private static final long SEED = 42;
+    private static final int STREAMS = 4;
+    
+    private static final String INDEX_SCANS_SQL =
+            "SELECT indexrelname, idx_scan FROM pg_stat_user_indexes";
+    
+    private static final String REDUNDANT_INDEXES_SQL =
+            "SELECT a.indexrelid::regclass::text AS redundant, b.indexrelid::regclass::text AS covered_by " +
+            "FROM pg_index a JOIN pg_index b ON a.indrelid = b.indrelid AND a.indexrelid <> b.indexrelid " +
+            "JOIN pg_class ca ON ca.oid = a.indexrelid JOIN pg_class cb ON cb.oid = b.indexrelid " +
+            "JOIN pg_namespace n ON n.oid = ca.relnamespace " +
+            "WHERE n.nspname = 'public' AND ca.relam = cb.relam " +
+            "AND a.indexprs IS NULL AND b.indexprs IS NULL AND a.indpred IS NULL AND b.indpred IS NULL " +
+            "AND NOT a.indisunique AND NOT a.indisprimary " +
+            "AND (b.indkey::text = a.indkey::text AND (b.indisunique OR a.indexrelid > b.indexrelid) " +
+            "     OR b.indkey::text LIKE a.indkey::text || ' %')";
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private JdbcTemplate jdbcTemplate;
+    private Map<String, Long> scansBefore;
+    
+    @BeforeAll
+    void prepareDatabase() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                System.getenv("TEST_DATABASE_URL"),
+                System.getenv().getOrDefault("TEST_DATABASE_USERNAME", "wish_manager"),
+                System.getenv().getOrDefault("TEST_DATABASE_PASSWORD", "wish_manager_password"));
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        
+        Long users = jdbcTemplate.queryForObject("SELECT count(*) FROM users", Long.class);
+        if (users == null || users == 0) {
+            int scale = Integer.parseInt(System.getenv().getOrDefault("QUERY_PLAN_AUDIT_SCALE", "1"));
+            new DatasetGenerator(dataSource).generate(scale, SEED, STREAMS);
+        } else {
+            jdbcTemplate.execute("ANALYZE");
+        }
+        scansBefore = indexScans();
+    }
+    
+    @AfterAll
+    void reportIndexes() {
+        if (jdbcTemplate == null) {
+            return;
+        }
+        Map<String, Long> scansAfter = indexScans();
+        scansAfter.forEach((index, scans) -> {
+            if (scans.equals(scansBefore.getOrDefault(index, 0L))) {
+                log.warn("Index {} was not used by any audited query", index);
+            }
+        });
+        
+        jdbcTemplate.query(REDUNDANT_INDEXES_SQL, rs -> {
+            log.warn("Index {} is redundant with {}", rs.getString("redundant"), rs.getString("covered_by"));
+        });
+    }
+    
+    @Test
+    void everyRepositoryMethodIsAudited() {
+        assertThat(checkCoverage(auditedQueries())).isEmpty();
+    }
+    
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("auditedQueries")
+    void queryPlanStaysWithinBudget(AuditedQuery query) {
+        assertThat(explain(query)).isEmpty();
+    }
+    
+    @Test
+    void memberWishlistsAreReadThroughTheCoveringIndex() throws Exception {
+        AuditedQuery query = auditedQueries().stream()
+                .filter(candidate -> candidate.name().equals("MembershipRepository.findMemberWishlists"))
+                .findFirst()
+                .orElseThrow();
+        String planJson = jdbcTemplate.queryForObject(
+                "EXPLAIN (FORMAT JSON) " + query.sql(), String.class, query.parameters());
+        
+        Set<String> indexes = new HashSet<>();
+        collectIndexNames(objectMapper.readTree(planJson).get(0).get("Plan"), indexes);
+        assertThat(indexes).contains("idx_memberships_user_wishlist_role");
+    }
+    
+    /**
+     * SQL equivalents of the repository methods, with parameters taken from the data so that
+     * the audit exercises the heaviest realistic case (busiest user, largest wishlist, ...)
+     */
+    List<AuditedQuery> auditedQueries() {
+        Map<String, Object[]> samples = loadSampleParameters();
+        Object[] telegramId = samples.get("telegramId");
+        Object[] googleSub = samples.get("googleSub");
+        Object[] owner = samples.get("owner");
+        Object[] wishlist = samples.get("wishlist");
+        Object[] wish = samples.get("wish");
+        Object[] member = samples.get("member");
+        Object[] booker = samples.get("booker");
+        Object[] membership = samples.get("membership");
+        
+        return List.of(
+                new AuditedQuery("UserRepository.findByTelegramId",
+                        "SELECT * FROM users WHERE telegram_id = ?", telegramId, false),
+                new AuditedQuery("UserRepository.findByGoogleSub",
+                        "SELECT * FROM users WHERE google_sub = ?", googleSub, false),
+                new AuditedQuery("UserRepository.existsByTelegramId",
+                        "SELECT id FROM users WHERE telegram_id = ? LIMIT 1", telegramId, false),
+                new AuditedQuery("UserRepository.existsByGoogleSub",
+                        "SELECT id FROM users WHERE google_sub = ? LIMIT 1", googleSub, false),
+                
+                new AuditedQuery("WishlistRepository.findByOwnerId",
+                        "SELECT * FROM wishlists WHERE owner_id = ?", owner, false),
+                new AuditedQuery("WishlistRepository.findPublicByOwnerId",
+                        "SELECT * FROM wishlists WHERE is_public = true AND owner_id = ?", owner, false),
+                // Unbounded by design, it reads every public wishlist
+                new AuditedQuery("WishlistRepository.findAllPublic",
+                        "SELECT * FROM wishlists WHERE is_public = true", new Object[0], true),
+                new AuditedQuery("WishlistRepository.lockForRankChange",
+                        "SELECT id FROM wishlists WHERE id = ? FOR NO KEY UPDATE", wishlist, false),
+                
+                new AuditedQuery("WishRepository.findByWishlistId",
+                        "SELECT * FROM wishes WHERE wishlist_id = ?", wishlist, false),
+                new AuditedQuery("WishRepository.findByIdForUpdate",
+                        "SELECT * FROM wishes WHERE id = ? FOR UPDATE", wish, false),
+                new AuditedQuery("WishRepository.findByWishlistIdOrderByRankAscIdAsc",
+                        "SELECT * FROM wishes WHERE wishlist_id = ? ORDER BY rank, id", wishlist, false),
+                new AuditedQuery("WishRepository.findFirstRank",
+                        "SELECT min(rank) FROM wishes WHERE wishlist_id = ?", wishlist, false),
+                new AuditedQuery("WishRepository.findNextRank",
+                        "SELECT min(rank) FROM wishes WHERE wishlist_id = ? AND rank > '' AND id <> ?",
+                        new Object[]{wishlist[0], UUID.randomUUID()}, false),
+                new AuditedQuery("WishRepository.findByWishlistIdAndStatus",
+                        "SELECT * FROM wishes WHERE wishlist_id = ? AND status = 'FREE'", wishlist, false),
+                new AuditedQuery("WishRepository.countByWishlistIdAndStatus",
+                        "SELECT count(*) FROM wishes WHERE wishlist_id = ? AND status = 'FREE'", wishlist, false),
+                new AuditedQuery("WishRepository.findByBookedBy",
+                        "SELECT * FROM wishes WHERE booked_by = ?", booker, false),
+                new AuditedQuery("WishRepository.findBookingsByUser",
+                        "SELECT w.id, w.name, w.status, w.hide_booker_name, w.updated_at, l.id, l.title, l.owner_id, u.display_name " +
+                        "FROM wishes w JOIN wishlists l ON l.id = w.wishlist_id JOIN users u ON u.id = l.owner_id " +
+                        "WHERE w.booked_by = ? AND w.status IN ('BOOKED', 'GIFTED') ORDER BY w.updated_at DESC, w.id DESC LIMIT 20",
+                        booker, false),
+                new AuditedQuery("WishRepository.findBookingsByUserBefore",
+                        "SELECT w.id, w.name, w.status, w.hide_booker_name, w.updated_at, l.id, l.title, l.owner_id, u.display_name " +
+                        "FROM wishes w JOIN wishlists l ON l.id = w.wishlist_id JOIN users u ON u.id = l.owner_id " +
+                        "WHERE w.booked_by = ? AND w.status IN ('BOOKED', 'GIFTED') AND (w.updated_at, w.id) < (?, ?) " +
+                        "ORDER BY w.updated_at DESC, w.id DESC LIMIT 20",
+                        new Object[]{booker[0], LocalDateTime.now(), UUID.randomUUID()}, false),
+                
+                new AuditedQuery("MembershipRepository.findByUserId",
+                        "SELECT * FROM memberships WHERE user_id = ?", member, false),
+                new AuditedQuery("MembershipRepository.findByWishlistId",
+                        "SELECT * FROM memberships WHERE wishlist_id = ?", wishlist, false),
+                new AuditedQuery("MembershipRepository.findByUserIdAndWishlistId",
+                        "SELECT * FROM memberships WHERE user_id = ? AND wishlist_id = ?", membership, false),
+                new AuditedQuery("MembershipRepository.existsByUserIdAndWishlistId",
+                        "SELECT id FROM memberships WHERE user_id = ? AND wishlist_id = ? LIMIT 1", membership, false),
+                new AuditedQuery("MembershipRepository.findOwnerByWishlistId",
+                        "SELECT * FROM memberships WHERE wishlist_id = ? AND role = 'OWNER'", wishlist, false),
+                new AuditedQuery("MembershipRepository.findUserMembershipInWishlist",
+                        "SELECT * FROM memberships WHERE user_id = ? AND wishlist_id = ?", membership, false),
+                new AuditedQuery("MembershipRepository.findMemberWishlists",
+                        "SELECT w.id, w.owner_id, w.title, w.description, w.is_public, m.role, w.updated_at, " +
+                        "s.wish_count, s.booked_count, s.gifted_count, s.member_count " +
+                        "FROM memberships m JOIN wishlists w ON w.id = m.wishlist_id LEFT JOIN wishlist_stats s ON s.wishlist_id = w.id " +
+                        "WHERE m.user_id = ? ORDER BY w.updated_at DESC, w.id LIMIT 20",
+                        member, false),
+                
+                new AuditedQuery("ArchivedWishRepository.findByWishlistIdOrderByCreatedAtDesc",
+                        "SELECT * FROM wishes_archive WHERE wishlist_id = ? ORDER BY created_at DESC", wishlist, false)
+        );
+    }
+    
+    /**
+     * Every method declared on an audited repository needs an entry, so new queries cannot skip the audit
+     */
+    private List<String> checkCoverage(List<AuditedQuery> queries) {
+        Set<String> audited = new HashSet<>();
+        queries.forEach(query -> audited.add(query.name()));
+        
+        List<String> violations = new ArrayList<>();
+        for (Class<?> repository : AUDITED_REPOSITORIES) {
+            for (Method method : repository.getDeclaredMethods()) {
+                String name = repository.getSimpleName() + "." + method.getName();
+                if (!audited.contains(name)) {
+                    violations.add(name + " has no audited query");
+                }
+            }
+        }
+        return violations;
+    }
+    
+    private List<String> explain(AuditedQuery query) {
+        List<String> violations = new ArrayList<>();
+        
+        String planJson = jdbcTemplate.queryForObject(
+                "EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + query.sql(), String.class, query.parameters());
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(planJson).get(0);
+        } catch (Exception e) {
+            violations.add(query.name() + ": unreadable plan");
+            return violations;
+        }
+        
+        JsonNode plan = root.get("Plan");
+        long buffers = plan.path("Shared Hit Blocks").asLong() + plan.path("Shared Read Blocks").asLong();
+        log.info("{}: {} ms, {} buffers", query.name(), root.path("Execution Time").asDouble(), buffers);
+        
+        if (!query.allowSeqScan()) {
+            collectSeqScans(plan, violations, query.name());
+            if (buffers > MAX_BUFFERS) {
+                violations.add(query.name() + ": " + buffers + " buffers exceed budget of " + MAX_BUFFERS);
+            }
+        }
+        return violations;
+    }
+    
+    private void collectSeqScans(JsonNode node, List<String> violations, String queryName) {
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            String relation = node.path("Relation Name").asText();
+            Long tableRows = jdbcTemplate.queryForObject(
+                    "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE relname = ?", Long.class, relation);
+            if (tableRows != null && tableRows >= SEQ_SCAN_MIN_ROWS) {
+                violations.add(queryName + ": sequential scan on " + relation + " (" + tableRows + " rows)");
+            }
+        }
+        node.path("Plans").forEach(child -> collectSeqScans(child, violations, queryName));
+    }
+    
+    private void collectIndexNames(JsonNode node, Set<String> indexes) {
+        if (node.has("Index Name")) {
+            indexes.add(node.get("Index Name").asText());
+        }
+        node.path("Plans").forEach(child -> collectIndexNames(child, indexes));
+    }
+    
+    private Map<String, Long> indexScans() {
+        Map<String, Long> scans = new HashMap<>();
+        // Statistics are reported asynchronously, make sure our own backend's counts are visible
+        jdbcTemplate.execute("SELECT pg_stat_force_next_flush()");
+        jdbcTemplate.query(INDEX_SCANS_SQL, rs -> {
+            scans.put(rs.getString("indexrelname"), rs.getLong("idx_scan"));
+        });
+        return scans;
+    }
+    
+    private Map<String, Object[]> loadSampleParameters() {
+        Map<String, String> sampleQueries = new LinkedHashMap<>();
+        sampleQueries.put("telegramId", "SELECT telegram_id FROM users WHERE telegram_id IS NOT NULL LIMIT 1");
+        sampleQueries.put("googleSub", "SELECT COALESCE((SELECT google_sub FROM users WHERE google_sub IS NOT NULL LIMIT 1), 'none')");
+        sampleQueries.put("owner", "SELECT owner_id FROM wishlists GROUP BY owner_id ORDER BY count(*) DESC LIMIT 1");
+        sampleQueries.put("wishlist", "SELECT wishlist_id FROM wishes GROUP BY wishlist_id ORDER BY count(*) DESC LIMIT 1");
+        sampleQueries.put("member", "SELECT user_id FROM memberships GROUP BY user_id ORDER BY count(*) DESC LIMIT 1");
+        sampleQueries.put("wish", "SELECT id FROM wishes LIMIT 1");
+        sampleQueries.put("booker", "SELECT booked_by FROM wishes WHERE booked_by IS NOT NULL GROUP BY booked_by ORDER BY count(*) DESC LIMIT 1");
+        
+        Map<String, Object[]> samples = new HashMap<>();
+        sampleQueries.forEach((name, sql) -> {
+            List<Object> values = jdbcTemplate.queryForList(sql, Object.class);
+            if (values.isEmpty()) {
+                throw new IllegalStateException("Database has no data for sample parameter '" + name + "', seed it first");
+            }
+            samples.put(name, new Object[]{values.get(0)});
+        });
+        
+        Map<String, Object> membership = jdbcTemplate.queryForMap(
+                "SELECT user_id, wishlist_id FROM memberships WHERE user_id = ? LIMIT 1", samples.get("member"));
+        samples.put("membership", new Object[]{membership.get("user_id"), membership.get("wishlist_id")});
+        return samples;
+    }
+    
+    record AuditedQuery(String name, String sql, Object[] parameters, boolean allowSeqScan) {
+        
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.wishmanager.service;
+
+import com.wishmanager.cache.CacheInvalidationListener.EntityType;
+import com.wishmanager.entity.Wishlist;
+import com.wishmanager.repository.WishlistRepository;
+import com.wishmanager.repository.WishlistStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BotMessageRendererTest {
+    
+    private final UUID wishlistId = UUID.randomUUID();
+    private final UUID otherWishlistId = UUID.randomUUID();
+    
+    private WishlistRepository wishlistRepository;
+    private BotMessageRenderer renderer;
+    
+    @BeforeEach
+    void setUp() {
+        wishlistRepository = mock(WishlistRepository.class);
+        WishlistStatsRepository statsRepository = mock(WishlistStatsRepository.class);
+        when(statsRepository.findById(any())).thenReturn(Optional.empty());
+        
+        renderer = new BotMessageRenderer();
+        ReflectionTestUtils.setField(renderer, "wishlistRepository", wishlistRepository);
+        ReflectionTestUtils.setField(renderer, "wishlistStatsRepository", statsRepository);
+        ReflectionTestUtils.setField(renderer, "webappUrl", "https://example.com/mini-app");
+        ReflectionTestUtils.setField(renderer, "cardCacheSize", 2);
+        renderer.init();
+    }
+    
+    @Test
+    void changeToAnotherWishlistDuringRenderStillCachesTheCard() {
+        when(wishlistRepository.findById(wishlistId)).thenAnswer(invocation -> {
+            renderer.onInvalidate(EntityType.WISHLIST, otherWishlistId);
+            return Optional.of(wishlist());
+        });
+        
+        renderer.wishlistCard(wishlistId);
+        renderer.wishlistCard(wishlistId);
+        
+        verify(wishlistRepository, times(1)).findById(wishlistId);
+    }
+    
+    @Test
+    void changeToTheSameWishlistDuringRenderIsNotCached() {
+        AtomicInteger renders = new AtomicInteger();
+        when(wishlistRepository.findById(wishlistId)).thenAnswer(invocation -> {
+            if (renders.incrementAndGet() == 1) {
+                renderer.onInvalidate(EntityType.WISHLIST, wishlistId);
+            }
+            return Optional.of(wishlist());
+        });
+        
+        renderer.wishlistCard(wishlistId);
+        renderer.wishlistCard(wishlistId);
+        renderer.wishlistCard(wishlistId);
+        
+        verify(wishlistRepository, times(2)).findById(wishlistId);
+    }
+    
+    @Test
+    void changeForgottenByTheVersionCapStillBlocksCaching() {
+        AtomicInteger renders = new AtomicInteger();
+        when(wishlistRepository.findById(wishlistId)).thenAnswer(invocation -> {
+            if (renders.incrementAndGet() == 1) {
+                renderer.onInvalidate(EntityType.WISHLIST, wishlistId);
+                // More changed wishlists than the cap push this wishlist's version out
+                renderer.onInvalidate(EntityType.WISHLIST, UUID.randomUUID());
+                renderer.onInvalidate(EntityType.WISHLIST, UUID.randomUUID());
+            }
+            return Optional.of(wishlist());
+        });
+        
+        renderer.wishlistCard(wishlistId);
+        renderer.wishlistCard(wishlistId);
+        renderer.wishlistCard(wishlistId);
+        
+        verify(wishlistRepository, times(2)).findById(wishlistId);
+    }
+    
+    private Wishlist wishlist() {
+        Wishlist wishlist = new Wishlist();
+        wishlist.setId(wishlistId);
+        wishlist.setTitle("Birthday");
+        wishlist.setIsPublic(true);
+        return wishlist;
+    }
+}
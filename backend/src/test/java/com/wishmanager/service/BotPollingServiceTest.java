@@ -0,0 +1,238 @@
+package com.wishmanager.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the poller against a local stub that keeps updates until a getUpdates call passes an
+ * offset above them, like the Bot API does.
+ */
+class BotPollingServiceTest {
+    
+    private GetUpdatesStub stub;
+    private BotService botService;
+    private BotPollingService pollingService;
+    
+    /** Update IDs per chat, in the order they were handled */
+    private final Map<Long, List<Long>> handled = new ConcurrentHashMap<>();
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        stub = new GetUpdatesStub();
+        botService = mock(BotService.class);
+        when(botService.resolveChatId(any())).thenCallRealMethod();
+        
+        pollingService = new BotPollingService();
+        ReflectionTestUtils.setField(pollingService, "botService", botService);
+        ReflectionTestUtils.setField(pollingService, "botToken", "test-token");
+        ReflectionTestUtils.setField(pollingService, "apiUrl", "http://localhost:" + stub.port());
+        ReflectionTestUtils.setField(pollingService, "batchSize", 100);
+        ReflectionTestUtils.setField(pollingService, "timeoutSeconds", 0);
+        ReflectionTestUtils.setField(pollingService, "workers", 4);
+        ReflectionTestUtils.setField(pollingService, "maxAttempts", 3);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pollingService.stop();
+        stub.close();
+    }
+    
+    @Test
+    void handlesEveryUpdateOnceInChatOrderAndCommitsTheOffset() throws Exception {
+        List<long[]> updates = new ArrayList<>();
+        for (long updateId = 1; updateId <= 60; updateId++) {
+            updates.add(new long[]{updateId, updateId % 3});
+        }
+        stub.add(updates);
+        recordHandled(Set.of(), new AtomicInteger());
+        
+        pollingService.start();
+        
+        awaitTrue(() -> stub.committedOffset() == 61);
+        for (long chatId = 0; chatId < 3; chatId++) {
+            List<Long> chatUpdates = handled.get(chatId);
+            assertThat(chatUpdates).hasSize(20).isSorted().doesNotHaveDuplicates();
+        }
+    }
+    
+    @Test
+    void failedUpdateHoldsBackItsChatAndIsRedelivered() throws Exception {
+        stub.add(List.of(new long[]{1, 1}, new long[]{2, 1}, new long[]{3, 2}, new long[]{4, 1}, new long[]{5, 2}));
+        AtomicInteger failures = new AtomicInteger();
+        recordHandled(Set.of(2L), failures);
+        
+        pollingService.start();
+        
+        awaitTrue(() -> stub.committedOffset() == 6);
+        assertThat(failures.get()).isEqualTo(1);
+        assertThat(handled.get(1L)).containsExactly(1L, 2L, 4L);
+        assertThat(handled.get(2L)).containsExactly(3L, 5L);
+    }
+    
+    @Test
+    void poisonUpdateIsSkippedAfterMaxAttempts() throws Exception {
+        stub.add(List.of(new long[]{1, 1}, new long[]{2, 1}, new long[]{3, 2}));
+        doAnswer(invocation -> {
+            JsonNode update = invocation.getArgument(0);
+            long updateId = update.get("update_id").asLong();
+            if (updateId == 1) {
+                throw new IllegalStateException("poison");
+            }
+            handled.computeIfAbsent(botService.resolveChatId(update), id -> new CopyOnWriteArrayList<>()).add(updateId);
+            return null;
+        }).when(botService).handleUpdate(any(JsonNode.class));
+        
+        pollingService.start();
+        
+        awaitTrue(() -> stub.committedOffset() == 4);
+        assertThat(handled.get(1L)).containsExactly(2L);
+        assertThat(handled.get(2L)).containsExactly(3L);
+    }
+    
+    /**
+     * Records handled updates; those in failOnce throw on their first attempt
+     */
+    private void recordHandled(Set<Long> failOnce, AtomicInteger failures) {
+        Set<Long> failed = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> {
+            JsonNode update = invocation.getArgument(0);
+            long updateId = update.get("update_id").asLong();
+            if (failOnce.contains(updateId) && failed.add(updateId)) {
+                failures.incrementAndGet();
+                throw new IllegalStateException("transient failure");
+            }
+            handled.computeIfAbsent(botService.resolveChatId(update), id -> new CopyOnWriteArrayList<>()).add(updateId);
+            return null;
+        }).when(botService).handleUpdate(any(JsonNode.class));
+    }
+    
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+    
+    /**
+     * getUpdates with offset semantics: updates below the offset are confirmed and dropped,
+     * the rest are returned again until confirmed. Other bot methods just succeed.
+     */
+    private static class GetUpdatesStub implements AutoCloseable {
+        
+        private final HttpServer server;
+        private final List<long[]> pending = Collections.synchronizedList(new ArrayList<>());
+        private volatile long committedOffset;
+        
+        GetUpdatesStub() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/", this::handle);
+            server.start();
+        }
+        
+        int port() {
+            return server.getAddress().getPort();
+        }
+        
+        long committedOffset() {
+            return committedOffset;
+        }
+        
+        void add(List<long[]> updates) {
+            pending.addAll(updates);
+        }
+        
+        private void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                String body = "{\"ok\":true,\"result\":true}";
+                if (exchange.getRequestURI().getPath().endsWith("/getUpdates")) {
+                    body = getUpdates(exchange.getRequestURI().getQuery());
+                }
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        }
+        
+        private String getUpdates(String query) {
+            long offset = 0;
+            int limit = 100;
+            for (String parameter : query.split("&")) {
+                String[] pair = parameter.split("=", 2);
+                if (pair[0].equals("offset")) {
+                    offset = Long.parseLong(pair[1]);
+                } else if (pair[0].equals("limit")) {
+                    limit = Integer.parseInt(pair[1]);
+                }
+            }
+            
+            StringBuilder result = new StringBuilder("{\"ok\":true,\"result\":[");
+            int count = 0;
+            synchronized (pending) {
+                long confirmedBelow = offset;
+                pending.removeIf(update -> update[0] < confirmedBelow);
+                committedOffset = Math.max(committedOffset, offset);
+                
+                for (long[] update : pending) {
+                    if (count == limit) {
+                        break;
+                    }
+                    if (count++ > 0) {
+                        result.append(',');
+                    }
+                    result.append("{\"update_id\":").append(update[0])
+                            .append(",\"message\":{\"chat\":{\"id\":").append(update[1])
+                            .append("},\"from\":{\"id\":").append(update[1]).append("},\"text\":\"hi\"}}");
+                }
+            }
+            if (count == 0) {
+                // Stands in for the long poll, so an idle poller does not spin
+                sleepQuietly(20);
+            }
+            return result.append("]}").toString();
+        }
+        
+        private static void sleepQuietly(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.wishmanager.service;
+
+import com.wishmanager.WishManagerApplication;
+import com.wishmanager.util.RankKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JMH benchmark of reordering: random moves in a small and a large wishlist, and repeated moves
+ * to the same spot, which is what makes rank keys grow. Move latency should not depend on
+ * wishlist size. Needs a database and only runs with -Dbenchmark=true, for example
+ * {@code TEST_DATABASE_URL=... ./mvnw test -Dtest=WishMoveBenchmarkTest -Dbenchmark=true};
+ * the wishlists it creates are deleted afterwards.
+ */
+@Slf4j
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WishMoveBenchmarkTest {
+    
+    // p99 of a random move in the large wishlist may be at most this many times the small one's
+    private static final double MAX_SIZE_FACTOR = 3;
+    
+    private static final String INSERT_WISHES_SQL =
+            "INSERT INTO wishes (wishlist_id, name, rank) " +
+            "SELECT ?, 'Wish ' || n, r FROM unnest(?::text[]) WITH ORDINALITY AS k(r, n)";
+    
+    private static final String MAX_RANK_LENGTH_SQL =
+            "SELECT max(length(rank)) FROM wishes WHERE wishlist_id = ?";
+    
+    @State(Scope.Benchmark)
+    public static class Wishlist {
+        
+        @Param({"10", "10000"})
+        public int size;
+        
+        private ConfigurableApplicationContext context;
+        private JdbcTemplate jdbcTemplate;
+        private WishService wishService;
+        private UUID ownerId;
+        private UUID wishlistId;
+        private List<UUID> wishIds;
+        private int turn;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = new SpringApplicationBuilder(WishManagerApplication.class)
+                    .properties(
+                            "spring.datasource.url=" + System.getenv("TEST_DATABASE_URL"),
+                            "spring.datasource.username=" + System.getenv().getOrDefault("TEST_DATABASE_USERNAME", "wish_manager"),
+                            "spring.datasource.password=" + System.getenv().getOrDefault("TEST_DATABASE_PASSWORD", "wish_manager_password"),
+                            "spring.main.web-application-type=none",
+                            "telegram.bot.mode=webhook")
+                    .run();
+            jdbcTemplate = context.getBean(JdbcTemplate.class);
+            wishService = context.getBean(WishService.class);
+            
+            ownerId = UUID.randomUUID();
+            jdbcTemplate.update("INSERT INTO users (id, telegram_id, display_name) VALUES (?, ?, 'Rank benchmark')",
+                    ownerId, "rank-benchmark-" + ownerId);
+            wishlistId = UUID.randomUUID();
+            jdbcTemplate.update("INSERT INTO wishlists (id, owner_id, title) VALUES (?, ?, ?)",
+                    wishlistId, ownerId, "Rank benchmark " + size);
+            
+            String[] ranks = new String[size];
+            for (int i = 0; i < size; i++) {
+                ranks[i] = RankKeys.spaced(i, size);
+            }
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(INSERT_WISHES_SQL);
+                ps.setObject(1, wishlistId);
+                ps.setArray(2, connection.createArrayOf("text", ranks));
+                return ps;
+            });
+            wishIds = jdbcTemplate.queryForList("SELECT id FROM wishes WHERE wishlist_id = ?", UUID.class, wishlistId);
+        }
+        
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            try {
+                log.info("{} wishes: longest rank key {}", size,
+                        jdbcTemplate.queryForObject(MAX_RANK_LENGTH_SQL, Integer.class, wishlistId));
+                jdbcTemplate.update("DELETE FROM users WHERE id = ?", ownerId);
+            } finally {
+                context.close();
+            }
+        }
+    }
+    
+    @Benchmark
+    public void randomMove(Wishlist state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UUID wishId = state.wishIds.get(random.nextInt(state.wishIds.size()));
+        UUID afterId = state.wishIds.get(random.nextInt(state.wishIds.size()));
+        state.wishService.moveWish(wishId, afterId.equals(wishId) ? null : afterId);
+    }
+    
+    @Benchmark
+    public void moveToOneSpot(Wishlist state) {
+        // Alternating two wishes right after the same anchor halves the same gap every time
+        UUID wishId = state.wishIds.get(1 + state.turn++ % Math.min(2, state.wishIds.size() - 1));
+        state.wishService.moveWish(wishId, state.wishIds.get(0));
+    }
+    
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @EnabledIfEnvironmentVariable(named = "TEST_DATABASE_URL", matches = ".+")
+    void moveLatencyDoesNotDependOnWishlistSize() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(WishMoveBenchmarkTest.class.getName() + "\\.")
+                .threads(1)
+                .forks(1)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.seconds(2))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(2))
+                .build();
+        
+        Collection<RunResult> results = new Runner(options).run();
+        
+        Map<String, Double> randomMoveP99 = new HashMap<>();
+        for (RunResult result : results) {
+            if (result.getParams().getBenchmark().endsWith(".randomMove")) {
+                randomMoveP99.put(result.getParams().getParam("size"),
+                        result.getPrimaryResult().getStatistics().getPercentile(99));
+            }
+        }
+        assertThat(randomMoveP99).containsKeys("10", "10000");
+        assertThat(randomMoveP99.get("10000")).isLessThan(randomMoveP99.get("10") * MAX_SIZE_FACTOR);
+    }
+}
@@ -0,0 +1,132 @@
+package com.wishmanager.service;
+
+import com.wishmanager.dto.WishlistResponse;
+import com.wishmanager.entity.ArchivedWish;
+import com.wishmanager.entity.Wish;
+import com.wishmanager.entity.Wishlist;
+import com.wishmanager.repository.ArchivedWishRepository;
+import com.wishmanager.repository.MembershipRepository;
+import com.wishmanager.repository.WishRepository;
+import com.wishmanager.repository.WishlistRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Load test of coalesced wishlist reads: plain and archive-including reads of one wishlist race,
+ * and no caller may see wishes another caller added to its response.
+ */
+class WishlistServiceCoalescingTest {
+    
+    private static final int CALLERS = 32;
+    private static final long LOAD_DELAY_MS = 50;
+    
+    private final UUID wishlistId = UUID.randomUUID();
+    
+    private WishlistRepository wishlistRepository;
+    private WishlistService service;
+    
+    @BeforeEach
+    void setUp() {
+        wishlistRepository = mock(WishlistRepository.class);
+        when(wishlistRepository.findById(wishlistId)).thenAnswer(invocation -> {
+            // Slow enough that concurrent plain reads join one load
+            Thread.sleep(LOAD_DELAY_MS);
+            return Optional.of(wishlist());
+        });
+        
+        WishRepository wishRepository = mock(WishRepository.class);
+        when(wishRepository.findByWishlistIdOrderByRankAscIdAsc(wishlistId)).thenReturn(List.of(wish()));
+        MembershipRepository membershipRepository = mock(MembershipRepository.class);
+        when(membershipRepository.findByWishlistId(wishlistId)).thenReturn(List.of());
+        ArchivedWishRepository archivedWishRepository = mock(ArchivedWishRepository.class);
+        when(archivedWishRepository.findByWishlistIdOrderByCreatedAtDesc(wishlistId)).thenReturn(List.of(archivedWish()));
+        
+        service = new WishlistService();
+        ReflectionTestUtils.setField(service, "wishlistRepository", wishlistRepository);
+        ReflectionTestUtils.setField(service, "wishRepository", wishRepository);
+        ReflectionTestUtils.setField(service, "membershipRepository", membershipRepository);
+        ReflectionTestUtils.setField(service, "archivedWishRepository", archivedWishRepository);
+        ReflectionTestUtils.setField(service, "trendingService", mock(TrendingService.class));
+        ReflectionTestUtils.setField(service, "readCoalescingMaxWaitMs", 2000L);
+        service.init();
+    }
+    
+    @Test
+    void coalescedReadersDoNotSeeEachOthersChanges() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<WishlistResponse>> plain = new ArrayList<>();
+            List<Future<WishlistResponse>> withArchived = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                boolean includeArchived = i % 2 == 0;
+                Future<WishlistResponse> result = executor.submit(() -> {
+                    start.await();
+                    WishlistResponse response = service.getWishlistById(wishlistId, includeArchived);
+                    // A caller may change what it got, like the archive view does
+                    response.setTitle("Changed by a caller");
+                    response.getWishes().clear();
+                    return service.getWishlistById(wishlistId, includeArchived);
+                });
+                (includeArchived ? withArchived : plain).add(result);
+            }
+            start.countDown();
+            
+            for (Future<WishlistResponse> result : plain) {
+                WishlistResponse response = result.get();
+                assertThat(response.getTitle()).isEqualTo("Birthday");
+                assertThat(response.getWishes()).hasSize(1);
+            }
+            for (Future<WishlistResponse> result : withArchived) {
+                WishlistResponse response = result.get();
+                assertThat(response.getTitle()).isEqualTo("Birthday");
+                assertThat(response.getWishes()).hasSize(2);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        // Archive views load on their own, the plain reads must have shared loads
+        verify(wishlistRepository, atMost(2 * CALLERS - 1)).findById(wishlistId);
+    }
+    
+    private Wishlist wishlist() {
+        Wishlist wishlist = new Wishlist();
+        wishlist.setId(wishlistId);
+        wishlist.setTitle("Birthday");
+        wishlist.setIsPublic(true);
+        return wishlist;
+    }
+    
+    private Wish wish() {
+        Wish wish = new Wish();
+        wish.setId(UUID.randomUUID());
+        wish.setWishlistId(wishlistId);
+        wish.setName("Book");
+        return wish;
+    }
+    
+    private ArchivedWish archivedWish() {
+        ArchivedWish wish = new ArchivedWish();
+        wish.setId(UUID.randomUUID());
+        wish.setWishlistId(wishlistId);
+        wish.setName("Old book");
+        return wish;
+    }
+}
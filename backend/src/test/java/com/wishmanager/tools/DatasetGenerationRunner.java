@@ -0,0 +1,54 @@
+package com.wishmanager.tools;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Loads a synthetic dataset into the configured database and exits.
+ * Only active with the datagen profile.
+ */
+@Slf4j
+@Component
+@Profile("datagen")
+public class DatasetGenerationRunner implements ApplicationRunner {
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Autowired
+    private ApplicationContext applicationContext;
+    
+    @Value("${datagen.scale:1}")
+    private int scale;
+    
+    @Value("${datagen.seed:42}")
+    private long seed;
+    
+    @Value("${datagen.streams:4}")
+    private int streams;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        int exitCode = 0;
+        try {
+            DatasetGenerator.Result result = new DatasetGenerator(dataSource).generate(scale, seed, streams);
+            log.info("Dataset ready - users: {}, wishlists: {}, memberships: {}, wishes: {}, took {} ms",
+                    result.users(), result.wishlists(), result.memberships(), result.wishes(), result.elapsedMs());
+        } catch (Exception e) {
+            log.error("Error generating dataset", e);
+            exitCode = 1;
+        }
+        
+        int status = exitCode;
+        System.exit(SpringApplication.exit(applicationContext, () -> status));
+    }
+}
@@ -0,0 +1,396 @@
+package com.wishmanager.tools;
+
+import com.wishmanager.util.RankKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates a realistic, skewed dataset and bulk loads it with Postgres COPY over parallel streams.
+ * <p>
+ * Every row is derived from the seed and its own index (IDs included), so the same seed and
+ * scale always produce the same data, independent of the number of streams. Scale 1 is about
+ * 10k users, 10k wishlists and 100k wishes; scale 100 produces roughly 10M wishes.
+ * Load into a freshly migrated database.
+ */
+@Slf4j
+public class DatasetGenerator {
+    
+    public static final int USERS_PER_SCALE = 10_000;
+    public static final int WISHLISTS_PER_SCALE = 10_000;
+    
+    private static final int MAX_WISHES_PER_WISHLIST = 1000;
+    private static final int MAX_MEMBERS_PER_WISHLIST = 50;
+    // Zipf exponents tuned for ~10 wishes and ~2 extra members per wishlist on average
+    private static final double WISHES_ZIPF_EXPONENT = 1.8;
+    private static final double MEMBERS_ZIPF_EXPONENT = 2.0;
+    private static final double BOOKED_RATIO = 0.2;
+    private static final double GIFTED_RATIO = 0.1;
+    private static final double GOOGLE_USER_RATIO = 0.2;
+    private static final int FLUSH_BYTES = 1 << 16;
+    
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String[] SHOPS = {"amazon.com", "ozon.ru", "ebay.com", "etsy.com", "ikea.com", "apple.com"};
+    private static final String[] ITEMS = {"Headphones", "Book", "Board game", "Coffee grinder", "Backpack",
+            "Lego set", "Watch", "Sneakers", "Plant", "Camera", "Scarf", "Vinyl record"};
+    
+    private static final String STATS_SQL =
+            "INSERT INTO wishlist_stats (wishlist_id, wish_count, booked_count, gifted_count, member_count) " +
+            "SELECT l.id, COALESCE(w.wish_count, 0), COALESCE(w.booked_count, 0), COALESCE(w.gifted_count, 0), COALESCE(m.member_count, 0) " +
+            "FROM wishlists l " +
+            "LEFT JOIN (SELECT wishlist_id, count(*) AS wish_count, count(*) FILTER (WHERE status = 'BOOKED') AS booked_count, " +
+            "  count(*) FILTER (WHERE status = 'GIFTED') AS gifted_count FROM wishes GROUP BY wishlist_id) w ON w.wishlist_id = l.id " +
+            "LEFT JOIN (SELECT wishlist_id, count(*) AS member_count FROM memberships GROUP BY wishlist_id) m ON m.wishlist_id = l.id " +
+            "ON CONFLICT (wishlist_id) DO NOTHING";
+    
+    // Stream tags keep IDs of different tables apart for the same index
+    private static final long USER_TAG = 1;
+    private static final long WISHLIST_TAG = 2;
+    private static final long ROW_TAG = 3;
+    
+    private final DataSource dataSource;
+    
+    public DatasetGenerator(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+    
+    public record Result(long users, long wishlists, long memberships, long wishes, long elapsedMs) {
+    }
+    
+    public Result generate(int scale, long seed, int streams) {
+        long started = System.currentTimeMillis();
+        int userCount = scale * USERS_PER_SCALE;
+        int wishlistCount = scale * WISHLISTS_PER_SCALE;
+        
+        log.info("Generating dataset - scale: {}, seed: {}, streams: {}", scale, seed, streams);
+        
+        ZipfSampler wishSizes = new ZipfSampler(MAX_WISHES_PER_WISHLIST, WISHES_ZIPF_EXPONENT, 1);
+        ZipfSampler memberCounts = new ZipfSampler(MAX_MEMBERS_PER_WISHLIST + 1, MEMBERS_ZIPF_EXPONENT, 0);
+        AtomicLong memberships = new AtomicLong();
+        AtomicLong wishes = new AtomicLong();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(streams);
+        try {
+            // Phases run one after another because of foreign keys, rows within a phase in parallel
+            runPartitioned(executor, streams, userCount, (from, to) -> copyUsers(seed, from, to));
+            log.info("Loaded {} users", userCount);
+            
+            runPartitioned(executor, streams, wishlistCount, (from, to) -> copyWishlists(seed, userCount, from, to));
+            log.info("Loaded {} wishlists", wishlistCount);
+            
+            runPartitioned(executor, streams, wishlistCount, (from, to) -> {
+                long[] counts = copyWishlistContents(seed, userCount, from, to, wishSizes, memberCounts);
+                memberships.addAndGet(counts[0]);
+                wishes.addAndGet(counts[1]);
+            });
+            log.info("Loaded {} memberships and {} wishes", memberships.get(), wishes.get());
+            
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            // COPY bypasses the application, so the counters are computed once over the whole load
+            statement.execute(STATS_SQL);
+            statement.execute("ANALYZE");
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to analyze generated dataset", e);
+        }
+        
+        Result result = new Result(userCount, wishlistCount, memberships.get(), wishes.get(),
+                System.currentTimeMillis() - started);
+        log.info("Generated dataset in {} ms", result.elapsedMs());
+        return result;
+    }
+    
+    public static UUID userId(long seed, int index) {
+        return deterministicUuid(seed, USER_TAG, index);
+    }
+    
+    public static UUID wishlistId(long seed, int index) {
+        return deterministicUuid(seed, WISHLIST_TAG, index);
+    }
+    
+    private void copyUsers(long seed, int from, int to) throws Exception {
+        try (CopyStream copy = new CopyStream("COPY users (id, telegram_id, google_sub, display_name, avatar_url, created_at) FROM STDIN (FORMAT csv)")) {
+            for (int i = from; i < to; i++) {
+                SplittableRandom random = rowRandom(seed, USER_TAG, i);
+                boolean google = random.nextDouble() < GOOGLE_USER_RATIO;
+                copy.row(userId(seed, i),
+                        google ? null : String.valueOf(1_000_000_000L + i),
+                        google ? "google-" + i : null,
+                        "User " + i,
+                        random.nextInt(3) == 0 ? null : "https://cdn.example.com/avatars/" + i + ".jpg",
+                        timestamp(BASE_TIME.minusMinutes(random.nextInt(2 * 365 * 24 * 60))));
+            }
+            copy.finish();
+        }
+    }
+    
+    private void copyWishlists(long seed, int userCount, int from, int to) throws Exception {
+        try (CopyStream copy = new CopyStream("COPY wishlists (id, owner_id, title, description, is_public, created_at, updated_at) FROM STDIN (FORMAT csv)")) {
+            for (int i = from; i < to; i++) {
+                SplittableRandom random = rowRandom(seed, WISHLIST_TAG, i);
+                LocalDateTime createdAt = BASE_TIME.minusMinutes(random.nextInt(2 * 365 * 24 * 60));
+                copy.row(wishlistId(seed, i),
+                        userId(seed, ownerIndex(seed, i, userCount)),
+                        "Wishlist " + i,
+                        random.nextBoolean() ? "Generated wishlist " + i : null,
+                        random.nextInt(3) == 0,
+                        timestamp(createdAt),
+                        timestamp(createdAt.plusMinutes(random.nextInt(30 * 24 * 60))));
+            }
+            copy.finish();
+        }
+    }
+    
+    /**
+     * Memberships and wishes are generated per wishlist from the same random stream,
+     * so bookers can be drawn from the wishlist's own members
+     */
+    private long[] copyWishlistContents(long seed, int userCount, int from, int to,
+                                        ZipfSampler wishSizes, ZipfSampler memberCounts) throws Exception {
+        long membershipCount = 0;
+        long wishCount = 0;
+        
+        try (CopyStream membershipCopy = new CopyStream("COPY memberships (id, user_id, wishlist_id, role, created_at) FROM STDIN (FORMAT csv)");
+             CopyStream wishCopy = new CopyStream("COPY wishes (id, wishlist_id, name, description, links, status, booked_by, hide_booker_name, created_at, updated_at, rank) FROM STDIN (FORMAT csv)")) {
+            
+            for (int i = from; i < to; i++) {
+                SplittableRandom random = rowRandom(seed, ROW_TAG, i);
+                UUID wishlistId = wishlistId(seed, i);
+                int ownerIndex = ownerIndex(seed, i, userCount);
+                long rowId = (long) i << 20;
+                
+                List<UUID> members = new ArrayList<>();
+                Set<Integer> memberIndexes = new HashSet<>();
+                memberIndexes.add(ownerIndex);
+                membershipCopy.row(deterministicUuid(seed, ROW_TAG, rowId++), userId(seed, ownerIndex), wishlistId, "OWNER",
+                        timestamp(BASE_TIME));
+                
+                int extraMembers = Math.min(memberCounts.sample(random), userCount - 1);
+                while (members.size() < extraMembers) {
+                    int memberIndex = random.nextInt(userCount);
+                    if (memberIndexes.add(memberIndex)) {
+                        UUID memberId = userId(seed, memberIndex);
+                        members.add(memberId);
+                        membershipCopy.row(deterministicUuid(seed, ROW_TAG, rowId++), memberId, wishlistId,
+                                random.nextInt(10) == 0 ? "EDITOR" : "VIEWER",
+                                timestamp(BASE_TIME.minusMinutes(random.nextInt(365 * 24 * 60))));
+                    }
+                }
+                membershipCount += 1 + members.size();
+                
+                int wishes = wishSizes.sample(random);
+                for (int w = 0; w < wishes; w++) {
+                    double statusRoll = random.nextDouble();
+                    String status = statusRoll < GIFTED_RATIO ? "GIFTED" : statusRoll < GIFTED_RATIO + BOOKED_RATIO ? "BOOKED" : "FREE";
+                    UUID bookedBy = null;
+                    if (!"FREE".equals(status)) {
+                        bookedBy = members.isEmpty() ? userId(seed, random.nextInt(userCount)) : members.get(random.nextInt(members.size()));
+                    }
+                    LocalDateTime createdAt = BASE_TIME.minusMinutes(random.nextInt(2 * 365 * 24 * 60));
+                    
+                    wishCopy.row(deterministicUuid(seed, ROW_TAG, rowId++), wishlistId,
+                            ITEMS[random.nextInt(ITEMS.length)] + " " + w,
+                            random.nextInt(4) == 0 ? "Generated description for wish " + w : null,
+                            links(random),
+                            status,
+                            bookedBy,
+                            bookedBy != null && random.nextInt(5) == 0,
+                            timestamp(createdAt),
+                            timestamp(createdAt.plusMinutes(random.nextInt(60 * 24 * 60))),
+                            RankKeys.spaced(w, wishes));
+                }
+                wishCount += wishes;
+            }
+            membershipCopy.finish();
+            wishCopy.finish();
+        }
+        return new long[]{membershipCount, wishCount};
+    }
+    
+    private static String links(SplittableRandom random) {
+        int count = random.nextInt(4);
+        if (count == 0) {
+            return null;
+        }
+        StringBuilder links = new StringBuilder("[");
+        for (int l = 0; l < count; l++) {
+            if (l > 0) {
+                links.append(',');
+            }
+            links.append("\"https://").append(SHOPS[random.nextInt(SHOPS.length)])
+                    .append("/p/").append(random.nextInt(10_000_000)).append('"');
+        }
+        return links.append(']').toString();
+    }
+    
+    private static int ownerIndex(long seed, int wishlistIndex, int userCount) {
+        // Skewed ownership: a few users own many lists
+        SplittableRandom random = rowRandom(seed, WISHLIST_TAG ^ 0x5bd1e995L, wishlistIndex);
+        double skewed = Math.pow(random.nextDouble(), 2);
+        return (int) (skewed * userCount);
+    }
+    
+    private static String timestamp(LocalDateTime time) {
+        return time.format(TIMESTAMP_FORMAT);
+    }
+    
+    private static SplittableRandom rowRandom(long seed, long tag, long index) {
+        return new SplittableRandom(mix(seed ^ mix(tag * 0x9E3779B97F4A7C15L + index)));
+    }
+    
+    private static UUID deterministicUuid(long seed, long tag, long index) {
+        long high = mix(seed ^ mix(tag + 0x632BE59BD9B4E019L * index));
+        long low = mix(high ^ index);
+        // Mark as a version 4, IETF variant UUID
+        high = (high & 0xFFFFFFFFFFFF0FFFL) | 0x0000000000004000L;
+        low = (low & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(high, low);
+    }
+    
+    /**
+     * SplitMix64 finalizer
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    private void runPartitioned(ExecutorService executor, int streams, int total, PartitionTask task) {
+        int partitionSize = (total + streams - 1) / streams;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int from = 0; from < total; from += partitionSize) {
+            int start = from;
+            int end = Math.min(total, from + partitionSize);
+            futures.add(executor.submit(() -> {
+                task.run(start, end);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                throw new RuntimeException("Dataset generation failed", e);
+            }
+        }
+    }
+    
+    @FunctionalInterface
+    private interface PartitionTask {
+        void run(int from, int to) throws Exception;
+    }
+    
+    /**
+     * Samples k in [offset, offset + size) with probability proportional to 1 / (k - offset + 1)^exponent
+     */
+    private static class ZipfSampler {
+        private final double[] cumulative;
+        private final int offset;
+        
+        ZipfSampler(int size, double exponent, int offset) {
+            this.offset = offset;
+            this.cumulative = new double[size];
+            double sum = 0;
+            for (int k = 0; k < size; k++) {
+                sum += 1.0 / Math.pow(k + 1, exponent);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < size; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+        
+        int sample(SplittableRandom random) {
+            int index = java.util.Arrays.binarySearch(cumulative, random.nextDouble());
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return Math.min(index, cumulative.length - 1) + offset;
+        }
+    }
+    
+    /**
+     * One COPY ... FROM STDIN stream on its own connection, fed with CSV rows in chunks
+     */
+    private class CopyStream implements AutoCloseable {
+        private final Connection connection;
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(FLUSH_BYTES * 2);
+        
+        CopyStream(String sql) throws SQLException {
+            connection = dataSource.getConnection();
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            copyIn = copyManager.copyIn(sql);
+        }
+        
+        void row(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    buffer.append(',');
+                }
+                Object value = values[i];
+                if (value instanceof String text && (text.indexOf(',') >= 0 || text.indexOf('"') >= 0)) {
+                    buffer.append('"').append(text.replace("\"", "\"\"")).append('"');
+                } else if (value != null) {
+                    buffer.append(value);
+                }
+            }
+            buffer.append('\n');
+            if (buffer.length() >= FLUSH_BYTES) {
+                flush();
+            }
+        }
+        
+        private void flush() throws SQLException {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+        
+        /**
+         * Sends the rest and ends the COPY, committing its rows
+         */
+        void finish() throws SQLException {
+            flush();
+            copyIn.endCopy();
+        }
+        
+        /**
+         * Cancels the COPY if it was not finished, so a failed stream loads none of its rows
+         */
+        @Override
+        public void close() throws SQLException {
+            try {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            } finally {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.wishmanager.tools;
+
+import com.wishmanager.job.Job;
+import com.wishmanager.job.JobHandler;
+import com.wishmanager.job.JobQueue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures job queue throughput: enqueues no-op jobs and times how long the workers take to drain them.
+ * Only active with the job-benchmark profile; start several instances to measure multi-node throughput.
+ */
+@Slf4j
+@Component
+@Profile("job-benchmark")
+public class JobQueueBenchmark implements ApplicationRunner, JobHandler {
+    
+    private static final String QUEUE = "benchmark";
+    
+    @Autowired
+    private JobQueue jobQueue;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private ApplicationContext applicationContext;
+    
+    @Value("${job-benchmark.jobs:100000}")
+    private int jobs;
+    
+    @Value("${job-benchmark.enqueue-batch-size:1000}")
+    private int enqueueBatchSize;
+    
+    @Value("${job-benchmark.timeout-seconds:600}")
+    private long timeoutSeconds;
+    
+    private final LongAdder handled = new LongAdder();
+    
+    @Override
+    public String queue() {
+        return QUEUE;
+    }
+    
+    @Override
+    public void handle(Job job) {
+        handled.increment();
+    }
+    
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long started = System.nanoTime();
+        for (int offset = 0; offset < jobs; offset += enqueueBatchSize) {
+            List<Map<String, Object>> batch = new ArrayList<>();
+            for (int i = offset; i < Math.min(jobs, offset + enqueueBatchSize); i++) {
+                batch.add(Map.of("n", i));
+            }
+            jobQueue.enqueueAll(QUEUE, batch);
+        }
+        double enqueueSeconds = (System.nanoTime() - started) / 1e9;
+        log.info("Enqueued {} jobs in {}s ({} jobs/s)", jobs, String.format("%.2f", enqueueSeconds),
+                String.format("%.0f", jobs / enqueueSeconds));
+        
+        // Other nodes may be draining the same queue, so wait on the table rather than the local count
+        long deadline = System.nanoTime() + timeoutSeconds * 1_000_000_000L;
+        Integer remaining = jobs;
+        while (remaining != null && remaining > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+            remaining = jdbcTemplate.queryForObject("SELECT count(*) FROM jobs WHERE queue = ? AND status <> 'DEAD'", Integer.class, QUEUE);
+        }
+        
+        double totalSeconds = (System.nanoTime() - started) / 1e9;
+        int exitCode = remaining != null && remaining == 0 ? 0 : 1;
+        log.info("Processed {} jobs end to end in {}s ({} jobs/s), {} handled on this node, {} left",
+                jobs, String.format("%.2f", totalSeconds), String.format("%.0f", jobs / totalSeconds), handled.sum(), remaining);
+        
+        System.exit(SpringApplication.exit(applicationContext, () -> exitCode));
+    }
+}
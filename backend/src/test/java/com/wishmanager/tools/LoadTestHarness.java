@@ -0,0 +1,377 @@
+package com.wishmanager.tools;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model HTTP load test against a running node, with HdrHistogram latency reports and SLO checks.
+ * <p>
+ * Requests are issued on a Poisson schedule fixed up front, independent of how fast responses
+ * come back, and latency is measured from each request's intended start time. A slow server
+ * therefore shows up as queueing delay in the percentiles instead of silently lowering the
+ * offered load (coordinated omission). Only active with the loadtest profile; it also starts a
+ * stub Telegram API the node under test should be pointed at.
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+public class LoadTestHarness implements ApplicationRunner {
+    
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final String ALL_OPERATIONS = "all";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private ApplicationContext applicationContext;
+    
+    @Value("${load-test.target-url:http://localhost:8080}")
+    private String targetUrl;
+    
+    @Value("${load-test.rate:200}")
+    private double rate;
+    
+    @Value("${load-test.duration-seconds:60}")
+    private int durationSeconds;
+    
+    @Value("${load-test.warmup-seconds:10}")
+    private int warmupSeconds;
+    
+    @Value("${load-test.max-in-flight:1000}")
+    private int maxInFlight;
+    
+    @Value("${load-test.request-timeout-ms:5000}")
+    private long requestTimeoutMs;
+    
+    @Value("${load-test.seed:42}")
+    private long seed;
+    
+    @Value("${load-test.sample-size:10000}")
+    private int sampleSize;
+    
+    @Value("${load-test.mix:get-wishlist=60,member-wishlists=10,booked-wishes=10,trending=10,update-wish=5,webhook=5}")
+    private String mix;
+    
+    @Value("${load-test.slo:get-wishlist.p99=50}")
+    private String slo;
+    
+    @Value("${load-test.max-error-rate:0.001}")
+    private double maxErrorRate;
+    
+    @Value("${load-test.authorization:}")
+    private String authorization;
+    
+    @Value("${load-test.report-dir:}")
+    private String reportDir;
+    
+    @Value("${load-test.telegram-stub.port:8089}")
+    private int telegramStubPort;
+    
+    @Value("${load-test.telegram-stub.delay-ms:20}")
+    private long telegramStubDelayMs;
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        int exitCode;
+        try (TelegramStubServer telegramStub = new TelegramStubServer(telegramStubPort, telegramStubDelayMs)) {
+            telegramStub.start();
+            Samples samples = loadSamples();
+            Map<String, Stats> stats = drive(samples);
+            report(stats);
+            log.info("Telegram stub received {} bot API calls", telegramStub.getCalls());
+            
+            List<String> breaches = checkSlos(stats);
+            breaches.forEach(breach -> log.error("SLO breached: {}", breach));
+            exitCode = breaches.isEmpty() ? 0 : 1;
+        }
+        
+        int status = exitCode;
+        System.exit(SpringApplication.exit(applicationContext, () -> status));
+    }
+    
+    private Map<String, Stats> drive(Samples samples) throws InterruptedException {
+        List<Operation> operations = parseMix(samples);
+        double totalWeight = operations.stream().mapToDouble(Operation::weight).sum();
+        
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        operations.forEach(operation -> stats.put(operation.name(), new Stats()));
+        stats.put(ALL_OPERATIONS, new Stats());
+        
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(requestTimeoutMs))
+                .executor(clientExecutor)
+                .build();
+        
+        SplittableRandom random = new SplittableRandom(seed);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        double intendedOffsetNanos = 0;
+        
+        log.info("Offering {} req/s for {}s after {}s warmup against {}", rate, durationSeconds, warmupSeconds, targetUrl);
+        
+        while (true) {
+            // Exponential inter-arrival times give a Poisson arrival process
+            intendedOffsetNanos += -Math.log(1 - random.nextDouble()) * TimeUnit.SECONDS.toNanos(1) / rate;
+            long intendedStart = start + (long) intendedOffsetNanos;
+            if (intendedStart >= end) {
+                break;
+            }
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            
+            Operation operation = pick(operations, totalWeight, random);
+            HttpRequest request = operation.requestFactory().create(random);
+            boolean measured = intendedStart >= measureFrom;
+            
+            if (inFlight.get() >= maxInFlight) {
+                // The client cannot keep up; the request is lost, not delayed
+                if (measured) {
+                    stats.get(operation.name()).dropped.increment();
+                    stats.get(ALL_OPERATIONS).dropped.increment();
+                }
+                continue;
+            }
+            
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        inFlight.decrementAndGet();
+                        if (!measured) {
+                            return;
+                        }
+                        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart);
+                        boolean failed = error != null || response.statusCode() >= 400;
+                        stats.get(operation.name()).record(latencyMicros, failed);
+                        stats.get(ALL_OPERATIONS).record(latencyMicros, failed);
+                    });
+        }
+        
+        long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(requestTimeoutMs);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        if (inFlight.get() > 0) {
+            log.warn("{} requests still in flight after drain timeout", inFlight.get());
+        }
+        clientExecutor.shutdownNow();
+        return stats;
+    }
+    
+    private Operation pick(List<Operation> operations, double totalWeight, SplittableRandom random) {
+        double roll = random.nextDouble() * totalWeight;
+        for (Operation operation : operations) {
+            roll -= operation.weight();
+            if (roll < 0) {
+                return operation;
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+    
+    private List<Operation> parseMix(Samples samples) {
+        List<Operation> operations = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            String name = parts[0].trim();
+            double weight = Double.parseDouble(parts[1].trim());
+            operations.add(new Operation(name, weight, requestFactory(name, samples)));
+        }
+        return operations;
+    }
+    
+    private RequestFactory requestFactory(String name, Samples samples) {
+        return switch (name) {
+            // Popular wishlists are viewed far more often than the rest
+            case "get-wishlist" -> random -> get("/wishlists/" + samples.skewed(samples.wishlistIds, random));
+            case "member-wishlists" -> random -> get("/wishlists/member?userId=" + samples.uniform(samples.userIds, random));
+            case "booked-wishes" -> random -> get("/wishes/booked?userId=" + samples.uniform(samples.userIds, random));
+            case "trending" -> random -> get("/wishlists/trending?limit=20");
+            case "update-wish" -> random -> post("PATCH", "/wishes/" + samples.uniform(samples.wishIds, random),
+                    "{\"name\":\"Load test wish " + random.nextInt(1_000_000) + "\"}");
+            case "webhook" -> random -> post("POST", "/bot/webhook", startUpdate(samples.uniform(samples.telegramIds, random), random));
+            default -> throw new IllegalArgumentException("Unknown load test operation: " + name);
+        };
+    }
+    
+    private String startUpdate(String telegramId, SplittableRandom random) {
+        int updateId = random.nextInt(Integer.MAX_VALUE);
+        return "{\"update_id\":" + updateId + ",\"message\":{\"message_id\":" + updateId + "," +
+                "\"from\":{\"id\":" + telegramId + ",\"is_bot\":false,\"first_name\":\"Load\"}," +
+                "\"chat\":{\"id\":" + telegramId + ",\"type\":\"private\"}," +
+                "\"date\":" + (System.currentTimeMillis() / 1000) + ",\"text\":\"/start\"}}";
+    }
+    
+    private HttpRequest get(String path) {
+        return builder(path).GET().build();
+    }
+    
+    private HttpRequest post(String method, String path, String body) {
+        return builder(path)
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+    
+    private HttpRequest.Builder builder(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(targetUrl + path))
+                .timeout(Duration.ofMillis(requestTimeoutMs));
+        if (!authorization.isEmpty()) {
+            builder.header("Authorization", authorization);
+        }
+        return builder;
+    }
+    
+    /**
+     * Samples are ordered by a seeded hash so repeated runs hit the same rows
+     */
+    private Samples loadSamples() {
+        String order = "ORDER BY md5(id::text || '" + seed + "') LIMIT ?";
+        Samples samples = new Samples(
+                jdbcTemplate.queryForList("SELECT id FROM wishlists " + order, UUID.class, sampleSize),
+                jdbcTemplate.queryForList("SELECT id FROM users " + order, UUID.class, sampleSize),
+                jdbcTemplate.queryForList("SELECT telegram_id FROM users WHERE telegram_id ~ '^[0-9]+$' " + order, String.class, sampleSize),
+                jdbcTemplate.queryForList("SELECT id FROM wishes " + order, UUID.class, sampleSize));
+        
+        if (samples.wishlistIds.isEmpty() || samples.userIds.isEmpty() || samples.telegramIds.isEmpty() || samples.wishIds.isEmpty()) {
+            throw new IllegalStateException("Database has no data to load test against, run the datagen profile first");
+        }
+        log.info("Loaded {} wishlists, {} users and {} wishes as request samples",
+                samples.wishlistIds.size(), samples.userIds.size(), samples.wishIds.size());
+        return samples;
+    }
+    
+    private void report(Map<String, Stats> stats) throws Exception {
+        log.info(String.format("%-18s %9s %7s %7s %9s %9s %9s %9s %9s",
+                "operation", "requests", "errors", "dropped", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            Stats operationStats = entry.getValue();
+            Histogram histogram = operationStats.histogram;
+            log.info(String.format("%-18s %9d %7d %7d %9.2f %9.2f %9.2f %9.2f %9.2f",
+                    entry.getKey(), histogram.getTotalCount(), operationStats.errors.sum(), operationStats.dropped.sum(),
+                    millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                    histogram.getMaxValue() / 1000.0));
+            
+            if (!reportDir.isEmpty()) {
+                Path directory = Files.createDirectories(Path.of(reportDir));
+                try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(entry.getKey() + ".hgrm")))) {
+                    histogram.outputPercentileDistribution(out, 1000.0);
+                }
+            }
+        }
+        
+        long total = stats.get(ALL_OPERATIONS).histogram.getTotalCount();
+        log.info("Achieved {} req/s over the measured window", String.format("%.1f", total / (double) durationSeconds));
+    }
+    
+    /**
+     * SLOs are written as operation.pNN=millis, where operation may be "all"
+     */
+    private List<String> checkSlos(Map<String, Stats> stats) {
+        List<String> breaches = new ArrayList<>();
+        for (String entry : slo.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split("=");
+            String target = parts[0].trim();
+            int separator = target.lastIndexOf(".p");
+            String operation = target.substring(0, separator);
+            double percentile = Double.parseDouble(target.substring(separator + 2));
+            double limitMs = Double.parseDouble(parts[1].trim());
+            
+            Stats operationStats = stats.get(operation);
+            if (operationStats == null) {
+                breaches.add(target + " refers to an operation that is not in the mix");
+                continue;
+            }
+            double actualMs = millis(operationStats.histogram, percentile);
+            if (actualMs > limitMs) {
+                breaches.add(String.format("%s is %.2f ms, limit %.2f ms", target, actualMs, limitMs));
+            }
+        }
+        
+        Stats all = stats.get(ALL_OPERATIONS);
+        long attempted = all.histogram.getTotalCount() + all.dropped.sum();
+        double errorRate = attempted == 0 ? 1 : (all.errors.sum() + all.dropped.sum()) / (double) attempted;
+        if (errorRate > maxErrorRate) {
+            breaches.add(String.format("error rate is %.4f, limit %.4f", errorRate, maxErrorRate));
+        }
+        return breaches;
+    }
+    
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+    
+    @FunctionalInterface
+    private interface RequestFactory {
+        HttpRequest create(SplittableRandom random);
+    }
+    
+    private record Operation(String name, double weight, RequestFactory requestFactory) {
+    }
+    
+    private static class Stats {
+        private final Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        
+        void record(long latencyMicros, boolean failed) {
+            histogram.recordValue(Math.min(latencyMicros, HIGHEST_TRACKABLE_MICROS));
+            if (failed) {
+                errors.increment();
+            }
+        }
+    }
+    
+    private record Samples(List<UUID> wishlistIds, List<UUID> userIds, List<String> telegramIds, List<UUID> wishIds) {
+        
+        <T> T uniform(List<T> values, SplittableRandom random) {
+            return values.get(random.nextInt(values.size()));
+        }
+        
+        <T> T skewed(List<T> values, SplittableRandom random) {
+            double roll = random.nextDouble();
+            return values.get((int) (roll * roll * roll * values.size()));
+        }
+    }
+}
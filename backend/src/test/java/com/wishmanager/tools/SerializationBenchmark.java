@@ -0,0 +1,155 @@
+package com.wishmanager.tools;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.wishmanager.dto.MembershipResponse;
+import com.wishmanager.dto.WishResponse;
+import com.wishmanager.dto.WishlistResponse;
+import com.wishmanager.entity.Membership;
+import com.wishmanager.entity.Wish;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the response formats on large wishlists: bytes on the wire (raw and gzipped) and CPU per
+ * serialization and deserialization. Mappers are built like the ones serving requests. Warm-up
+ * rounds let the JIT settle before the measured round. Only active with the serialization-benchmark profile.
+ */
+@Slf4j
+@Component
+@Profile("serialization-benchmark")
+public class SerializationBenchmark implements ApplicationRunner {
+    
+    private static final String[] NAMES = {"Headphones", "Book", "Board game", "Coffee grinder", "Backpack",
+            "Lego set", "Watch", "Sneakers", "Plant", "Camera", "Scarf", "Vinyl record"};
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2025, 1, 1, 0, 0);
+    
+    @Autowired
+    private ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+    
+    @Autowired
+    private ApplicationContext applicationContext;
+    
+    @Value("${serialization-benchmark.wish-counts:100,1000,10000}")
+    private int[] wishCounts;
+    
+    @Value("${serialization-benchmark.iterations:200}")
+    private int iterations;
+    
+    @Value("${serialization-benchmark.warmup-rounds:3}")
+    private int warmupRounds;
+    
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+        mappers.put("json", mapper(null));
+        mappers.put("cbor", mapper(new CBORFactory()));
+        mappers.put("smile", mapper(new SmileFactory()));
+        
+        for (int wishCount : wishCounts) {
+            WishlistResponse wishlist = wishlist(wishCount);
+            for (Map.Entry<String, ObjectMapper> format : mappers.entrySet()) {
+                measure(format.getKey(), format.getValue(), wishlist, wishCount);
+            }
+        }
+        
+        System.exit(SpringApplication.exit(applicationContext, () -> 0));
+    }
+    
+    private void measure(String format, ObjectMapper mapper, WishlistResponse wishlist, int wishCount) throws IOException {
+        byte[] body = mapper.writeValueAsBytes(wishlist);
+        byte[] gzipped = gzip(body);
+        
+        double serializeUs = 0;
+        double deserializeUs = 0;
+        double gzipUs = 0;
+        for (int round = 0; round <= warmupRounds; round++) {
+            long started = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                mapper.writeValueAsBytes(wishlist);
+            }
+            serializeUs = (System.nanoTime() - started) / 1000.0 / iterations;
+            
+            started = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                mapper.readValue(body, WishlistResponse.class);
+            }
+            deserializeUs = (System.nanoTime() - started) / 1000.0 / iterations;
+            
+            started = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                gzip(body);
+            }
+            gzipUs = (System.nanoTime() - started) / 1000.0 / iterations;
+        }
+        
+        log.info("{} wishes, {}: {} bytes ({} gzipped), serialize {} us, deserialize {} us, gzip {} us",
+                wishCount, format, body.length, gzipped.length, String.format("%.1f", serializeUs),
+                String.format("%.1f", deserializeUs), String.format("%.1f", gzipUs));
+    }
+    
+    private ObjectMapper mapper(JsonFactory factory) {
+        Jackson2ObjectMapperBuilder builder = objectMapperBuilder.getObject();
+        return factory == null ? builder.build() : builder.factory(factory).build();
+    }
+    
+    // Deterministic, shaped like production data: a few members per ten wishes, a third of the wishes booked
+    private static WishlistResponse wishlist(int wishCount) {
+        SplittableRandom random = new SplittableRandom(wishCount);
+        UUID wishlistId = new UUID(random.nextLong(), random.nextLong());
+        UUID ownerId = new UUID(random.nextLong(), random.nextLong());
+        
+        List<MembershipResponse> memberships = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, wishCount / 10); i++) {
+            memberships.add(new MembershipResponse(new UUID(random.nextLong(), random.nextLong()),
+                    i == 0 ? ownerId : new UUID(random.nextLong(), random.nextLong()), wishlistId,
+                    i == 0 ? Membership.Role.OWNER : Membership.Role.VIEWER, BASE_TIME.plusMinutes(i)));
+        }
+        
+        List<WishResponse> wishes = new ArrayList<>();
+        for (int i = 0; i < wishCount; i++) {
+            boolean booked = random.nextInt(3) == 0;
+            String name = NAMES[random.nextInt(NAMES.length)];
+            wishes.add(new WishResponse(new UUID(random.nextLong(), random.nextLong()), wishlistId, name + " #" + i,
+                    random.nextBoolean() ? "Any color is fine, size M if it comes in sizes" : null,
+                    "[\"https://example.com/item/" + random.nextInt(1_000_000) + "\"]",
+                    booked ? Wish.Status.BOOKED : Wish.Status.FREE,
+                    booked ? memberships.get(random.nextInt(memberships.size())).getUserId() : null,
+                    booked && random.nextBoolean(), BASE_TIME.plusMinutes(i), BASE_TIME.plusMinutes(i + random.nextInt(10_000))));
+        }
+        
+        return new WishlistResponse(wishlistId, ownerId, "Birthday " + wishCount, "Things I would love to get",
+                true, 72, LocalDate.of(2025, 6, 1), BASE_TIME, BASE_TIME, wishes, memberships);
+    }
+    
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,82 @@
+package com.wishmanager.tools;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chaos profile: every statement holds its connection for an extra delay, as if Postgres had
+ * slowed down. Combined with the load test harness this shows whether
+ * the concurrency limiter keeps latency bounded by shedding instead of queueing.
+ */
+@Slf4j
+@Component
+@Profile("chaos")
+public class SlowDatabaseInjector implements BeanPostProcessor {
+    
+    private final long delayMs;
+    private final long jitterMs;
+    
+    // Constructor injection: post-processors are created before field injection is available
+    public SlowDatabaseInjector(Environment environment) {
+        this.delayMs = environment.getProperty("chaos.db-delay-ms", Long.class, 200L);
+        this.jitterMs = environment.getProperty("chaos.db-jitter-ms", Long.class, 50L);
+    }
+    
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!"dataSource".equals(beanName) || !(bean instanceof DataSource dataSource)) {
+            return bean;
+        }
+        
+        log.warn("Chaos: delaying every database statement by {}ms (+/- {}ms)", delayMs, jitterMs);
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return slow(super.getConnection());
+            }
+            
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return slow(super.getConnection(username, password));
+            }
+        };
+    }
+    
+    private Connection slow(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                    // Sleep after the call so the physical connection (fetched lazily) is held meanwhile
+                    if (method.getName().startsWith("prepare") || method.getName().equals("createStatement")) {
+                        sleep();
+                    }
+                    return result;
+                });
+    }
+    
+    private void sleep() throws SQLException {
+        long jitter = jitterMs > 0 ? ThreadLocalRandom.current().nextLong(-jitterMs, jitterMs + 1) : 0;
+        try {
+            Thread.sleep(Math.max(0, delayMs + jitter));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while injecting database delay", e);
+        }
+    }
+}
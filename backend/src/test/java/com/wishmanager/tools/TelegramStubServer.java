@@ -0,0 +1,69 @@
+package com.wishmanager.tools;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Minimal stand-in for the Telegram Bot API used during load tests.
+ * Answers every bot method with a successful empty result after an optional delay,
+ * so outgoing bot calls cost what a real round trip would without leaving the machine.
+ */
+@Slf4j
+public class TelegramStubServer implements AutoCloseable {
+    
+    private static final byte[] OK_RESPONSE = "{\"ok\":true,\"result\":true}".getBytes(StandardCharsets.UTF_8);
+    
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long delayMs;
+    private final LongAdder calls = new LongAdder();
+    
+    public TelegramStubServer(int port, long delayMs) throws IOException {
+        this.delayMs = delayMs;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        this.executor = Executors.newCachedThreadPool();
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+    
+    public void start() {
+        server.start();
+        log.info("Telegram stub server listening on port {}", server.getAddress().getPort());
+    }
+    
+    public long getCalls() {
+        return calls.sum();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            calls.increment();
+            if (delayMs > 0) {
+                Thread.sleep(delayMs);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, OK_RESPONSE.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(OK_RESPONSE);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,16 @@
+package com.wishmanager.tools;
+
+import com.wishmanager.WishManagerApplication;
+import org.springframework.boot.SpringApplication;
+
+/**
+ * Starts the application on the test classpath, where the dataset generator, load test and
+ * benchmarks in this package live, so they stay out of the production jar. Pick a tool with
+ * its profile: {@code ./mvnw spring-boot:test-run -Dspring-boot.run.profiles=datagen}
+ */
+public class ToolsApplication {
+    
+    public static void main(String[] args) {
+        SpringApplication.from(WishManagerApplication::main).run(args);
+    }
+}
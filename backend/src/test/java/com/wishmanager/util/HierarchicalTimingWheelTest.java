@@ -0,0 +1,101 @@
+package com.wishmanager.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HierarchicalTimingWheelTest {
+    
+    // 1 ms ticks, two levels of four slots: level 0 spans 4 ms, level 1 spans 16 ms, beyond is overflow
+    private final HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(1, 2, 2, 0);
+    
+    @Test
+    void timersFireOnTheirTickFromEveryLevelAndTheOverflow() {
+        // Level 0, level 1, both sides of level boundaries, overflow and overflow past a second rotation
+        long[] deadlines = {3, 9, 15, 16, 17, 40, 63, 64};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+        
+        Map<Long, Long> firedAt = stepTo(100);
+        
+        assertThat(firedAt).hasSize(deadlines.length);
+        firedAt.forEach((deadline, tick) -> assertThat(tick).as("timer due at %d", deadline).isEqualTo(deadline));
+        assertThat(wheel.size()).isZero();
+    }
+    
+    @Test
+    void timerCancelledBeforeCascadingNeverFires() {
+        HierarchicalTimingWheel.Timer<Long> timer = wheel.schedule(9L, 9);
+        wheel.advance(2);
+        
+        wheel.cancel(timer);
+        
+        assertThat(wheel.size()).isZero();
+        assertThat(stepTo(40)).isEmpty();
+    }
+    
+    @Test
+    void timerCancelledAfterCascadingNeverFires() {
+        HierarchicalTimingWheel.Timer<Long> timer = wheel.schedule(9L, 9);
+        // At 8 the level 1 slot comes up and moves the timer down to level 0
+        wheel.advance(8);
+        
+        wheel.cancel(timer);
+        
+        assertThat(wheel.size()).isZero();
+        assertThat(stepTo(40)).isEmpty();
+    }
+    
+    @Test
+    void cancelAfterFiringChangesNothing() {
+        HierarchicalTimingWheel.Timer<Long> timer = wheel.schedule(3L, 3);
+        wheel.schedule(5L, 5);
+        assertThat(wheel.advance(3)).containsExactly(3L);
+        
+        wheel.cancel(timer);
+        
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+    
+    @Test
+    void pastDeadlineFiresOnTheNextAdvance() {
+        wheel.advance(10);
+        wheel.schedule(5L, 5);
+        
+        assertThat(wheel.advance(10)).isEmpty();
+        assertThat(wheel.advance(11)).containsExactly(5L);
+    }
+    
+    @Test
+    void largeJumpFiresEverythingInDeadlineOrder() {
+        List<Long> deadlines = new ArrayList<>();
+        for (long deadline = 1; deadline <= 300; deadline += 7) {
+            deadlines.add(deadline);
+        }
+        List<Long> shuffled = new ArrayList<>(deadlines);
+        Collections.shuffle(shuffled, new Random(42));
+        shuffled.forEach(deadline -> wheel.schedule(deadline, deadline));
+        
+        assertThat(wheel.advance(1_000)).containsExactlyElementsOf(deadlines);
+        assertThat(wheel.size()).isZero();
+    }
+    
+    // Advances one tick at a time and records the tick each value fired on
+    private Map<Long, Long> stepTo(long endMs) {
+        Map<Long, Long> firedAt = new LinkedHashMap<>();
+        for (long now = 1; now <= endMs; now++) {
+            for (Long value : wheel.advance(now)) {
+                firedAt.put(value, now);
+            }
+        }
+        return firedAt;
+    }
+}
@@ -0,0 +1,57 @@
+package com.wishmanager.util;
+
+import com.wishmanager.util.TelegramTemplate.ParseMode;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TelegramTemplateTest {
+    
+    @Test
+    void htmlValuesCannotInjectMarkup() {
+        TelegramTemplate template = TelegramTemplate.html("<b>{title}</b> by {owner}", "title", "owner");
+        
+        assertThat(template.render("<b>Tom & \"Jerry\"</b>", "<a href=\"x\">me</a>"))
+                .isEqualTo("<b>&lt;b&gt;Tom &amp; &quot;Jerry&quot;&lt;/b&gt;</b> by &lt;a href=&quot;x&quot;&gt;me&lt;/a&gt;");
+        assertThat(template.parseMode().apiValue()).isEqualTo("HTML");
+    }
+    
+    @Test
+    void markdownV2ValuesHaveEverySpecialCharacterEscaped() {
+        TelegramTemplate template = TelegramTemplate.markdownV2("*{title}*", "title");
+        
+        assertThat(template.render("_*[]()~`>#+-=|{}.!\\"))
+                .isEqualTo("*\\_\\*\\[\\]\\(\\)\\~\\`\\>\\#\\+\\-\\=\\|\\{\\}\\.\\!\\\\*");
+        assertThat(template.render("Birthday 2025")).isEqualTo("*Birthday 2025*");
+        assertThat(template.parseMode().apiValue()).isEqualTo("MarkdownV2");
+    }
+    
+    @Test
+    void placeholdersAreFilledInDeclarationOrderAndNullRendersEmpty() {
+        TelegramTemplate template = TelegramTemplate.html("{b}-{a}-{b}", "a", "b");
+        
+        assertThat(template.render("1", "2")).isEqualTo("2-1-2");
+        assertThat(template.render("1", null)).isEqualTo("-1-");
+    }
+    
+    @Test
+    void escapeMatchesRenderedValues() {
+        assertThat(TelegramTemplate.escape(ParseMode.HTML, "a<b>&c")).isEqualTo("a&lt;b&gt;&amp;c");
+        assertThat(TelegramTemplate.escape(ParseMode.MARKDOWN_V2, "v1.0 (beta)!")).isEqualTo("v1\\.0 \\(beta\\)\\!");
+    }
+    
+    @Test
+    void undeclaredPlaceholderDoesNotCompile() {
+        assertThatThrownBy(() -> TelegramTemplate.html("Hi {name}", "title"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Undeclared placeholder {name}");
+    }
+    
+    @Test
+    void unclosedPlaceholderDoesNotCompile() {
+        assertThatThrownBy(() -> TelegramTemplate.markdownV2("Hi {name", "name"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unclosed placeholder");
+    }
+}
@@ -0,0 +1,88 @@
+package com.wishmanager.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JMH benchmark of a rate limit check under contention: all threads on one hot key, and spread
+ * over many keys. Only runs with -Dbenchmark=true, for example
+ * {@code ./mvnw test -Dtest=TokenBucketLimiterBenchmarkTest -Dbenchmark=true}, and fails when a
+ * check costs more than the budget. -Dbenchmark.threads changes the thread count.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenBucketLimiterBenchmarkTest {
+    
+    private static final int KEYS = 100_000;
+    private static final double BUDGET_NS = 1_000;
+    
+    @State(Scope.Benchmark)
+    public static class Limiter {
+        
+        private final String[] keys = new String[KEYS];
+        private final String[] overflowKeys = new String[KEYS];
+        private TokenBucketLimiter limiter;
+        
+        @Setup
+        public void setUp() {
+            for (int i = 0; i < KEYS; i++) {
+                keys[i] = "user:" + i;
+                overflowKeys[i] = "ip:" + (i & 255);
+            }
+            // Refilled fast enough that both outcomes get exercised
+            limiter = new TokenBucketLimiter(100, 1_000_000, 16, 4096);
+        }
+    }
+    
+    @Benchmark
+    public long hotKey(Limiter state) {
+        return state.limiter.tryAcquire("user:hot", "ip:hot");
+    }
+    
+    @Benchmark
+    public long manyKeys(Limiter state) {
+        int i = ThreadLocalRandom.current().nextInt(KEYS);
+        return state.limiter.tryAcquire(state.keys[i], state.overflowKeys[i]);
+    }
+    
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void checksStayWithinBudget() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(TokenBucketLimiterBenchmarkTest.class.getName() + "\\.")
+                .threads(Integer.getInteger("benchmark.threads", 16))
+                .forks(1)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(2))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(2))
+                .build();
+        
+        Collection<RunResult> results = new Runner(options).run();
+        
+        assertThat(results).hasSize(2);
+        for (RunResult result : results) {
+            assertThat(result.getPrimaryResult().getScore())
+                    .as("%s ns per check", result.getParams().getBenchmark())
+                    .isLessThan(BUDGET_NS);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.wishmanager.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketLimiterTest {
+    
+    @Test
+    void keysBeyondTheCapAreLimitedPerOverflowKey() {
+        // One stripe of two keys, two requests per bucket, practically no refill
+        TokenBucketLimiter limiter = new TokenBucketLimiter(2, 0.001, 1, 2);
+        limiter.tryAcquire("user:a", "ip:1");
+        limiter.tryAcquire("user:b", "ip:1");
+        
+        // A client inventing keys exhausts only its own IP's bucket
+        assertThat(limiter.tryAcquire("user:c", "ip:2")).isZero();
+        assertThat(limiter.tryAcquire("user:d", "ip:2")).isZero();
+        assertThat(limiter.tryAcquire("user:e", "ip:2")).isPositive();
+        
+        assertThat(limiter.tryAcquire("user:f", "ip:3")).isZero();
+        assertThat(limiter.tryAcquire("user:a", "ip:1")).isZero();
+    }
+    
+    @Test
+    void overflowKeysShareABucketOnlyOnceTheirStripeIsFullToo() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 0.001, 1, 1);
+        assertThat(limiter.tryAcquire("user:a", "ip:1")).isZero();
+        assertThat(limiter.tryAcquire("user:b", "ip:2")).isZero();
+        
+        assertThat(limiter.tryAcquire("user:c", "ip:3")).isZero();
+        assertThat(limiter.tryAcquire("user:d", "ip:4")).isPositive();
+    }
+}
@@ -55,10 +55,17 @@ export const wishApi = {
   create: (data: any) => api.post('/wishes', data),
   update: (id: string, data: any) => api.patch(`/wishes/${id}`, data),
   delete: (id: string) => api.delete(`/wishes/${id}`),
-  book: (id: string, hideBookerName?: boolean) => api.post(`/wishes/${id}/book`, { hideBookerName }),
+  move: (id: string, afterId: string | null) => api.post(`/wishes/${id}/move`, { afterId }),
+  book: (id: string, userId: string, hideBookerName?: boolean) => api.post(`/wishes/${id}/book`, { userId, hideBookerName }),
   unbook: (id: string) => api.post(`/wishes/${id}/unbook`),
   gift: (id: string) => api.post(`/wishes/${id}/gift`),
   ungift: (id: string) => api.post(`/wishes/${id}/ungift`),
 };
 
+// First screen in one request; the browser revalidates it with the ETag on reopen.
+// startParam is the /start deep link payload (?startapp=... or Telegram's start_param)
+export const bootstrapApi = {
+  get: (userId: string, startParam?: string) => api.get('/bootstrap', { params: { userId, startParam } }),
+};
+
 export default api;